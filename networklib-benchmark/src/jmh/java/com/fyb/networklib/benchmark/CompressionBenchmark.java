@@ -0,0 +1,118 @@
+package com.fyb.networklib.benchmark;
+
+import com.fyb.networklib.util.CompressionInterceptor;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.Buffer;
+import okio.GzipSource;
+import okio.Okio;
+
+/**
+ * 请求体压缩基准：gzip与预共享字典deflate的CPU开销，压缩后的字节数在Setup中输出
+ * single为单条行程的 BaseEntity（约500字节），page为一页20条行程（数KB），list为500条行程；
+ * 字典取自另一份单条行程的返回，模拟预先下发的字典。
+ * Setup同时输出按拦截器默认门槛实际发出的编码：single低于gzip的1KB门槛，只有配置了字典时才会压缩
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CompressionBenchmark {
+
+    private static final MediaType JSON = MediaType.parse("application/json; charset=utf-8");
+
+    private static final int PAGE_SIZE = 20;
+    private static final long GZIP_MIN_SIZE = 1024;
+    private static final long DICTIONARY_MIN_SIZE = 64;
+
+    @Param({"single", "page", "list"})
+    public String payload;
+
+    private RequestBody body;
+    private CompressionInterceptor.Dictionary dictionary;
+    private byte[] gzipped;
+    private byte[] deflated;
+
+    @Setup
+    public void setup() throws IOException {
+        JsonObject list = new JsonParser().parse(new String(Payloads.load(Payloads.BASE_ENTITY_TRIP_LIST), StandardCharsets.UTF_8)).getAsJsonObject();
+        byte[] raw;
+        if ("single".equals(payload)) {
+            raw = envelope(list, list.getAsJsonArray("data").get(0)).toString().getBytes(StandardCharsets.UTF_8);
+        } else if ("page".equals(payload)) {
+            JsonArray page = new JsonArray();
+            JsonArray data = list.getAsJsonArray("data");
+            for (int i = 0; i < PAGE_SIZE && i < data.size(); i++) {
+                page.add(data.get(i));
+            }
+            raw = envelope(list, page).toString().getBytes(StandardCharsets.UTF_8);
+        } else {
+            raw = Payloads.load(Payloads.BASE_ENTITY_TRIP_LIST);
+        }
+        JsonObject sample = new JsonParser().parse(new String(Payloads.load(Payloads.LZY_TRIP), StandardCharsets.UTF_8)).getAsJsonObject();
+        dictionary = new CompressionInterceptor.Dictionary(envelope(list, sample.get("data")).toString().getBytes(StandardCharsets.UTF_8));
+
+        body = RequestBody.create(JSON, raw);
+        gzipped = CompressionInterceptor.gzip(body).readByteArray();
+        deflated = dictionary.deflate(body).readByteArray();
+        System.out.printf("%n%s: raw=%d B, gzip=%d B (%.1f%%)%s, dictionary=%d B (%.1f%%)%s%n", payload, raw.length,
+                gzipped.length, gzipped.length * 100.0 / raw.length, raw.length >= GZIP_MIN_SIZE ? "" : " [below minSize, sent raw]",
+                deflated.length, deflated.length * 100.0 / raw.length,
+                raw.length >= DICTIONARY_MIN_SIZE ? "" : " [below dictionaryMinSize, sent raw]");
+    }
+
+    /**
+     * 沿用列表返回的外层字段，data替换为指定内容
+     */
+    private static JsonObject envelope(JsonObject source, JsonElement data) {
+        JsonObject envelope = new JsonObject();
+        for (Map.Entry<String, JsonElement> entry : source.entrySet()) {
+            envelope.add(entry.getKey(), "data".equals(entry.getKey()) ? data : entry.getValue());
+        }
+        return envelope;
+    }
+
+    @Benchmark
+    public long gzip() throws IOException {
+        return CompressionInterceptor.gzip(body).size();
+    }
+
+    @Benchmark
+    public long deflateWithDictionary() throws IOException {
+        return dictionary.deflate(body).size();
+    }
+
+    @Benchmark
+    public long gunzip() throws IOException {
+        return Okio.buffer(new GzipSource(new Buffer().write(gzipped))).readByteString().size();
+    }
+
+    @Benchmark
+    public long inflateWithDictionary() throws IOException {
+        return Okio.buffer(dictionary.inflate(new Buffer().write(deflated))).readByteString().size();
+    }
+}
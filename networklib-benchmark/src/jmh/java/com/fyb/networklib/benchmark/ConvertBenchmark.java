@@ -0,0 +1,78 @@
+package com.fyb.networklib.benchmark;
+
+import com.fyb.networklib.data.BaseEntity;
+import com.fyb.networklib.util.Convert;
+import com.fyb.networklib.util.LzyResponse;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStreamReader;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Convert.fromJson 基准：字符串入口与流式JsonReader入口
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ConvertBenchmark {
+
+    private static final Type LZY_TRIP = new TypeToken<LzyResponse<Trip>>() {}.getType();
+    private static final Type LZY_TRIP_LIST = new TypeToken<LzyResponse<List<Trip>>>() {}.getType();
+    private static final Type BASE_ENTITY_TRIP_LIST = new TypeToken<BaseEntity<List<Trip>>>() {}.getType();
+
+    private String smallJson;
+    private String largeJson;
+    private String baseEntityJson;
+    private byte[] largeBytes;
+
+    @Setup
+    public void setup() {
+        smallJson = new String(Payloads.load(Payloads.LZY_TRIP), StandardCharsets.UTF_8);
+        largeBytes = Payloads.load(Payloads.LZY_TRIP_LIST);
+        largeJson = new String(largeBytes, StandardCharsets.UTF_8);
+        baseEntityJson = new String(Payloads.load(Payloads.BASE_ENTITY_TRIP_LIST), StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public Object fromStringSmall() {
+        return Convert.fromJson(smallJson, LZY_TRIP);
+    }
+
+    @Benchmark
+    public Object fromStringLarge() {
+        return Convert.fromJson(largeJson, LZY_TRIP_LIST);
+    }
+
+    @Benchmark
+    public Object fromStringBaseEntity() {
+        return Convert.fromJson(baseEntityJson, BASE_ENTITY_TRIP_LIST);
+    }
+
+    /**
+     * JsonConvert实际使用的入口：从字节流解码并流式解析
+     */
+    @Benchmark
+    public Object fromReaderLarge() {
+        JsonReader reader = new JsonReader(new InputStreamReader(new ByteArrayInputStream(largeBytes), StandardCharsets.UTF_8));
+        return Convert.fromJson(reader, LZY_TRIP_LIST);
+    }
+}
@@ -0,0 +1,91 @@
+package com.fyb.networklib.benchmark;
+
+import com.fyb.networklib.util.JsonCallback;
+import com.fyb.networklib.util.LzyResponse;
+import com.google.gson.reflect.TypeToken;
+import com.lzy.okgo.model.Response;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.reflect.Type;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JsonCallback 泛型解析基准
+ * 使用小报文让解析本身的开销尽量小，从而对比"从父类泛型推导类型"与"构造时传入类型"的差异
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JsonCallbackBenchmark {
+
+    private static final Type LZY_VOID = new TypeToken<LzyResponse<Void>>() {}.getType();
+    private static final Type LZY_TRIP_LIST = new TypeToken<LzyResponse<List<Trip>>>() {}.getType();
+
+    private byte[] envelope;
+    private byte[] lzyTripList;
+
+    @Setup
+    public void setup() {
+        envelope = Payloads.load(Payloads.ENVELOPE_VOID);
+        lzyTripList = Payloads.load(Payloads.LZY_TRIP_LIST);
+    }
+
+    @Benchmark
+    public Object resolveGenericSmall() throws Throwable {
+        return new VoidCallback().convertResponse(Payloads.response(envelope));
+    }
+
+    @Benchmark
+    public Object explicitTypeSmall() throws Throwable {
+        return new TypedCallback<LzyResponse<Void>>(LZY_VOID).convertResponse(Payloads.response(envelope));
+    }
+
+    @Benchmark
+    public Object resolveGenericLarge() throws Throwable {
+        return new TripListCallback().convertResponse(Payloads.response(lzyTripList));
+    }
+
+    @Benchmark
+    public Object explicitTypeLarge() throws Throwable {
+        return new TypedCallback<LzyResponse<List<Trip>>>(LZY_TRIP_LIST).convertResponse(Payloads.response(lzyTripList));
+    }
+
+    /**
+     * 业务代码最常见的写法：new JsonCallback&lt;LzyResponse&lt;Void&gt;&gt;() {...}
+     */
+    static class VoidCallback extends JsonCallback<LzyResponse<Void>> {
+        @Override
+        public void onSuccess(Response<LzyResponse<Void>> response) {
+        }
+    }
+
+    static class TripListCallback extends JsonCallback<LzyResponse<List<Trip>>> {
+        @Override
+        public void onSuccess(Response<LzyResponse<List<Trip>>> response) {
+        }
+    }
+
+    static class TypedCallback<T> extends JsonCallback<T> {
+        TypedCallback(Type type) {
+            super(type);
+        }
+
+        @Override
+        public void onSuccess(Response<T> response) {
+        }
+    }
+}
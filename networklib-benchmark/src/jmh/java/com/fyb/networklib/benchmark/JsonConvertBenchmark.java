@@ -0,0 +1,105 @@
+package com.fyb.networklib.benchmark;
+
+import com.fyb.networklib.data.BaseEntity;
+import com.fyb.networklib.util.JsonConvert;
+import com.fyb.networklib.util.LzyResponse;
+import com.google.gson.internal.$Gson$Types;
+import com.google.gson.reflect.TypeToken;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.reflect.Type;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JsonConvert.convertResponse 各分支基准，每次调用都构造新的Response，与真实请求的解析路径一致
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JsonConvertBenchmark {
+
+    private static final Type LZY_VOID = new TypeToken<LzyResponse<Void>>() {}.getType();
+    private static final Type LZY_TRIP = new TypeToken<LzyResponse<Trip>>() {}.getType();
+    private static final Type LZY_TRIP_LIST = new TypeToken<LzyResponse<List<Trip>>>() {}.getType();
+    private static final Type BASE_ENTITY_TRIP_LIST = new TypeToken<BaseEntity<List<Trip>>>() {}.getType();
+    /** 既不是Class也不是ParameterizedType，走 parseType 分支 */
+    private static final Type TRIP_PAGES = $Gson$Types.arrayOf(new TypeToken<List<Trip>>() {}.getType());
+
+    private byte[] envelope;
+    private byte[] lzyTrip;
+    private byte[] lzyTripList;
+    private byte[] baseEntityTripList;
+    private byte[] tripArray;
+    private byte[] tripPages;
+
+    @Setup
+    public void setup() {
+        envelope = Payloads.load(Payloads.ENVELOPE_VOID);
+        lzyTrip = Payloads.load(Payloads.LZY_TRIP);
+        lzyTripList = Payloads.load(Payloads.LZY_TRIP_LIST);
+        baseEntityTripList = Payloads.load(Payloads.BASE_ENTITY_TRIP_LIST);
+        tripArray = Payloads.load(Payloads.TRIP_ARRAY);
+        tripPages = Payloads.load(Payloads.TRIP_PAGES);
+    }
+
+    @Benchmark
+    public Object classString() throws Throwable {
+        return new JsonConvert<>(String.class).convertResponse(Payloads.response(lzyTripList));
+    }
+
+    @Benchmark
+    public Object classJSONObject() throws Throwable {
+        return new JsonConvert<>(JSONObject.class).convertResponse(Payloads.response(lzyTripList));
+    }
+
+    @Benchmark
+    public Object classJSONArray() throws Throwable {
+        return new JsonConvert<>(JSONArray.class).convertResponse(Payloads.response(tripArray));
+    }
+
+    @Benchmark
+    public Object classBean() throws Throwable {
+        return new JsonConvert<>(Trip[].class).convertResponse(Payloads.response(tripArray));
+    }
+
+    @Benchmark
+    public Object genericArrayType() throws Throwable {
+        return new JsonConvert<>(TRIP_PAGES).convertResponse(Payloads.response(tripPages));
+    }
+
+    @Benchmark
+    public Object baseEntityList() throws Throwable {
+        return new JsonConvert<>(BASE_ENTITY_TRIP_LIST).convertResponse(Payloads.response(baseEntityTripList));
+    }
+
+    @Benchmark
+    public Object lzyVoid() throws Throwable {
+        return new JsonConvert<>(LZY_VOID).convertResponse(Payloads.response(envelope));
+    }
+
+    @Benchmark
+    public Object lzySmall() throws Throwable {
+        return new JsonConvert<>(LZY_TRIP).convertResponse(Payloads.response(lzyTrip));
+    }
+
+    @Benchmark
+    public Object lzyList() throws Throwable {
+        return new JsonConvert<>(LZY_TRIP_LIST).convertResponse(Payloads.response(lzyTripList));
+    }
+}
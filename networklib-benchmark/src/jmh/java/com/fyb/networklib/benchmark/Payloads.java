@@ -0,0 +1,66 @@
+package com.fyb.networklib.benchmark;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import okhttp3.MediaType;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+/**
+ * 基准测试用的接口返回数据，来自 src/jmh/resources/payloads 下的录制文件
+ */
+final class Payloads {
+
+    /** {"code":0,"msg":...}，对应 LzyResponse&lt;Void&gt; */
+    static final String ENVELOPE_VOID = "envelope_void.json";
+    /** 单条行程，对应 LzyResponse&lt;Trip&gt; */
+    static final String LZY_TRIP = "lzy_trip.json";
+    /** 500条行程，对应 LzyResponse&lt;List&lt;Trip&gt;&gt; */
+    static final String LZY_TRIP_LIST = "lzy_trip_list.json";
+    /** 500条行程，对应 BaseEntity&lt;List&lt;Trip&gt;&gt; */
+    static final String BASE_ENTITY_TRIP_LIST = "base_entity_trip_list.json";
+    /** 100条行程的裸数组 */
+    static final String TRIP_ARRAY = "trip_array.json";
+    /** 2页、每页50条行程的二维数组，对应 List&lt;Trip&gt;[] */
+    static final String TRIP_PAGES = "trip_pages.json";
+
+    private static final MediaType JSON = MediaType.parse("application/json; charset=utf-8");
+    private static final Request REQUEST = new Request.Builder()
+            .url("https://api.example.com/api/trip-manage/")
+            .build();
+
+    private Payloads() {
+    }
+
+    static byte[] load(String name) {
+        try (InputStream in = Payloads.class.getResourceAsStream("/payloads/" + name)) {
+            if (in == null) throw new IllegalStateException("missing payload " + name);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 构造一个与网络返回一致的Response，每次调用都是新的body，可被解析代码消费并关闭
+     */
+    static Response response(byte[] body) {
+        return new Response.Builder()
+                .request(REQUEST)
+                .protocol(Protocol.HTTP_1_1)
+                .code(200)
+                .message("OK")
+                .body(ResponseBody.create(JSON, body))
+                .build();
+    }
+}
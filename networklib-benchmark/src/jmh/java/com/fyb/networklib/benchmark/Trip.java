@@ -0,0 +1,27 @@
+package com.fyb.networklib.benchmark;
+
+import java.util.List;
+
+/**
+ * 行程数据，字段结构与线上行程接口返回一致
+ */
+public class Trip {
+
+    public long id;
+    public String tripNo;
+    public String driverName;
+    public String plateNumber;
+    public long startTime;
+    public long endTime;
+    public String startAddress;
+    public String endAddress;
+    public double mileage;
+    public int status;
+    public List<Passenger> passengers;
+    public String remark;
+
+    public static class Passenger {
+        public String name;
+        public String phone;
+    }
+}
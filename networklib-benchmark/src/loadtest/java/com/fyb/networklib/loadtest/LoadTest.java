@@ -0,0 +1,434 @@
+package com.fyb.networklib.loadtest;
+
+import com.fyb.networklib.api.HttpStatusException;
+import com.fyb.networklib.api.NetworkClient;
+import com.fyb.networklib.benchmark.Trip;
+import com.fyb.networklib.data.BaseEntity;
+import com.fyb.networklib.util.IdempotencyInterceptor;
+import com.fyb.networklib.util.JsonConvert;
+import com.fyb.networklib.util.LatencyHistogram;
+import com.fyb.networklib.util.LzyResponse;
+import com.fyb.networklib.util.MetricsSnapshot;
+import com.fyb.networklib.util.RequestMetrics;
+import com.google.gson.reflect.TypeToken;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.FormBody;
+import okhttp3.HttpUrl;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+
+/**
+ * 端到端压测工具
+ * 启动本地模拟服务端，由 NetworkClient.newClientBuilder() 构建OkHttpClient（与 NetworkApi 相同的拦截器链、EventListener和超时），
+ * 以与 NetworkApi.get / post / postJson、TripManageApi.addTripManage 相同的请求形态施压，用于确定调度器并发数和连接池大小
+ *
+ * NetworkApi 依赖Application和主线程Handler，无法在普通JVM上初始化，因此直接使用其底层的 NetworkClient：
+ * 开环模式通过 NetworkClient.enqueue 异步发出（经过限流队列），响应按OkGo的方式用JsonConvert解析；
+ * 闭环模式通过 NetworkClient.execute 同步执行
+ *
+ * 参数（均为 --key=value）：
+ * duration 测试秒数，warmup 预热秒数，rate 每秒请求数（0为闭环模式，由callers个线程循环同步请求），
+ * callers 闭环模式并发数，latency/jitter 服务端延迟毫秒，error-rate 服务端500比例，items 响应行程条数，
+ * max-requests/max-per-host 调度器并发上限，max-idle 连接池最大空闲连接数，mix 请求比例如 get:4,post:2,json:2,trip:2
+ */
+public class LoadTest {
+
+    private static final MediaType JSON = MediaType.parse("application/json; charset=utf-8");
+    private static final Type LZY_TRIP_LIST = new TypeToken<LzyResponse<List<Trip>>>() {}.getType();
+    private static final Type ENTITY_TRIP_LIST = new TypeToken<BaseEntity<List<Trip>>>() {}.getType();
+
+    enum Operation {
+        GET, POST, POST_JSON, ADD_TRIP
+    }
+
+    private final Map<String, String> options;
+    private final Operation[] schedule;
+    private final Map<Operation, LatencyHistogram> latencies = new LinkedHashMap<>();
+    private final AtomicLong succeeded = new AtomicLong();
+    private final AtomicLong httpErrors = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicInteger outstanding = new AtomicInteger();
+
+    private MockServer server;
+    private NetworkClient networkClient;
+    private OkHttpClient client;
+    private HttpUrl baseUrl;
+    private volatile boolean measuring;
+
+    private final Peaks peaks = new Peaks();
+
+    LoadTest(Map<String, String> options) {
+        this.options = options;
+        this.schedule = parseMix(option("mix", "get:4,post:2,json:2,trip:2"));
+        for (Operation operation : Operation.values()) {
+            latencies.put(operation, new LatencyHistogram());
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new LinkedHashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--")) continue;
+            int eq = arg.indexOf('=');
+            if (eq > 0) {
+                options.put(arg.substring(2, eq), arg.substring(eq + 1));
+            } else {
+                options.put(arg.substring(2), "true");
+            }
+        }
+        new LoadTest(options).run();
+    }
+
+    void run() throws Exception {
+        server = new MockServer(longOption("latency", 50), longOption("jitter", 20),
+                Double.parseDouble(option("error-rate", "0.01")), intOption("items", 20));
+        server.start();
+        baseUrl = HttpUrl.get(server.baseUrl());
+        client = buildClient();
+
+        Thread sampler = new Thread(this::sample, "LoadTest-Sampler");
+        sampler.setDaemon(true);
+        sampler.start();
+
+        long warmup = longOption("warmup", 5);
+        long duration = longOption("duration", 30);
+        System.out.println("mock server " + baseUrl + ", payload " + server.payloadBytes() + " bytes");
+        System.out.println("options " + options);
+
+        drive(TimeUnit.SECONDS.toNanos(warmup));
+        awaitIdle();
+
+        // 预热结束后清零统计，以预热后的状态作为内存基线
+        RequestMetrics.getInstance().reset();
+        for (LatencyHistogram histogram : latencies.values()) histogram.reset();
+        succeeded.set(0);
+        httpErrors.set(0);
+        failures.set(0);
+        System.gc();
+        long heapBefore = usedHeap();
+        int threadsBefore = threads().getThreadCount();
+        peaks.reset();
+        measuring = true;
+
+        long start = System.nanoTime();
+        drive(TimeUnit.SECONDS.toNanos(duration));
+        awaitIdle();
+        long elapsed = System.nanoTime() - start;
+        measuring = false;
+
+        System.gc();
+        long heapAfter = usedHeap();
+        report(elapsed, heapBefore, heapAfter, threadsBefore);
+
+        client.dispatcher().executorService().shutdown();
+        client.connectionPool().evictAll();
+        server.stop();
+    }
+
+    private OkHttpClient buildClient() {
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(intOption("max-requests", 64));
+        dispatcher.setMaxRequestsPerHost(intOption("max-per-host", 5));
+        networkClient = new NetworkClient()
+                .setMaxConcurrentCalls(Math.max(64, intOption("callers", 32)));
+        // 拦截器链、EventListener和超时与 NetworkApi.initOkGo 相同，只替换调度器和连接池
+        OkHttpClient okHttpClient = networkClient.newClientBuilder()
+                .dispatcher(dispatcher)
+                .connectionPool(new ConnectionPool(intOption("max-idle", 5), 5, TimeUnit.MINUTES))
+                .build();
+        networkClient.setOkHttpClient(okHttpClient);
+        return okHttpClient;
+    }
+
+    /**
+     * 开环模式按固定速率异步发起请求，延迟从计划发送时间算起，避免服务变慢时少算排队时间；
+     * 闭环模式由多个线程各自循环同步请求
+     */
+    private void drive(long durationNanos) throws InterruptedException {
+        int rate = intOption("rate", 50);
+        long end = System.nanoTime() + durationNanos;
+        if (rate > 0) {
+            long interval = TimeUnit.SECONDS.toNanos(1) / rate;
+            long next = System.nanoTime();
+            long sequence = 0;
+            while (next < end) {
+                long wait = next - System.nanoTime();
+                if (wait > 0) TimeUnit.NANOSECONDS.sleep(wait);
+                enqueue(schedule[(int) (sequence++ % schedule.length)], next);
+                next += interval;
+            }
+        } else {
+            int callers = intOption("callers", 32);
+            List<Thread> threads = new ArrayList<>();
+            for (int i = 0; i < callers; i++) {
+                final int offset = i;
+                Thread thread = new Thread(() -> {
+                    long sequence = offset;
+                    while (System.nanoTime() < end) {
+                        execute(schedule[(int) (sequence++ % schedule.length)]);
+                    }
+                }, "LoadTest-Caller-" + i);
+                thread.start();
+                threads.add(thread);
+            }
+            for (Thread thread : threads) thread.join();
+        }
+    }
+
+    private void enqueue(final Operation operation, final long scheduledAt) {
+        outstanding.incrementAndGet();
+        networkClient.enqueue(request(operation), new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                failures.incrementAndGet();
+                finish(operation, scheduledAt);
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) {
+                handle(operation, response);
+                finish(operation, scheduledAt);
+            }
+        });
+    }
+
+    private void execute(Operation operation) {
+        long start = System.nanoTime();
+        outstanding.incrementAndGet();
+        try {
+            networkClient.execute(request(operation), operation == Operation.ADD_TRIP ? ENTITY_TRIP_LIST : LZY_TRIP_LIST);
+            succeeded.incrementAndGet();
+        } catch (HttpStatusException e) {
+            httpErrors.incrementAndGet();
+        } catch (IOException | RuntimeException e) {
+            // 解析失败（JsonSyntaxException、转换器的IllegalStateException）同样计为失败，调用线程继续压测
+            failures.incrementAndGet();
+        } finally {
+            finish(operation, start);
+        }
+    }
+
+    private void finish(Operation operation, long start) {
+        latencies.get(operation).record(System.nanoTime() - start);
+        outstanding.decrementAndGet();
+    }
+
+    /**
+     * 与OkGo一致：非2xx直接按错误处理，2xx在网络线程上通过JsonConvert解析
+     */
+    private void handle(Operation operation, Response response) {
+        try {
+            if (!response.isSuccessful()) {
+                httpErrors.incrementAndGet();
+                return;
+            }
+            Type type = operation == Operation.ADD_TRIP ? ENTITY_TRIP_LIST : LZY_TRIP_LIST;
+            new JsonConvert<>(type).convertResponse(response);
+            succeeded.incrementAndGet();
+        } catch (Throwable t) {
+            failures.incrementAndGet();
+        } finally {
+            response.close();
+        }
+    }
+
+    private Request request(Operation operation) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        switch (operation) {
+            case GET:
+                return new Request.Builder()
+                        .url(baseUrl.newBuilder().addPathSegments("api/trips/")
+                                .addQueryParameter("page", String.valueOf(random.nextInt(1, 50)))
+                                .addQueryParameter("size", "20")
+                                .build())
+                        .build();
+            case POST:
+                return new Request.Builder()
+                        .url(baseUrl.newBuilder().addPathSegments("api/trips/search/").build())
+                        .post(new FormBody.Builder()
+                                .add("keyword", "朝阳区")
+                                .add("status", String.valueOf(random.nextInt(4)))
+                                .build())
+                        .build();
+            case POST_JSON:
+                return new Request.Builder()
+                        .url(baseUrl.newBuilder().addPathSegments("api/trips/batch/").build())
+                        .header(IdempotencyInterceptor.HEADER, IdempotencyInterceptor.newKey())
+                        .post(RequestBody.create(JSON, "{\"ids\":[" + random.nextInt(100000) + "," + random.nextInt(100000) + "]}"))
+                        .build();
+            case ADD_TRIP:
+            default:
+                return new Request.Builder()
+                        .url(baseUrl.newBuilder().addPathSegments("api/trip-manage/").build())
+                        .header(IdempotencyInterceptor.HEADER, IdempotencyInterceptor.newKey())
+                        .post(RequestBody.create(JSON, "{\"driverName\":\"张伟\",\"plateNumber\":\"京A12345\","
+                                + "\"startAddress\":\"北京市朝阳区建国路88号\",\"endAddress\":\"上海市浦东新区世纪大道100号\","
+                                + "\"startTime\":" + System.currentTimeMillis() + "}"))
+                        .build();
+        }
+    }
+
+    private void awaitIdle() throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (outstanding.get() > 0 && System.nanoTime() < deadline) {
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+    }
+
+    private void sample() {
+        ThreadMXBean threads = threads();
+        while (true) {
+            if (measuring) {
+                Dispatcher dispatcher = client.dispatcher();
+                int okHttpThreads = 0;
+                for (Thread thread : Thread.getAllStackTraces().keySet()) {
+                    if (thread.getName().startsWith("OkHttp")) okHttpThreads++;
+                }
+                peaks.update(usedHeap(), threads.getThreadCount(), okHttpThreads,
+                        dispatcher.runningCallsCount(), dispatcher.queuedCallsCount(),
+                        client.connectionPool().connectionCount());
+            }
+            try {
+                TimeUnit.MILLISECONDS.sleep(200);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private void report(long elapsedNanos, long heapBefore, long heapAfter, int threadsBefore) {
+        double seconds = elapsedNanos / 1e9;
+        long total = succeeded.get() + httpErrors.get() + failures.get();
+        System.out.println();
+        System.out.println("==== result ====");
+        System.out.printf("requests     %d in %.1fs, %.1f req/s (server saw %d incl. warmup/retries)%n",
+                total, seconds, total / seconds, server.requestCount());
+        System.out.printf("outcome      ok %d, http error %d, failure %d%n",
+                succeeded.get(), httpErrors.get(), failures.get());
+
+        System.out.println();
+        System.out.printf("%-10s %8s %9s %9s %9s %9s %9s%n", "latency", "count", "mean", "p50", "p90", "p99", "max");
+        for (Map.Entry<Operation, LatencyHistogram> entry : latencies.entrySet()) {
+            LatencyHistogram h = entry.getValue();
+            if (h.getCount() == 0) continue;
+            System.out.printf("%-10s %8d %8.1fms %8.1fms %8.1fms %8.1fms %8.1fms%n", entry.getKey(), h.getCount(),
+                    h.getMeanMicros() / 1000.0, h.getPercentileMicros(0.5) / 1000.0, h.getPercentileMicros(0.9) / 1000.0,
+                    h.getPercentileMicros(0.99) / 1000.0, h.getMaxMicros() / 1000.0);
+        }
+
+        MetricsSnapshot snapshot = RequestMetrics.getInstance().snapshot();
+        long newConnections = 0;
+        long reusedConnections = 0;
+        System.out.println();
+        System.out.printf("%-40s %10s %10s %10s %10s%n", "phase p99", "QUEUE", "SERVER", "BODY", "PARSE");
+        for (Map.Entry<String, MetricsSnapshot.Route> entry : snapshot.routes.entrySet()) {
+            MetricsSnapshot.Route route = entry.getValue();
+            newConnections += route.newConnections;
+            reusedConnections += route.reusedConnections;
+            System.out.printf("%-40s %8.1fms %8.1fms %8.1fms %8.1fms%n", entry.getKey(),
+                    p99(route, RequestMetrics.Phase.QUEUE), p99(route, RequestMetrics.Phase.SERVER),
+                    p99(route, RequestMetrics.Phase.BODY), p99(route, RequestMetrics.Phase.PARSE));
+        }
+
+        long acquired = newConnections + reusedConnections;
+        System.out.println();
+        System.out.printf("connections  new %d, reused %d (%.1f%% reuse), pool peak %d%n", newConnections, reusedConnections,
+                acquired == 0 ? 0 : reusedConnections * 100.0 / acquired, peaks.connections);
+        System.out.printf("dispatcher   running peak %d, queued peak %d%n", peaks.running, peaks.queued);
+        System.out.printf("threads      before %d, peak %d, OkHttp peak %d%n", threadsBefore, peaks.threads, peaks.okHttpThreads);
+        System.out.printf("heap         before %.1fMB, peak %.1fMB, after GC %.1fMB (%+.1fMB)%n", mb(heapBefore),
+                mb(peaks.heap), mb(heapAfter), mb(heapAfter - heapBefore));
+    }
+
+    private static double p99(MetricsSnapshot.Route route, RequestMetrics.Phase phase) {
+        MetricsSnapshot.Stats stats = route.phases.get(phase.name());
+        return stats == null ? 0 : stats.p99Micros / 1000.0;
+    }
+
+    private static Operation[] parseMix(String mix) {
+        List<Operation> schedule = new ArrayList<>();
+        for (String part : mix.split(",")) {
+            String[] pair = part.trim().split(":");
+            Operation operation;
+            switch (pair[0]) {
+                case "get": operation = Operation.GET; break;
+                case "post": operation = Operation.POST; break;
+                case "json": operation = Operation.POST_JSON; break;
+                case "trip": operation = Operation.ADD_TRIP; break;
+                default: throw new IllegalArgumentException("unknown operation " + pair[0]);
+            }
+            int weight = pair.length > 1 ? Integer.parseInt(pair[1]) : 1;
+            for (int i = 0; i < weight; i++) schedule.add(operation);
+        }
+        return schedule.toArray(new Operation[0]);
+    }
+
+    private String option(String key, String defaultValue) {
+        String value = options.get(key);
+        return value == null ? defaultValue : value;
+    }
+
+    private int intOption(String key, int defaultValue) {
+        return Integer.parseInt(option(key, String.valueOf(defaultValue)));
+    }
+
+    private long longOption(String key, long defaultValue) {
+        return Long.parseLong(option(key, String.valueOf(defaultValue)));
+    }
+
+    private static ThreadMXBean threads() {
+        return ManagementFactory.getThreadMXBean();
+    }
+
+    private static long usedHeap() {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+
+    private static double mb(long bytes) {
+        return bytes / 1024.0 / 1024.0;
+    }
+
+    private static class Peaks {
+        long heap;
+        int threads;
+        int okHttpThreads;
+        int running;
+        int queued;
+        int connections;
+
+        synchronized void reset() {
+            heap = threads = okHttpThreads = running = queued = connections = 0;
+        }
+
+        synchronized void update(long heap, int threads, int okHttpThreads, int running, int queued, int connections) {
+            this.heap = Math.max(this.heap, heap);
+            this.threads = Math.max(this.threads, threads);
+            this.okHttpThreads = Math.max(this.okHttpThreads, okHttpThreads);
+            this.running = Math.max(this.running, running);
+            this.queued = Math.max(this.queued, queued);
+            this.connections = Math.max(this.connections, connections);
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.fyb.networklib.loadtest;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 本地模拟服务端
+ * 所有路径返回相同结构的JSON：{"code":...,"msg":...,"data":[行程...]}，
+ * 同时兼容 LzyResponse（code=0成功）和 BaseEntity（code=2000成功）两种解析方式
+ */
+class MockServer {
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final long latencyMs;
+    private final long jitterMs;
+    private final double errorRate;
+    private final byte[] lzyBody;
+    private final byte[] entityBody;
+    private final AtomicLong requests = new AtomicLong();
+
+    /**
+     * @param latencyMs 基础处理延迟
+     * @param jitterMs  在基础延迟上增加的随机抖动上限
+     * @param errorRate 返回500的比例，0~1
+     * @param items     响应中行程条数，用于控制报文大小
+     */
+    MockServer(long latencyMs, long jitterMs, double errorRate, int items) throws IOException {
+        this.latencyMs = latencyMs;
+        this.jitterMs = jitterMs;
+        this.errorRate = errorRate;
+        this.lzyBody = body(0, items);
+        this.entityBody = body(2000, items);
+        this.executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "MockServer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 1024);
+        server.setExecutor(executor);
+        server.createContext("/", new Handler());
+    }
+
+    void start() {
+        server.start();
+    }
+
+    void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    String baseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/";
+    }
+
+    int payloadBytes() {
+        return lzyBody.length;
+    }
+
+    long requestCount() {
+        return requests.get();
+    }
+
+    private class Handler implements HttpHandler {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            requests.incrementAndGet();
+            try (InputStream in = exchange.getRequestBody()) {
+                byte[] buffer = new byte[8192];
+                while (in.read(buffer) != -1) {
+                    // 读完请求体，保证连接可以复用
+                }
+            }
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            long delay = latencyMs + (jitterMs > 0 ? random.nextLong(jitterMs + 1) : 0);
+            if (delay > 0) {
+                try {
+                    TimeUnit.MILLISECONDS.sleep(delay);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            if (random.nextDouble() < errorRate) {
+                byte[] error = "{\"code\":500,\"msg\":\"mock error\"}".getBytes(StandardCharsets.UTF_8);
+                send(exchange, 500, error);
+                return;
+            }
+            send(exchange, 200, exchange.getRequestURI().getPath().contains("trip-manage") ? entityBody : lzyBody);
+        }
+
+        private void send(HttpExchange exchange, int code, byte[] body) throws IOException {
+            exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+            exchange.sendResponseHeaders(code, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        }
+    }
+
+    private static byte[] body(int code, int items) {
+        StringBuilder sb = new StringBuilder(items * 300 + 64);
+        sb.append("{\"code\":").append(code).append(",\"msg\":\"操作成功\",\"data\":[");
+        for (int i = 0; i < items; i++) {
+            if (i > 0) sb.append(',');
+            sb.append("{\"id\":").append(100000 + i)
+                    .append(",\"tripNo\":\"TR").append(String.format("%08d", i)).append('"')
+                    .append(",\"driverName\":\"张伟\",\"plateNumber\":\"京A").append(String.format("%05d", i % 100000)).append('"')
+                    .append(",\"startTime\":").append(1735000000000L + i * 3600000L)
+                    .append(",\"endTime\":").append(1735000000000L + i * 3600000L + 1800000L)
+                    .append(",\"startAddress\":\"北京市朝阳区建国路88号\",\"endAddress\":\"上海市浦东新区世纪大道100号\"")
+                    .append(",\"mileage\":").append(12.5 + i % 100)
+                    .append(",\"status\":").append(i % 4)
+                    .append(",\"passengers\":[{\"name\":\"王芳\",\"phone\":\"13800000000\"}]")
+                    .append(",\"remark\":\"准时到达\"}");
+        }
+        sb.append("]}");
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
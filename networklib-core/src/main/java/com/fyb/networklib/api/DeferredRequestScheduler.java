@@ -0,0 +1,231 @@
+package com.fyb.networklib.api;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Callback;
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * 可延后的后台请求调度器，把统计上报、行程事件上传、预取等请求集中到射频已唤醒的时间窗口发出
+ * 1. 每个请求带一个最晚发出时间，入队后暂存，不单独唤醒射频
+ * 2. 有交互请求经过 NetworkClient 的拦截器链，或平台层通知网络已激活（{@link #onNetworkActive()}）时，一次性发出全部暂存请求
+ * 3. 最早的截止时间到达时同样一次性发出全部请求，射频反正要被唤醒，其余请求顺带发出
+ * 4. 最近一次网络活动后的 activeWindow（默认5秒，约为蜂窝射频的拖尾时间）内入队的请求直接发出
+ *
+ * 请求在发出时才创建Call，结果通过OkHttp的Callback回调；暂存期间可按tag取消，取消后不会回调
+ */
+public class DeferredRequestScheduler implements Interceptor {
+
+    /** 调度器发出的请求携带的类型化标签，拦截时不计为交互流量 */
+    private static final class Deferred {
+    }
+
+    private static final Deferred DEFERRED = new Deferred();
+
+    private static final ScheduledExecutorService SCHEDULER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "OkNet-Deferred");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private static class Entry {
+        final Request request;
+        final long deadline;
+        final Callback callback;
+
+        Entry(Request request, long deadline, Callback callback) {
+            this.request = request;
+            this.deadline = deadline;
+            this.callback = callback;
+        }
+    }
+
+    private final NetworkClient client;
+    private final List<Entry> pending = new ArrayList<>();
+    private volatile long activeWindowMs = 5000;
+    private volatile int maxPending = 50;
+    private volatile long lastActiveAt;
+    private ScheduledFuture<?> timer;
+    private long timerDeadline;
+    private long flushCount;
+    private long sentCount;
+
+    public DeferredRequestScheduler(NetworkClient client) {
+        this.client = client;
+    }
+
+    /**
+     * 网络活动后多长时间内视为射频仍处于激活状态，默认5秒
+     */
+    public DeferredRequestScheduler setActiveWindow(long activeWindowMs) {
+        this.activeWindowMs = activeWindowMs;
+        return this;
+    }
+
+    /**
+     * 暂存请求数达到上限时立即发出，默认50
+     */
+    public DeferredRequestScheduler setMaxPending(int maxPending) {
+        this.maxPending = maxPending;
+        return this;
+    }
+
+    /**
+     * 暂存一个请求
+     *
+     * @param maxDelayMs 最多延后的毫秒数，0表示按普通请求立即发出
+     * @param callback   发出后的结果回调，在OkHttp的线程上执行
+     */
+    public void enqueue(Request request, long maxDelayMs, Callback callback) {
+        long now = System.currentTimeMillis();
+        if (maxDelayMs <= 0 || now - lastActiveAt < activeWindowMs) {
+            send(request, callback);
+            return;
+        }
+        List<Entry> flushed = null;
+        synchronized (this) {
+            pending.add(new Entry(request, now + maxDelayMs, callback));
+            if (pending.size() >= maxPending) {
+                flushed = drain();
+            } else {
+                schedule();
+            }
+        }
+        sendAll(flushed);
+    }
+
+    /**
+     * 网络已激活，发出全部暂存请求；平台层在射频被其他流量唤醒时调用
+     */
+    public void onNetworkActive() {
+        lastActiveAt = System.currentTimeMillis();
+        List<Entry> flushed;
+        synchronized (this) {
+            if (pending.isEmpty()) return;
+            flushed = drain();
+        }
+        sendAll(flushed);
+    }
+
+    /**
+     * 立即发出全部暂存请求，如进入后台前调用
+     */
+    public void flush() {
+        List<Entry> flushed;
+        synchronized (this) {
+            flushed = drain();
+        }
+        sendAll(flushed);
+    }
+
+    /**
+     * 取消暂存中tag相同的请求，已发出的请求通过 {@link NetworkClient#cancel(Object)} 取消
+     *
+     * @return 取消的暂存请求数
+     */
+    public synchronized int cancel(Object tag) {
+        int count = 0;
+        Iterator<Entry> iterator = pending.iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().request.tag() == tag) {
+                iterator.remove();
+                count++;
+            }
+        }
+        if (pending.isEmpty()) {
+            cancelTimer();
+        }
+        return count;
+    }
+
+    public synchronized int getPendingCount() {
+        return pending.size();
+    }
+
+    /**
+     * 批量发出的次数
+     */
+    public synchronized long getFlushCount() {
+        return flushCount;
+    }
+
+    /**
+     * 经批量发出的请求数，sentCount / flushCount 即平均每次唤醒发出的请求数
+     */
+    public synchronized long getSentCount() {
+        return sentCount;
+    }
+
+    /**
+     * 非调度器发出的请求视为交互流量，射频已被唤醒，顺带发出暂存请求
+     */
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        if (request.tag(Deferred.class) == null) {
+            onNetworkActive();
+        }
+        return chain.proceed(request);
+    }
+
+    /**
+     * 取出全部暂存请求，调用方持有锁
+     */
+    private List<Entry> drain() {
+        cancelTimer();
+        if (pending.isEmpty()) return null;
+        List<Entry> flushed = new ArrayList<>(pending);
+        pending.clear();
+        flushCount++;
+        sentCount += flushed.size();
+        return flushed;
+    }
+
+    /**
+     * 按最早的截止时间安排定时发出，调用方持有锁
+     */
+    private void schedule() {
+        long earliest = Long.MAX_VALUE;
+        for (Entry entry : pending) {
+            earliest = Math.min(earliest, entry.deadline);
+        }
+        if (timer != null && timerDeadline <= earliest) return;
+        cancelTimer();
+        timerDeadline = earliest;
+        timer = SCHEDULER.schedule(new Runnable() {
+            @Override
+            public void run() {
+                flush();
+            }
+        }, Math.max(0, earliest - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+    }
+
+    private void cancelTimer() {
+        if (timer != null) {
+            timer.cancel(false);
+            timer = null;
+        }
+    }
+
+    private void sendAll(List<Entry> entries) {
+        if (entries == null) return;
+        lastActiveAt = System.currentTimeMillis();
+        for (Entry entry : entries) {
+            send(entry.request, entry.callback);
+        }
+    }
+
+    private void send(Request request, Callback callback) {
+        Request marked = request.newBuilder().tag(Deferred.class, DEFERRED).build();
+        client.enqueue(marked, callback);
+    }
+}
@@ -0,0 +1,20 @@
+package com.fyb.networklib.api;
+
+import java.io.IOException;
+
+/**
+ * 服务端返回非2xx状态码
+ */
+public class HttpStatusException extends IOException {
+
+    private final int code;
+
+    public HttpStatusException(int code, String message) {
+        super("HTTP " + code + " " + message);
+        this.code = code;
+    }
+
+    public int getCode() {
+        return code;
+    }
+}
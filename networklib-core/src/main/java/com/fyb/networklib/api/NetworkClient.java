@@ -0,0 +1,391 @@
+package com.fyb.networklib.api;
+
+import com.fyb.networklib.util.CallRegistry;
+import com.fyb.networklib.util.CompositeEventListenerFactory;
+import com.fyb.networklib.util.CompressionInterceptor;
+import com.fyb.networklib.util.EndpointPool;
+import com.fyb.networklib.util.IdempotencyInterceptor;
+import com.fyb.networklib.util.RateLimiter;
+import com.fyb.networklib.util.RequestMetrics;
+import com.fyb.networklib.util.ResponseConverter;
+import com.fyb.networklib.util.TokenManager;
+import com.fyb.networklib.util.Tracer;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Type;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import okhttp3.Authenticator;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.FormBody;
+import okhttp3.HttpUrl;
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.Route;
+
+/**
+ * 与平台无关的网络客户端
+ * 持有请求标签索引、分阶段耗时统计和幂等重试等策略组件，Android端的 NetworkApi 在此基础上构建OkGo使用的OkHttpClient；
+ * 在JVM上可以直接使用这里的阻塞API，请求在调用方线程上同步执行，不经过OkHttp的异步调度器
+ *
+ * JDK 21及以上 {@link #submit(Callable)} 使用虚拟线程执行，上千个并发请求不需要上千个平台线程；
+ * 低版本JDK和Android上自动退回到普通线程池。同时在途的阻塞请求数由 {@link #setMaxConcurrentCalls(int)} 限制
+ */
+public class NetworkClient {
+
+    private static final MediaType JSON = MediaType.parse("application/json; charset=utf-8");
+
+    private final CallRegistry callRegistry = new CallRegistry();
+    private final CompositeEventListenerFactory eventListenerFactory = new CompositeEventListenerFactory()
+            .add(callRegistry)
+            .add(RequestMetrics.getInstance())
+            .add(Tracer.getInstance());
+    private final IdempotencyInterceptor idempotencyInterceptor = new IdempotencyInterceptor(1);
+    private final List<EndpointPool> endpointPools = new CopyOnWriteArrayList<>();
+    private final RateLimiter rateLimiter = new RateLimiter();
+    private final DeferredRequestScheduler deferredScheduler = new DeferredRequestScheduler(this);
+    private final CompressionInterceptor compression = new CompressionInterceptor();
+
+    private volatile TokenManager tokenManager;
+    private volatile OkHttpClient okHttpClient;
+    private volatile Semaphore permits = new Semaphore(64);
+    private volatile int maxConcurrentCalls = 64;
+    private volatile ExecutorService executor;
+
+    /**
+     * 预置了超时、幂等重试、标签索引和耗时统计的Builder，平台层可继续添加Cookie、日志等配置
+     */
+    public OkHttpClient.Builder newClientBuilder() {
+        return new OkHttpClient.Builder()
+                // 开启追踪时为请求补上traceparent，之后的拦截器和服务端都能看到
+                .addInterceptor(Tracer.getInstance())
+                // 交互请求经过时射频已唤醒，顺带发出暂存的后台请求
+                .addInterceptor(deferredScheduler)
+                // 携带幂等键的写请求超时后可安全重试
+                .addInterceptor(idempotencyInterceptor)
+                // 设置了TokenManager时补上最新令牌，并在401时共享一次刷新后重放
+                .addInterceptor(new Interceptor() {
+                    @Override
+                    public Response intercept(Chain chain) throws IOException {
+                        TokenManager manager = tokenManager;
+                        return manager == null ? chain.proceed(chain.request()) : manager.intercept(chain);
+                    }
+                })
+                .authenticator(new Authenticator() {
+                    @Override
+                    public Request authenticate(Route route, Response response) throws IOException {
+                        TokenManager manager = tokenManager;
+                        return manager == null ? null : manager.authenticate(route, response);
+                    }
+                })
+                // 按主机、路由限流；经 enqueue 发出的请求已在分发前取得令牌，其余请求在此排队等待
+                .addInterceptor(rateLimiter)
+                // 请求地址属于某个地址池时改写到最优地址，连接失败时换地址重试
+                .addInterceptor(new Interceptor() {
+                    @Override
+                    public Response intercept(Chain chain) throws IOException {
+                        Request request = chain.request();
+                        for (EndpointPool pool : endpointPools) {
+                            if (pool.matches(request)) return pool.intercept(chain);
+                        }
+                        return chain.proceed(request);
+                    }
+                })
+                // 在地址池之后，按实际发往的主机协商请求体压缩和预共享字典
+                .addInterceptor(compression)
+                .readTimeout(10000, TimeUnit.MILLISECONDS)
+                .writeTimeout(10000, TimeUnit.MILLISECONDS)
+                .connectTimeout(10000, TimeUnit.MILLISECONDS)
+                // 请求标签索引（用于按tag快速取消）和分阶段耗时统计
+                .eventListenerFactory(eventListenerFactory);
+    }
+
+    public NetworkClient setOkHttpClient(OkHttpClient okHttpClient) {
+        this.okHttpClient = okHttpClient;
+        return this;
+    }
+
+    public OkHttpClient getOkHttpClient() {
+        OkHttpClient client = okHttpClient;
+        if (client == null) {
+            synchronized (this) {
+                if (okHttpClient == null) {
+                    okHttpClient = newClientBuilder().build();
+                }
+                client = okHttpClient;
+            }
+        }
+        return client;
+    }
+
+    /**
+     * 设置令牌管理器，可在客户端创建后随时设置或替换，传null关闭
+     */
+    public NetworkClient setTokenManager(TokenManager tokenManager) {
+        this.tokenManager = tokenManager;
+        return this;
+    }
+
+    public TokenManager getTokenManager() {
+        return tokenManager;
+    }
+
+    /**
+     * 添加地址池：以池中地址为前缀的请求按耗时和错误率路由，并开始后台探测；同一个池重复添加无效
+     */
+    public NetworkClient addEndpointPool(EndpointPool pool) {
+        if (endpointPools.contains(pool)) return this;
+        endpointPools.add(pool);
+        pool.startProbing(new Call.Factory() {
+            @Override
+            public Call newCall(Request request) {
+                return getOkHttpClient().newCall(request);
+            }
+        });
+        return this;
+    }
+
+    public NetworkClient removeEndpointPool(EndpointPool pool) {
+        if (endpointPools.remove(pool)) {
+            pool.stopProbing();
+        }
+        return this;
+    }
+
+    public CallRegistry getCallRegistry() {
+        return callRegistry;
+    }
+
+    public CompositeEventListenerFactory getEventListenerFactory() {
+        return eventListenerFactory;
+    }
+
+    public IdempotencyInterceptor getIdempotencyInterceptor() {
+        return idempotencyInterceptor;
+    }
+
+    /**
+     * 限流器，默认不限流，可随时添加主机或路由的限流配置
+     */
+    public RateLimiter getRateLimiter() {
+        return rateLimiter;
+    }
+
+    /**
+     * 请求体、响应体压缩配置，默认只在服务端声明支持时gzip请求体
+     */
+    public CompressionInterceptor getCompression() {
+        return compression;
+    }
+
+    /**
+     * 可延后请求的调度器，统计上报、预取等后台请求通过它集中发出
+     */
+    public DeferredRequestScheduler getDeferredScheduler() {
+        return deferredScheduler;
+    }
+
+    /**
+     * 同时在途的阻塞请求上限，超出时调用方线程等待
+     */
+    public NetworkClient setMaxConcurrentCalls(int maxConcurrentCalls) {
+        this.permits = new Semaphore(maxConcurrentCalls);
+        this.maxConcurrentCalls = maxConcurrentCalls;
+        return this;
+    }
+
+    public int getMaxConcurrentCalls() {
+        return maxConcurrentCalls;
+    }
+
+    /**
+     * GET请求
+     *
+     * @param type 返回数据类型，规则同 JsonCallback 的泛型
+     * @param tag  请求标签，可为null
+     */
+    public <T> T get(String url, Map<String, String> params, Type type, Object tag) throws IOException {
+        HttpUrl.Builder urlBuilder = HttpUrl.get(url).newBuilder();
+        if (params != null) {
+            for (Map.Entry<String, String> entry : params.entrySet()) {
+                urlBuilder.addQueryParameter(entry.getKey(), entry.getValue());
+            }
+        }
+        return execute(new Request.Builder().url(urlBuilder.build()).tag(tag).build(), type);
+    }
+
+    /**
+     * 表单POST请求
+     */
+    public <T> T post(String url, Map<String, String> params, Type type, Object tag) throws IOException {
+        FormBody.Builder body = new FormBody.Builder();
+        if (params != null) {
+            for (Map.Entry<String, String> entry : params.entrySet()) {
+                body.add(entry.getKey(), entry.getValue());
+            }
+        }
+        return execute(new Request.Builder().url(url).post(body.build()).tag(tag).build(), type);
+    }
+
+    /**
+     * JSON POST请求，自动生成幂等键
+     */
+    public <T> T postJson(String url, String json, Type type, Object tag) throws IOException {
+        return postJson(url, json, IdempotencyInterceptor.newKey(), type, tag);
+    }
+
+    /**
+     * JSON POST请求（指定幂等键），超时等网络错误由 IdempotencyInterceptor 安全重试
+     */
+    public <T> T postJson(String url, String json, String idempotencyKey, Type type, Object tag) throws IOException {
+        Request.Builder builder = new Request.Builder().url(url).post(RequestBody.create(JSON, json)).tag(tag);
+        if (idempotencyKey != null) {
+            builder.header(IdempotencyInterceptor.HEADER, idempotencyKey);
+        }
+        return execute(builder.build(), type);
+    }
+
+    /**
+     * 按预编译模板发送字符串请求体，复用模板解析好的地址、请求头和解析器
+     *
+     * @param idempotencyKey 幂等键，可为null
+     */
+    public <T> T execute(RequestTemplate template, String body, String idempotencyKey, Object tag) throws IOException {
+        ResponseConverter<?> converter = template.getConverter();
+        if (converter == null) {
+            throw new IllegalStateException("RequestTemplate has no return type, call returns(Type) first");
+        }
+        //noinspection unchecked
+        return execute(template.newJsonRequest(body, idempotencyKey, tag), (ResponseConverter<T>) converter);
+    }
+
+    /**
+     * 异步执行请求：超出限流速率时先在限流队列中排队，取得令牌后才交给OkHttp的调度器
+     *
+     * @param callback 结果回调，在OkHttp的线程上执行
+     * @return 请求对应的Call，可直接取消
+     */
+    public Call enqueue(Request request, Callback callback) {
+        Call call = getOkHttpClient().newCall(request);
+        rateLimiter.enqueue(call, callback);
+        return call;
+    }
+
+    /**
+     * 同步执行请求并解析，非2xx抛出 HttpStatusException，解析规则见 ResponseConverter
+     */
+    public <T> T execute(Request request, Type type) throws IOException {
+        return execute(request, new ResponseConverter<T>(type));
+    }
+
+    /**
+     * 同步执行请求并用指定解析器解析
+     */
+    public <T> T execute(Request request, ResponseConverter<T> converter) throws IOException {
+        Semaphore semaphore = permits;
+        try {
+            semaphore.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while waiting for a call slot");
+        }
+        try (Response response = getOkHttpClient().newCall(request).execute()) {
+            if (!response.isSuccessful()) {
+                throw new HttpStatusException(response.code(), response.message());
+            }
+            return converter.convert(response);
+        } catch (IOException | RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException(e);
+        } finally {
+            semaphore.release();
+        }
+    }
+
+    /**
+     * 在阻塞执行器上异步运行任务，任务内可直接调用本类的阻塞方法
+     */
+    public <T> CompletableFuture<T> submit(final Callable<T> task) {
+        final CompletableFuture<T> future = new CompletableFuture<>();
+        getExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    future.complete(task.call());
+                } catch (Throwable t) {
+                    future.completeExceptionally(t);
+                }
+            }
+        });
+        return future;
+    }
+
+    /**
+     * 执行阻塞请求的线程池：JDK 21+ 为每任务一个虚拟线程，否则为可伸缩的守护线程池
+     */
+    public ExecutorService getExecutor() {
+        ExecutorService service = executor;
+        if (service == null) {
+            synchronized (this) {
+                if (executor == null) {
+                    executor = newBlockingExecutor();
+                }
+                service = executor;
+            }
+        }
+        return service;
+    }
+
+    public NetworkClient setExecutor(ExecutorService executor) {
+        this.executor = executor;
+        return this;
+    }
+
+    /**
+     * 取消指定tag下的所有请求
+     *
+     * @return 取消的请求数
+     */
+    public int cancel(Object tag) {
+        return deferredScheduler.cancel(tag) + rateLimiter.cancel(tag) + callRegistry.cancel(tag);
+    }
+
+    /**
+     * 编译目标为Java 17，通过反射使用 Executors.newVirtualThreadPerTaskExecutor
+     */
+    static ExecutorService newBlockingExecutor() {
+        try {
+            Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) method.invoke(null);
+        } catch (Exception e) {
+            return Executors.newCachedThreadPool(new ThreadFactory() {
+                private final AtomicInteger count = new AtomicInteger();
+
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "OkNet-Blocking-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,480 @@
+package com.fyb.networklib.api;
+
+import com.fyb.networklib.util.ResponseConverter;
+import com.fyb.networklib.util.Trimmable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.function.BiConsumer;
+
+import okhttp3.Request;
+
+/**
+ * 分页列表加载器
+ * 1. 支持页码和游标两种分页参数，页码模式按 firstPage 递增，游标模式使用上一页返回的游标
+ * 2. 列表滚动时调用 {@link #onItemVisible(int)}，剩余未展示的条目少于预取距离时在后台加载下一页
+ * 3. 预取距离 = 滚动速度（条/秒）× 最近的请求耗时，限制在 [minPrefetch, maxPrefetch] 之间；滚得越快、网络越慢，越早开始预取
+ * 4. 内存中最多保留 maxPages 页，超出时丢弃离当前位置最远的页，条目位置保持不变；回滚到被丢弃的页时重新加载
+ * 5. 离开当前窗口的在途预取按tag取消，结果不会再回调
+ * 6. 内存紧张时（{@link #trimMemory(int)}）临时缩小保留的页数，压力解除后恢复maxPages
+ * 7. 加载失败的页按指数退避重试：退避期内滚动不会重新请求，避免网络异常时每次滚动回调都发出一个注定失败的请求
+ *
+ * 模板需为GET请求并通过 {@link RequestTemplate#returns(java.lang.reflect.Type)} 声明返回类型；
+ * 请求在 NetworkClient 的阻塞执行器上执行，回调在 {@link #setCallbackExecutor(Executor)} 指定的线程上执行
+ *
+ * @param <R> 接口返回类型，如 LzyResponse&lt;List&lt;Trip&gt;&gt;
+ * @param <T> 列表条目类型
+ */
+public class PagedLoader<R, T> implements Trimmable {
+
+    /**
+     * 从接口返回值中读取分页数据
+     */
+    public interface PageReader<R, T> {
+        /**
+         * 本页条目，返回null按空页处理
+         */
+        List<T> items(R response);
+
+        /**
+         * 游标模式下返回下一页游标，null表示没有更多；页码模式不会调用
+         */
+        String nextCursor(R response);
+    }
+
+    /**
+     * 分页事件回调，position为条目在整个列表中的位置
+     */
+    public interface Listener<T> {
+        /**
+         * 某一页加载完成（首次加载或被丢弃后重新加载）
+         */
+        void onPageLoaded(int page, int start, List<T> items);
+
+        /**
+         * 某一页因超出内存窗口被丢弃，条目位置不变，getItem返回null
+         */
+        void onPageDropped(int page, int start, int count);
+
+        void onError(int page, Throwable error);
+    }
+
+    /** 滚动速度和请求耗时的平滑系数 */
+    private static final double ALPHA = 0.3;
+    /** 尚无耗时样本时假定的请求耗时 */
+    private static final double DEFAULT_LATENCY_MS = 500;
+
+    private final NetworkClient client;
+    private final RequestTemplate template;
+    private final PageReader<R, T> reader;
+
+    private String pageParam = "page";
+    private boolean cursorMode;
+    private int firstPage = 1;
+    private String pageSizeParam;
+    private int pageSize;
+    private Map<String, String> params = Collections.emptyMap();
+    private int maxPages = 5;
+    private int minPrefetch = 5;
+    private int maxPrefetch = 100;
+    private Executor callbackExecutor = Runnable::run;
+    private Listener<T> listener;
+
+    // 以下状态均在this锁内访问
+    /** 每一页的请求键：页码或游标，游标模式第0页为null */
+    private final List<String> keys = new ArrayList<>();
+    /** 已加载过的每一页的条目数，页被丢弃后仍保留，用于计算位置 */
+    private final List<Integer> sizes = new ArrayList<>();
+    private final Map<Integer, List<T>> pages = new HashMap<>();
+    private final Map<Integer, Object> inFlight = new LinkedHashMap<>();
+    /** 加载失败的页：{连续失败次数, 可重试的System.nanoTime()} */
+    private final Map<Integer, long[]> failures = new HashMap<>();
+    private long retryBackoffMs = 1000;
+    private long maxRetryBackoffMs = 60000;
+    private boolean end;
+    private int generation;
+    private int currentPage;
+    private int trimLevel;
+    private int lastPosition = -1;
+    private long lastVisibleAt;
+    private double itemsPerSecond;
+    private double latencyMs = -1;
+
+    public PagedLoader(NetworkClient client, RequestTemplate template, PageReader<R, T> reader) {
+        if (template.getConverter() == null) {
+            throw new IllegalArgumentException("RequestTemplate has no return type, call returns(Type) first");
+        }
+        this.client = client;
+        this.template = template;
+        this.reader = reader;
+        keys.add(null);
+    }
+
+    /**
+     * 页码模式（默认），如 page=1、page=2
+     */
+    public synchronized PagedLoader<R, T> setPageParam(String pageParam, int firstPage) {
+        this.pageParam = pageParam;
+        this.firstPage = firstPage;
+        this.cursorMode = false;
+        return this;
+    }
+
+    /**
+     * 游标模式，第一页不带游标参数，之后使用 {@link PageReader#nextCursor(Object)} 的返回值
+     */
+    public synchronized PagedLoader<R, T> setCursorParam(String cursorParam) {
+        this.pageParam = cursorParam;
+        this.cursorMode = true;
+        return this;
+    }
+
+    /**
+     * 每页条数参数；页码模式下返回条数少于pageSize即认为没有更多
+     */
+    public synchronized PagedLoader<R, T> setPageSize(String pageSizeParam, int pageSize) {
+        this.pageSizeParam = pageSizeParam;
+        this.pageSize = pageSize;
+        return this;
+    }
+
+    /**
+     * 每一页都携带的查询参数，如筛选条件
+     */
+    public synchronized PagedLoader<R, T> setParams(Map<String, String> params) {
+        this.params = params == null ? Collections.<String, String>emptyMap() : new LinkedHashMap<>(params);
+        return this;
+    }
+
+    /**
+     * 内存中最多保留的页数，默认5，最少2
+     */
+    public synchronized PagedLoader<R, T> setMaxPages(int maxPages) {
+        this.maxPages = Math.max(2, maxPages);
+        return this;
+    }
+
+    /**
+     * 预取距离（条目数）的上下限，默认5~100
+     */
+    public synchronized PagedLoader<R, T> setPrefetchDistance(int minPrefetch, int maxPrefetch) {
+        this.minPrefetch = minPrefetch;
+        this.maxPrefetch = Math.max(minPrefetch, maxPrefetch);
+        return this;
+    }
+
+    /**
+     * 加载失败后的重试退避，每次连续失败翻倍，默认1秒~60秒；{@link #load()} 和 {@link #refresh()} 不受退避限制
+     */
+    public synchronized PagedLoader<R, T> setRetryBackoff(long retryBackoffMs, long maxRetryBackoffMs) {
+        this.retryBackoffMs = retryBackoffMs;
+        this.maxRetryBackoffMs = Math.max(retryBackoffMs, maxRetryBackoffMs);
+        return this;
+    }
+
+    /**
+     * 回调执行的线程，默认在请求线程直接回调；Android上传入主线程Handler
+     */
+    public PagedLoader<R, T> setCallbackExecutor(Executor callbackExecutor) {
+        this.callbackExecutor = callbackExecutor;
+        return this;
+    }
+
+    public PagedLoader<R, T> setListener(Listener<T> listener) {
+        this.listener = listener;
+        return this;
+    }
+
+    /**
+     * 加载第一页
+     */
+    public synchronized void load() {
+        failures.remove(0);
+        fetch(0);
+    }
+
+    /**
+     * 丢弃所有页并重新加载第一页，在途请求被取消；调用方需同时清空列表
+     */
+    public synchronized void refresh() {
+        release();
+        fetch(0);
+    }
+
+    /**
+     * 取消所有在途请求并清空数据，页面销毁时调用
+     */
+    public synchronized void release() {
+        generation++;
+        for (Object tag : inFlight.values()) {
+            client.cancel(tag);
+        }
+        inFlight.clear();
+        failures.clear();
+        keys.clear();
+        keys.add(null);
+        sizes.clear();
+        pages.clear();
+        end = false;
+        currentPage = 0;
+        lastPosition = -1;
+        itemsPerSecond = 0;
+    }
+
+    /**
+     * 列表展示到某个位置时调用（如RecyclerView滚动回调或onBindViewHolder）
+     * 根据滚动速度更新预取距离，按需预取下一页、重新加载被丢弃或加载失败（退避期已过）的页，并取消离开窗口的预取
+     */
+    public synchronized void onItemVisible(int position) {
+        long now = System.nanoTime();
+        if (lastPosition >= 0 && now > lastVisibleAt) {
+            double speed = Math.abs(position - lastPosition) * 1e9 / (now - lastVisibleAt);
+            itemsPerSecond = itemsPerSecond * (1 - ALPHA) + speed * ALPHA;
+        }
+        lastPosition = position;
+        lastVisibleAt = now;
+        if (sizes.isEmpty()) return;
+
+        int page = pageOf(position);
+        currentPage = page;
+        cancelOutsideWindow();
+        int distance = getPrefetchDistance();
+        if (!pages.containsKey(page)) {
+            fetch(page);
+        }
+        // 向前滚动时同样提前加载被丢弃的上一页
+        if (page > 0 && !pages.containsKey(page - 1) && position - startOf(page) <= distance) {
+            fetch(page - 1);
+        }
+        if (!end && getItemCount() - 1 - position <= distance) {
+            fetch(sizes.size());
+        }
+    }
+
+    /**
+     * 位置上的条目，尚未加载或已被丢弃时返回null
+     */
+    public synchronized T getItem(int position) {
+        if (position < 0) return null;
+        int start = 0;
+        for (int page = 0; page < sizes.size(); page++) {
+            int size = sizes.get(page);
+            if (position < start + size) {
+                List<T> items = pages.get(page);
+                return items == null || position - start >= items.size() ? null : items.get(position - start);
+            }
+            start += size;
+        }
+        return null;
+    }
+
+    /**
+     * 已知的条目总数（含已被丢弃的页）
+     */
+    public synchronized int getItemCount() {
+        int count = 0;
+        for (int size : sizes) {
+            count += size;
+        }
+        return count;
+    }
+
+    /**
+     * 是否已经没有更多数据
+     */
+    public synchronized boolean isEnd() {
+        return end;
+    }
+
+    /**
+     * 当前的预取距离（条目数）
+     */
+    public synchronized int getPrefetchDistance() {
+        double latency = latencyMs < 0 ? DEFAULT_LATENCY_MS : latencyMs;
+        long distance = (long) Math.ceil(itemsPerSecond * latency / 1000);
+        return (int) Math.max(minPrefetch, Math.min(maxPrefetch, distance));
+    }
+
+    /**
+     * 平滑后的单页请求耗时，尚无样本时为-1
+     */
+    public synchronized double getLatencyMs() {
+        return latencyMs;
+    }
+
+    private void fetch(final int page) {
+        if (inFlight.containsKey(page) || page >= keys.size() || (page >= sizes.size() && end)) return;
+        long[] failure = failures.get(page);
+        if (failure != null && System.nanoTime() - failure[1] < 0) return;
+        final Object tag = new Object();
+        final int fetchGeneration = generation;
+        final Request request = newRequest(page, tag);
+        //noinspection unchecked
+        final ResponseConverter<R> converter = (ResponseConverter<R>) template.getConverter();
+        final long start = System.nanoTime();
+        inFlight.put(page, tag);
+        client.submit(new Callable<R>() {
+            @Override
+            public R call() throws Exception {
+                return client.execute(request, converter);
+            }
+        }).whenComplete(new BiConsumer<R, Throwable>() {
+            @Override
+            public void accept(R response, Throwable error) {
+                onFetched(fetchGeneration, page, tag, System.nanoTime() - start, response, error);
+            }
+        });
+    }
+
+    private Request newRequest(int page, Object tag) {
+        Map<String, String> query = new LinkedHashMap<>(params);
+        String key = cursorMode ? keys.get(page) : String.valueOf(firstPage + page);
+        if (key != null) {
+            query.put(pageParam, key);
+        }
+        if (pageSizeParam != null) {
+            query.put(pageSizeParam, String.valueOf(pageSize));
+        }
+        return template.newBuilder(query, tag).build();
+    }
+
+    private void onFetched(int fetchGeneration, final int page, Object tag, long nanos, R response, final Throwable error) {
+        final List<T> items;
+        final int start;
+        final Map<Integer, int[]> dropped = new LinkedHashMap<>();
+        synchronized (this) {
+            // 已被取消或刷新过，结果作废
+            if (fetchGeneration != generation || inFlight.get(page) != tag) return;
+            inFlight.remove(page);
+            if (error != null) {
+                long[] failure = failures.get(page);
+                long attempts = failure == null ? 1 : failure[0] + 1;
+                long backoff = Math.min(maxRetryBackoffMs, retryBackoffMs << Math.min(attempts - 1, 20));
+                failures.put(page, new long[]{attempts, System.nanoTime() + backoff * 1000000L});
+                items = null;
+                start = -1;
+            } else {
+                failures.remove(page);
+                double millis = nanos / 1e6;
+                latencyMs = latencyMs < 0 ? millis : latencyMs * (1 - ALPHA) + millis * ALPHA;
+                List<T> read = reader.items(response);
+                items = read == null ? Collections.<T>emptyList() : read;
+                if (page == sizes.size()) {
+                    sizes.add(items.size());
+                    if (cursorMode) {
+                        String next = reader.nextCursor(response);
+                        if (next == null) {
+                            end = true;
+                        } else {
+                            keys.add(next);
+                        }
+                    } else {
+                        keys.add(String.valueOf(firstPage + page + 1));
+                        end = items.isEmpty() || (pageSizeParam != null && items.size() < pageSize);
+                    }
+                }
+                pages.put(page, items);
+                start = startOf(page);
+                trim(page, dropped);
+            }
+        }
+        final Listener<T> current = listener;
+        if (current == null) return;
+        callbackExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (error != null) {
+                    current.onError(page, error);
+                    return;
+                }
+                for (Map.Entry<Integer, int[]> entry : dropped.entrySet()) {
+                    current.onPageDropped(entry.getKey(), entry.getValue()[0], entry.getValue()[1]);
+                }
+                current.onPageLoaded(page, start, items);
+            }
+        });
+    }
+
+    /**
+     * 内存紧张时收缩窗口：LOW只保留2页，CRITICAL只保留当前页，NONE恢复maxPages；被丢弃的页通过onPageDropped通知
+     */
+    @Override
+    public void trimMemory(int level) {
+        final Map<Integer, int[]> dropped = new LinkedHashMap<>();
+        synchronized (this) {
+            trimLevel = level;
+            trim(-1, dropped);
+        }
+        final Listener<T> current = listener;
+        if (current == null || dropped.isEmpty()) return;
+        callbackExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                for (Map.Entry<Integer, int[]> entry : dropped.entrySet()) {
+                    current.onPageDropped(entry.getKey(), entry.getValue()[0], entry.getValue()[1]);
+                }
+            }
+        });
+    }
+
+    private int pageLimit() {
+        return trimLevel >= Trimmable.CRITICAL ? 1 : trimLevel >= Trimmable.LOW ? Math.min(2, maxPages) : maxPages;
+    }
+
+    /**
+     * 超出页数上限时丢弃离当前位置最远的页，刚加载的页不丢弃
+     */
+    private void trim(int loaded, Map<Integer, int[]> dropped) {
+        while (pages.size() > pageLimit()) {
+            int farthest = -1;
+            for (int page : pages.keySet()) {
+                if (page != loaded && (farthest < 0 || Math.abs(page - currentPage) > Math.abs(farthest - currentPage))) {
+                    farthest = page;
+                }
+            }
+            if (farthest < 0) return;
+            pages.remove(farthest);
+            dropped.put(farthest, new int[]{startOf(farthest), sizes.get(farthest)});
+        }
+    }
+
+    /**
+     * 取消不在当前窗口内的在途请求
+     */
+    private void cancelOutsideWindow() {
+        int radius = maxPages / 2;
+        Iterator<Map.Entry<Integer, Object>> iterator = inFlight.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Integer, Object> entry = iterator.next();
+            if (Math.abs(entry.getKey() - currentPage) > radius) {
+                client.cancel(entry.getValue());
+                iterator.remove();
+            }
+        }
+    }
+
+    private int pageOf(int position) {
+        int start = 0;
+        for (int page = 0; page < sizes.size(); page++) {
+            start += sizes.get(page);
+            if (position < start) return page;
+        }
+        return sizes.size() - 1;
+    }
+
+    private int startOf(int page) {
+        int start = 0;
+        for (int i = 0; i < page && i < sizes.size(); i++) {
+            start += sizes.get(i);
+        }
+        return start;
+    }
+
+}
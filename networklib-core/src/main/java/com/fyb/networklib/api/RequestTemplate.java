@@ -0,0 +1,155 @@
+package com.fyb.networklib.api;
+
+import com.fyb.networklib.util.IdempotencyInterceptor;
+import com.fyb.networklib.util.ResponseConverter;
+
+import java.lang.reflect.Type;
+import java.util.Map;
+
+import okhttp3.Headers;
+import okhttp3.HttpUrl;
+import okhttp3.MediaType;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+
+/**
+ * 预编译的请求模板
+ * 固定接口的请求方法、地址、静态请求头和返回类型只声明一次：地址在创建时解析为HttpUrl，静态请求头合并为不可变的Headers，
+ * 解析器按返回类型创建一次后复用；每次调用只传入请求体、幂等键和标签，不再重复拼接、解析URL和合并请求头
+ *
+ * 声明完成后模板是线程安全的，适合作为成员变量长期持有，例如：
+ * <pre>
+ * RequestTemplate addTrip = RequestTemplate.post(baseUrl + "api/trip-manage/")
+ *         .header("Accept", "application/json");
+ * Request request = addTrip.newJsonRequest(json, IdempotencyInterceptor.newKey(), tag);
+ * </pre>
+ */
+public class RequestTemplate {
+
+    public static final MediaType JSON = MediaType.parse("application/json; charset=utf-8");
+
+    private final String method;
+    private final HttpUrl url;
+    private volatile Headers headers = Headers.of();
+    private volatile MediaType contentType = JSON;
+    private volatile Type type;
+    private volatile ResponseConverter<?> converter;
+
+    /**
+     * @param method 请求方法，如 GET、POST
+     * @param url    完整的请求地址，非法地址直接抛出 IllegalArgumentException
+     */
+    public RequestTemplate(String method, String url) {
+        this.method = method;
+        this.url = HttpUrl.get(url);
+    }
+
+    public static RequestTemplate get(String url) {
+        return new RequestTemplate("GET", url);
+    }
+
+    public static RequestTemplate post(String url) {
+        return new RequestTemplate("POST", url);
+    }
+
+    public static RequestTemplate put(String url) {
+        return new RequestTemplate("PUT", url);
+    }
+
+    public static RequestTemplate delete(String url) {
+        return new RequestTemplate("DELETE", url);
+    }
+
+    /**
+     * 声明静态请求头，所有由该模板生成的请求都会携带
+     */
+    public synchronized RequestTemplate header(String name, String value) {
+        headers = headers.newBuilder().add(name, value).build();
+        return this;
+    }
+
+    /**
+     * 字符串请求体的类型，默认 application/json
+     */
+    public RequestTemplate contentType(MediaType contentType) {
+        this.contentType = contentType;
+        return this;
+    }
+
+    /**
+     * 声明返回数据类型，规则同 JsonCallback 的泛型；对应的解析器只创建一次，
+     * 供 {@link NetworkClient#execute(RequestTemplate, String, String, Object)} 等阻塞API复用
+     */
+    public RequestTemplate returns(Type type) {
+        this.type = type;
+        this.converter = type == null ? null : new ResponseConverter<>(type);
+        return this;
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    public HttpUrl getUrl() {
+        return url;
+    }
+
+    public Headers getHeaders() {
+        return headers;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * 返回类型对应的解析器，未声明返回类型时为null
+     */
+    public ResponseConverter<?> getConverter() {
+        return converter;
+    }
+
+    /**
+     * 以模板为基础创建请求，调用方可以继续追加本次请求特有的请求头
+     *
+     * @param body 请求体，GET等不带请求体的方法传null
+     * @param tag  请求标签，可为null
+     */
+    public Request.Builder newBuilder(RequestBody body, Object tag) {
+        return new Request.Builder()
+                .url(url)
+                .headers(headers)
+                .method(method, body)
+                .tag(tag);
+    }
+
+    /**
+     * 追加查询参数后创建请求，只在有参数时才重建URL
+     */
+    public Request.Builder newBuilder(Map<String, String> query, Object tag) {
+        Request.Builder builder = newBuilder((RequestBody) null, tag);
+        if (query != null && !query.isEmpty()) {
+            HttpUrl.Builder urlBuilder = url.newBuilder();
+            for (Map.Entry<String, String> entry : query.entrySet()) {
+                urlBuilder.addQueryParameter(entry.getKey(), entry.getValue());
+            }
+            builder.url(urlBuilder.build());
+        }
+        return builder;
+    }
+
+    /**
+     * 创建字符串请求体的请求
+     *
+     * @param body           请求体，类型由 {@link #contentType(MediaType)} 指定
+     * @param idempotencyKey 幂等键，可为null
+     * @param tag            请求标签，可为null
+     */
+    public Request newJsonRequest(String body, String idempotencyKey, Object tag) {
+        Request.Builder builder = newBuilder(RequestBody.create(contentType, body), tag);
+        if (idempotencyKey != null) {
+            builder.header(IdempotencyInterceptor.HEADER, idempotencyKey);
+        }
+        return builder.build();
+    }
+}
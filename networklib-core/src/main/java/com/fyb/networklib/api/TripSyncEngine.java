@@ -0,0 +1,202 @@
+package com.fyb.networklib.api;
+
+import com.fyb.networklib.data.BaseEntity;
+import com.fyb.networklib.data.TripDelta;
+import com.fyb.networklib.util.ResponseConverter;
+import com.fyb.networklib.util.SyncStore;
+import com.google.gson.reflect.TypeToken;
+
+import java.lang.reflect.Type;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.BiConsumer;
+
+/**
+ * 行程增量同步
+ * 本地 {@link SyncStore} 保存行程记录和同步令牌，同步时只向服务端请求该令牌之后的变更，
+ * 合并后原子写回文件；读取直接从本地存储返回，冷启动加载文件后即可展示，不必等待网络
+ *
+ * 接口约定：GET {baseUrl}api/trip-manage/changes/?since=令牌&amp;limit=条数，返回 BaseEntity&lt;TripDelta&gt;；
+ * 首次同步不带since，服务端返回全量（full=true）；hasMore为true时用新令牌继续拉取
+ */
+public class TripSyncEngine {
+
+    /**
+     * 同步结果回调
+     */
+    public interface Listener {
+        /**
+         * 同步完成
+         *
+         * @param changedIds 新增、修改或删除的行程ID，为空表示没有变化
+         */
+        void onSynced(Set<String> changedIds);
+
+        void onError(Throwable error);
+    }
+
+    private static final Type DELTA = new TypeToken<BaseEntity<TripDelta>>() {}.getType();
+
+    private final NetworkClient client;
+    private final RequestTemplate template;
+    private final SyncStore store;
+    private volatile int batchSize = 500;
+    private volatile int maxBatches = 20;
+    private volatile Executor callbackExecutor = Runnable::run;
+    private volatile Listener listener;
+    private CompletableFuture<Set<String>> inFlight;
+    /** 每次reset加一，之前发起的同步不再合并和落盘 */
+    private int generation;
+
+    public TripSyncEngine(NetworkClient client, String baseUrl, SyncStore store) {
+        this.client = client;
+        this.template = RequestTemplate.get(baseUrl + "api/trip-manage/changes/").returns(DELTA);
+        this.store = store;
+    }
+
+    /**
+     * 每批最多拉取的变更条数，默认500
+     */
+    public TripSyncEngine setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+        return this;
+    }
+
+    /**
+     * 单次同步最多连续拉取的批数，默认20，剩余变更留到下次同步
+     */
+    public TripSyncEngine setMaxBatches(int maxBatches) {
+        this.maxBatches = maxBatches;
+        return this;
+    }
+
+    /**
+     * 回调执行的线程，默认在同步线程直接回调；Android上传入主线程Handler
+     */
+    public TripSyncEngine setCallbackExecutor(Executor callbackExecutor) {
+        this.callbackExecutor = callbackExecutor;
+        return this;
+    }
+
+    public TripSyncEngine setListener(Listener listener) {
+        this.listener = listener;
+        return this;
+    }
+
+    /**
+     * 本地存储，load完成后可直接读取
+     */
+    public SyncStore getStore() {
+        return store;
+    }
+
+    /**
+     * 在后台线程加载本地存储，冷启动时先调用再展示本地数据
+     */
+    public CompletableFuture<SyncStore> load() {
+        return client.submit(new Callable<SyncStore>() {
+            @Override
+            public SyncStore call() {
+                store.load();
+                return store;
+            }
+        });
+    }
+
+    /**
+     * 发起一次增量同步；已有同步在进行时返回同一个结果
+     */
+    public synchronized CompletableFuture<Set<String>> sync() {
+        if (inFlight != null) return inFlight;
+        final int current = generation;
+        final CompletableFuture<Set<String>> future = client.submit(new Callable<Set<String>>() {
+            @Override
+            public Set<String> call() throws Exception {
+                return pull(current);
+            }
+        });
+        inFlight = future;
+        future.whenComplete(new BiConsumer<Set<String>, Throwable>() {
+            @Override
+            public void accept(final Set<String> changed, final Throwable error) {
+                synchronized (TripSyncEngine.this) {
+                    if (inFlight == future) inFlight = null;
+                }
+                final Listener current = listener;
+                if (current == null) return;
+                callbackExecutor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (error != null) {
+                            current.onError(error);
+                        } else {
+                            current.onSynced(changed);
+                        }
+                    }
+                });
+            }
+        });
+        return future;
+    }
+
+    /**
+     * 取消进行中的同步，已合并的批次保留
+     */
+    public void cancel() {
+        client.cancel(this);
+    }
+
+    /**
+     * 清空本地记录和同步令牌，如退出登录时；进行中的同步以CancellationException结束，不会再写入旧数据，下次同步拉取全量
+     */
+    public void reset() {
+        synchronized (this) {
+            generation++;
+            inFlight = null;
+        }
+        cancel();
+        store.clear();
+    }
+
+    private Set<String> pull(int started) throws Exception {
+        store.load();
+        //noinspection unchecked
+        ResponseConverter<BaseEntity<TripDelta>> converter =
+                (ResponseConverter<BaseEntity<TripDelta>>) template.getConverter();
+        Set<String> changed = new LinkedHashSet<>();
+        for (int batch = 0; batch < maxBatches; batch++) {
+            Map<String, String> query = new LinkedHashMap<>();
+            String token = store.getSyncToken();
+            if (token != null) {
+                query.put("since", token);
+            }
+            query.put("limit", String.valueOf(batchSize));
+            BaseEntity<TripDelta> entity = client.execute(template.newBuilder(query, this).build(), converter);
+            if (entity == null || !entity.isSuccess() || entity.getData() == null) {
+                throw new IllegalStateException("同步失败：" + (entity == null ? null : entity.getMsg()));
+            }
+            TripDelta delta = entity.getData();
+            synchronized (this) {
+                checkGeneration(started);
+                changed.addAll(store.apply(delta));
+            }
+            checkGeneration(started);
+            // 每批都落盘，中途失败时下次从已合并的位置继续
+            store.save();
+            if (!delta.isHasMore()) break;
+        }
+        return changed;
+    }
+
+    private synchronized void checkGeneration(int started) {
+        if (started != generation) {
+            throw new CancellationException("sync reset");
+        }
+    }
+}
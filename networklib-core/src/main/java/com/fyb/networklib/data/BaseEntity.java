@@ -0,0 +1,117 @@
+package com.fyb.networklib.data;
+
+import com.fyb.networklib.util.Convert;
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.annotations.JsonAdapter;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.io.Serializable;
+
+@JsonAdapter(BaseEntity.AdapterFactory.class)
+public class BaseEntity<T> implements Serializable {
+
+    private int code;
+    private T data;
+    private String msg;
+    private boolean success;
+
+    public boolean isSuccess() {
+        return code == 2000;
+    }
+
+    public int getCode() {
+        return code;
+    }
+
+    public void setCode(int code) {
+        this.code = code;
+    }
+
+    public T getData() {
+        return data;
+    }
+
+    public void setData(T data) {
+        this.data = data;
+    }
+
+    public String getMsg() {
+        return msg;
+    }
+
+    public void setMsg(String msg) {
+        this.msg = msg;
+    }
+
+    /**
+     * 手写的解析器，不经反射绑定字段；data按泛型实参解析，子类仍走Gson默认的反射解析
+     */
+    static final class AdapterFactory implements TypeAdapterFactory {
+        @Override
+        @SuppressWarnings("unchecked")
+        public <R> TypeAdapter<R> create(Gson gson, TypeToken<R> typeToken) {
+            if (typeToken.getRawType() != BaseEntity.class) return null;
+            return (TypeAdapter<R>) new Adapter<>(gson, gson.getAdapter(TypeToken.get(Convert.typeArgument(typeToken.getType(), 0))));
+        }
+    }
+
+    private static final class Adapter<T> extends TypeAdapter<BaseEntity<T>> {
+        private final TypeAdapter<Integer> intAdapter;
+        private final TypeAdapter<String> stringAdapter;
+        private final TypeAdapter<Boolean> booleanAdapter;
+        private final TypeAdapter<T> dataAdapter;
+
+        @SuppressWarnings("unchecked")
+        Adapter(Gson gson, TypeAdapter<?> dataAdapter) {
+            this.intAdapter = gson.getAdapter(int.class);
+            this.stringAdapter = gson.getAdapter(String.class);
+            this.booleanAdapter = gson.getAdapter(boolean.class);
+            this.dataAdapter = (TypeAdapter<T>) dataAdapter;
+        }
+
+        @Override
+        public void write(JsonWriter out, BaseEntity<T> value) throws IOException {
+            out.beginObject();
+            out.name("code").value(value.code);
+            out.name("data");
+            dataAdapter.write(out, value.data);
+            out.name("msg");
+            stringAdapter.write(out, value.msg);
+            out.name("success").value(value.success);
+            out.endObject();
+        }
+
+        @Override
+        public BaseEntity<T> read(JsonReader in) throws IOException {
+            BaseEntity<T> entity = new BaseEntity<>();
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "code":
+                        Integer code = intAdapter.read(in);
+                        if (code != null) entity.code = code;
+                        break;
+                    case "data":
+                        entity.data = dataAdapter.read(in);
+                        break;
+                    case "msg":
+                        entity.msg = stringAdapter.read(in);
+                        break;
+                    case "success":
+                        Boolean success = booleanAdapter.read(in);
+                        if (success != null) entity.success = success;
+                        break;
+                    default:
+                        in.skipValue();
+                }
+            }
+            in.endObject();
+            return entity;
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.fyb.networklib.data;
+
+import com.google.gson.JsonObject;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * 行程增量同步接口的返回数据
+ * 服务端返回自 since 令牌之后新增或修改的记录、被删除的记录ID，以及下一次同步使用的令牌；
+ * 令牌过期或无法增量计算时 full 为true，此时 upserts 为全量数据，客户端需先清空本地记录
+ */
+public class TripDelta implements Serializable {
+
+    private String syncToken;
+    private List<JsonObject> upserts;
+    private List<String> deletes;
+    private boolean hasMore;
+    private boolean full;
+
+    public String getSyncToken() {
+        return syncToken;
+    }
+
+    public void setSyncToken(String syncToken) {
+        this.syncToken = syncToken;
+    }
+
+    public List<JsonObject> getUpserts() {
+        return upserts;
+    }
+
+    public void setUpserts(List<JsonObject> upserts) {
+        this.upserts = upserts;
+    }
+
+    public List<String> getDeletes() {
+        return deletes;
+    }
+
+    public void setDeletes(List<String> deletes) {
+        this.deletes = deletes;
+    }
+
+    /**
+     * 本批之后是否还有更多变更，需要用新令牌继续拉取
+     */
+    public boolean isHasMore() {
+        return hasMore;
+    }
+
+    public void setHasMore(boolean hasMore) {
+        this.hasMore = hasMore;
+    }
+
+    public boolean isFull() {
+        return full;
+    }
+
+    public void setFull(boolean full) {
+        this.full = full;
+    }
+}
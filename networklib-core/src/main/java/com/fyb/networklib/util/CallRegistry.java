@@ -0,0 +1,96 @@
+package com.fyb.networklib.util;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import okhttp3.Call;
+import okhttp3.EventListener;
+
+/**
+ * 请求标签索引
+ * 通过OkHttp的EventListener在请求入队时登记、完成或失败时移除，维护 tag -> Call 的索引，
+ * 按tag取消时只需处理该tag下的请求，而不必像 OkGo.cancelTag 那样遍历调度器中的全部请求
+ *
+ * 索引强引用tag，直到callEnd（响应体关闭后才触发）或callFailed；以Activity等短生命周期对象为tag时，
+ * 必须关闭响应体或按tag取消，否则该对象会一直被持有
+ */
+public class CallRegistry extends EventListener implements EventListener.Factory {
+
+    private final Map<Object, Set<Call>> calls = new HashMap<>();
+
+    @Override
+    public EventListener create(Call call) {
+        // 监听器本身无状态，所有请求共用同一个实例
+        return this;
+    }
+
+    @Override
+    public void callStart(Call call) {
+        Object tag = call.request().tag();
+        if (tag == null) return;
+        synchronized (calls) {
+            Set<Call> set = calls.get(tag);
+            if (set == null) {
+                set = new HashSet<>();
+                calls.put(tag, set);
+            }
+            set.add(call);
+        }
+    }
+
+    @Override
+    public void callEnd(Call call) {
+        remove(call);
+    }
+
+    @Override
+    public void callFailed(Call call, IOException ioe) {
+        remove(call);
+    }
+
+    /**
+     * 取消指定tag下的所有请求
+     *
+     * @param tag 请求标签
+     * @return 被取消的请求数量
+     */
+    public int cancel(Object tag) {
+        if (tag == null) return 0;
+        List<Call> snapshot;
+        synchronized (calls) {
+            Set<Call> set = calls.remove(tag);
+            if (set == null) return 0;
+            snapshot = new ArrayList<>(set);
+        }
+        for (Call call : snapshot) {
+            call.cancel();
+        }
+        return snapshot.size();
+    }
+
+    /**
+     * 获取指定tag下进行中的请求数量
+     */
+    public int count(Object tag) {
+        synchronized (calls) {
+            Set<Call> set = calls.get(tag);
+            return set == null ? 0 : set.size();
+        }
+    }
+
+    private void remove(Call call) {
+        Object tag = call.request().tag();
+        if (tag == null) return;
+        synchronized (calls) {
+            Set<Call> set = calls.get(tag);
+            if (set != null && set.remove(call) && set.isEmpty()) {
+                calls.remove(tag);
+            }
+        }
+    }
+}
@@ -0,0 +1,339 @@
+package com.fyb.networklib.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import okhttp3.Call;
+import okhttp3.Headers;
+import okhttp3.HttpUrl;
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+
+/**
+ * 录制/回放拦截器，用于离线、可重复的性能测试和回归测试
+ * 1. 录制模式：请求照常发出，把请求和响应（状态、响应头、响应体、耗时）追加到gzip压缩的磁带文件，每条记录一个gzip分段，进程中途退出也不会损坏已录制的部分
+ * 2. 回放模式：完全不访问网络，按 方法+URL+请求体校验和 匹配录制的响应；同一请求录制多次时按录制顺序依次返回，用完后重复最后一条；
+ *    可按录制耗时或按比例缩放后的耗时等待再返回，未录制的请求抛出IOException
+ *
+ * 作为应用拦截器添加在拦截器链的末尾，之后的连接、TLS等阶段在回放时不会发生，解析和回调投递的耗时与真实请求一致；
+ * 事件流（text/event-stream）和超过 maxBodyBytes 的响应不录制
+ */
+public class CassetteInterceptor implements Interceptor {
+
+    public enum Mode {
+        RECORD,
+        REPLAY
+    }
+
+    private static final int VERSION = 1;
+
+    private final Mode mode;
+    private final File file;
+    private final Map<String, List<Entry>> entries = new HashMap<>();
+    private final Map<String, Integer> cursors = new HashMap<>();
+    private volatile Set<String> ignoredQueryParams = Collections.emptySet();
+    private final AtomicLong recorded = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong writeErrors = new AtomicLong();
+    private volatile double timeScale = 1.0;
+    private volatile long maxBodyBytes = 4 * 1024 * 1024;
+
+    private CassetteInterceptor(Mode mode, File file) {
+        this.mode = mode;
+        this.file = file;
+    }
+
+    /**
+     * 录制到文件，文件已存在时在末尾追加
+     */
+    public static CassetteInterceptor record(File file) {
+        return new CassetteInterceptor(Mode.RECORD, file);
+    }
+
+    /**
+     * 从文件加载磁带并回放
+     */
+    public static CassetteInterceptor replay(File file) throws IOException {
+        try (InputStream in = new FileInputStream(file)) {
+            return replay(in);
+        }
+    }
+
+    /**
+     * 从输入流加载磁带并回放，如Android测试中的assets文件
+     */
+    public static CassetteInterceptor replay(InputStream in) throws IOException {
+        CassetteInterceptor cassette = new CassetteInterceptor(Mode.REPLAY, null);
+        cassette.load(in);
+        return cassette;
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    /**
+     * 回放耗时的缩放比例：1为按录制耗时，0为立即返回，2为慢一倍
+     */
+    public CassetteInterceptor setTimeScale(double timeScale) {
+        this.timeScale = timeScale;
+        return this;
+    }
+
+    /**
+     * 匹配时忽略的查询参数，如时间戳、随机数
+     */
+    public synchronized CassetteInterceptor ignoreQueryParams(String... names) {
+        Set<String> updated = new HashSet<>(ignoredQueryParams);
+        updated.addAll(Arrays.asList(names));
+        ignoredQueryParams = updated;
+        return this;
+    }
+
+    /**
+     * 录制的响应体上限，超出的响应不录制
+     */
+    public CassetteInterceptor setMaxBodyBytes(long maxBodyBytes) {
+        this.maxBodyBytes = maxBodyBytes;
+        return this;
+    }
+
+    /**
+     * 已录制的条数（录制模式）或磁带中的条数（回放模式）
+     */
+    public long getRecordedCount() {
+        return recorded.get();
+    }
+
+    /**
+     * 回放时未命中的请求数
+     */
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * 录制时写入磁带失败的次数（如磁盘已满、目录不可写），写入失败不影响请求本身
+     */
+    public long getWriteErrorCount() {
+        return writeErrors.get();
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        return mode == Mode.REPLAY ? replay(chain, request) : record(chain, request);
+    }
+
+    private Response record(Chain chain, Request request) throws IOException {
+        // 发出前计算匹配键，请求体（文件、带进度的上传）发出后不再重复读取
+        String key = keyOf(request);
+        long start = System.nanoTime();
+        Response response = chain.proceed(request);
+        ResponseBody body = response.body();
+        MediaType contentType = body == null ? null : body.contentType();
+        if (contentType != null && "event-stream".equals(contentType.subtype())) {
+            return response;
+        }
+        byte[] bytes = body == null ? new byte[0] : response.peekBody(maxBodyBytes + 1).bytes();
+        if (bytes.length > maxBodyBytes) {
+            return response;
+        }
+        Entry entry = new Entry();
+        entry.key = key;
+        entry.code = response.code();
+        entry.message = response.message();
+        entry.protocol = response.protocol().toString();
+        entry.headers = response.headers();
+        entry.body = bytes;
+        entry.nanos = System.nanoTime() - start;
+        try {
+            append(entry);
+        } catch (IOException e) {
+            // 服务端已经响应，磁带写入失败不能让请求失败
+            writeErrors.incrementAndGet();
+        }
+        return response;
+    }
+
+    private Response replay(Chain chain, Request request) throws IOException {
+        String key = keyOf(request);
+        Entry entry;
+        synchronized (this) {
+            List<Entry> list = entries.get(key);
+            if (list == null) {
+                entry = null;
+            } else {
+                int index = cursors.containsKey(key) ? cursors.get(key) : 0;
+                entry = list.get(Math.min(index, list.size() - 1));
+                cursors.put(key, index + 1);
+            }
+        }
+        if (entry == null) {
+            misses.incrementAndGet();
+            throw new IOException("no recorded response for " + key);
+        }
+        long sent = System.currentTimeMillis();
+        sleep(chain.call(), (long) (entry.nanos * timeScale));
+        String type = entry.headers.get("Content-Type");
+        return new Response.Builder()
+                .request(request)
+                .protocol(Protocol.get(entry.protocol))
+                .code(entry.code)
+                .message(entry.message)
+                .headers(entry.headers)
+                .body(ResponseBody.create(type == null ? null : MediaType.parse(type), entry.body))
+                .sentRequestAtMillis(sent)
+                .receivedResponseAtMillis(System.currentTimeMillis())
+                .build();
+    }
+
+    /**
+     * 分段等待，请求被取消时尽快返回
+     */
+    private static void sleep(Call call, long nanos) throws IOException {
+        long deadline = System.nanoTime() + nanos;
+        try {
+            long remaining;
+            while ((remaining = deadline - System.nanoTime()) > 0) {
+                if (call.isCanceled()) throw new IOException("Canceled");
+                TimeUnit.NANOSECONDS.sleep(Math.min(remaining, TimeUnit.MILLISECONDS.toNanos(50)));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while replaying");
+        }
+    }
+
+    /**
+     * 匹配键：方法 + 去掉忽略参数的URL + 请求体CRC32
+     */
+    private String keyOf(Request request) throws IOException {
+        HttpUrl url = request.url();
+        Set<String> ignored = ignoredQueryParams;
+        if (!ignored.isEmpty() && url.querySize() > 0) {
+            HttpUrl.Builder builder = url.newBuilder();
+            for (String name : ignored) {
+                builder.removeAllQueryParameters(name);
+            }
+            url = builder.build();
+        }
+        StringBuilder key = new StringBuilder(request.method()).append(' ').append(url);
+        RequestBody body = request.body();
+        if (body != null) {
+            long length = body.contentLength();
+            if (length >= 0 && length <= maxBodyBytes) {
+                Buffer buffer = new Buffer();
+                body.writeTo(buffer);
+                CRC32 crc = new CRC32();
+                crc.update(buffer.readByteArray());
+                key.append('#').append(Long.toHexString(crc.getValue()));
+            } else {
+                key.append('#').append(length);
+            }
+        }
+        return key.toString();
+    }
+
+    /**
+     * 每条记录写成一个独立的gzip分段追加到文件，GZIPInputStream可以连续读取多个分段
+     */
+    private synchronized void append(Entry entry) throws IOException {
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs() && !parent.exists()) {
+            throw new IOException("cannot create " + parent);
+        }
+        try (DataOutputStream out = new DataOutputStream(new GZIPOutputStream(
+                new BufferedOutputStream(new FileOutputStream(file, true))))) {
+            out.writeByte(VERSION);
+            out.writeUTF(entry.key);
+            out.writeShort(entry.code);
+            out.writeUTF(entry.message);
+            out.writeUTF(entry.protocol);
+            out.writeShort(entry.headers.size());
+            for (int i = 0; i < entry.headers.size(); i++) {
+                out.writeUTF(entry.headers.name(i));
+                out.writeUTF(entry.headers.value(i));
+            }
+            out.writeLong(entry.nanos);
+            out.writeInt(entry.body.length);
+            out.write(entry.body);
+        }
+        recorded.incrementAndGet();
+    }
+
+    private void load(InputStream source) throws IOException {
+        DataInputStream in = new DataInputStream(new GZIPInputStream(new BufferedInputStream(source)));
+        while (true) {
+            int version;
+            try {
+                version = in.readByte();
+            } catch (EOFException e) {
+                break;
+            }
+            if (version != VERSION) {
+                throw new IOException("unsupported cassette version " + version);
+            }
+            Entry entry = new Entry();
+            entry.key = in.readUTF();
+            entry.code = in.readShort();
+            entry.message = in.readUTF();
+            entry.protocol = in.readUTF();
+            Headers.Builder headers = new Headers.Builder();
+            int count = in.readShort();
+            for (int i = 0; i < count; i++) {
+                headers.addUnsafeNonAscii(in.readUTF(), in.readUTF());
+            }
+            entry.headers = headers.build();
+            entry.nanos = in.readLong();
+            entry.body = new byte[in.readInt()];
+            in.readFully(entry.body);
+
+            List<Entry> list = entries.get(entry.key);
+            if (list == null) {
+                list = new ArrayList<>();
+                entries.put(entry.key, list);
+            }
+            list.add(entry);
+            recorded.incrementAndGet();
+        }
+    }
+
+    private static class Entry {
+        String key;
+        int code;
+        String message;
+        String protocol;
+        Headers headers;
+        long nanos;
+        byte[] body;
+    }
+}
@@ -0,0 +1,155 @@
+package com.fyb.networklib.util;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import okhttp3.Call;
+import okhttp3.Connection;
+import okhttp3.EventListener;
+import okhttp3.Handshake;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * EventListener组合工厂
+ * OkHttpClient只能设置一个 EventListener.Factory，这里把事件按注册顺序分发给多个监听器
+ */
+public class CompositeEventListenerFactory implements EventListener.Factory {
+
+    private final List<EventListener.Factory> factories = new CopyOnWriteArrayList<>();
+
+    public CompositeEventListenerFactory add(EventListener.Factory factory) {
+        factories.add(factory);
+        return this;
+    }
+
+    public void remove(EventListener.Factory factory) {
+        factories.remove(factory);
+    }
+
+    @Override
+    public EventListener create(Call call) {
+        EventListener[] listeners = new EventListener[factories.size()];
+        int i = 0;
+        for (EventListener.Factory factory : factories) {
+            if (i == listeners.length) break;
+            listeners[i++] = factory.create(call);
+        }
+        return new Composite(listeners);
+    }
+
+    private static class Composite extends EventListener {
+
+        private final EventListener[] listeners;
+
+        Composite(EventListener[] listeners) {
+            this.listeners = listeners;
+        }
+
+        @Override
+        public void callStart(Call call) {
+            for (EventListener l : listeners) if (l != null) l.callStart(call);
+        }
+
+        @Override
+        public void dnsStart(Call call, String domainName) {
+            for (EventListener l : listeners) if (l != null) l.dnsStart(call, domainName);
+        }
+
+        @Override
+        public void dnsEnd(Call call, String domainName, List<InetAddress> inetAddressList) {
+            for (EventListener l : listeners) if (l != null) l.dnsEnd(call, domainName, inetAddressList);
+        }
+
+        @Override
+        public void connectStart(Call call, InetSocketAddress inetSocketAddress, Proxy proxy) {
+            for (EventListener l : listeners) if (l != null) l.connectStart(call, inetSocketAddress, proxy);
+        }
+
+        @Override
+        public void secureConnectStart(Call call) {
+            for (EventListener l : listeners) if (l != null) l.secureConnectStart(call);
+        }
+
+        @Override
+        public void secureConnectEnd(Call call, Handshake handshake) {
+            for (EventListener l : listeners) if (l != null) l.secureConnectEnd(call, handshake);
+        }
+
+        @Override
+        public void connectEnd(Call call, InetSocketAddress inetSocketAddress, Proxy proxy, Protocol protocol) {
+            for (EventListener l : listeners) if (l != null) l.connectEnd(call, inetSocketAddress, proxy, protocol);
+        }
+
+        @Override
+        public void connectFailed(Call call, InetSocketAddress inetSocketAddress, Proxy proxy,
+                                  Protocol protocol, IOException ioe) {
+            for (EventListener l : listeners) if (l != null) l.connectFailed(call, inetSocketAddress, proxy, protocol, ioe);
+        }
+
+        @Override
+        public void connectionAcquired(Call call, Connection connection) {
+            for (EventListener l : listeners) if (l != null) l.connectionAcquired(call, connection);
+        }
+
+        @Override
+        public void connectionReleased(Call call, Connection connection) {
+            for (EventListener l : listeners) if (l != null) l.connectionReleased(call, connection);
+        }
+
+        @Override
+        public void requestHeadersStart(Call call) {
+            for (EventListener l : listeners) if (l != null) l.requestHeadersStart(call);
+        }
+
+        @Override
+        public void requestHeadersEnd(Call call, Request request) {
+            for (EventListener l : listeners) if (l != null) l.requestHeadersEnd(call, request);
+        }
+
+        @Override
+        public void requestBodyStart(Call call) {
+            for (EventListener l : listeners) if (l != null) l.requestBodyStart(call);
+        }
+
+        @Override
+        public void requestBodyEnd(Call call, long byteCount) {
+            for (EventListener l : listeners) if (l != null) l.requestBodyEnd(call, byteCount);
+        }
+
+        @Override
+        public void responseHeadersStart(Call call) {
+            for (EventListener l : listeners) if (l != null) l.responseHeadersStart(call);
+        }
+
+        @Override
+        public void responseHeadersEnd(Call call, Response response) {
+            for (EventListener l : listeners) if (l != null) l.responseHeadersEnd(call, response);
+        }
+
+        @Override
+        public void responseBodyStart(Call call) {
+            for (EventListener l : listeners) if (l != null) l.responseBodyStart(call);
+        }
+
+        @Override
+        public void responseBodyEnd(Call call, long byteCount) {
+            for (EventListener l : listeners) if (l != null) l.responseBodyEnd(call, byteCount);
+        }
+
+        @Override
+        public void callEnd(Call call) {
+            for (EventListener l : listeners) if (l != null) l.callEnd(call);
+        }
+
+        @Override
+        public void callFailed(Call call, IOException ioe) {
+            for (EventListener l : listeners) if (l != null) l.callFailed(call, ioe);
+        }
+    }
+}
@@ -0,0 +1,256 @@
+package com.fyb.networklib.util;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.Adler32;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.BufferedSource;
+import okio.DeflaterSink;
+import okio.GzipSink;
+import okio.GzipSource;
+import okio.InflaterSource;
+import okio.Okio;
+import okio.Source;
+
+/**
+ * 请求体、响应体压缩拦截器
+ * 1. 请求体gzip按主机协商：显式开启，或服务端在响应中通过 Accept-Encoding 声明支持gzip（RFC 7694）后自动开启；
+ *    压缩后的请求收到415时关闭该主机的请求压缩，并以原始请求体重发一次
+ * 2. 预共享字典：为主机配置字典后，请求体和响应体都使用带预设字典的deflate（编码名 {@value #DICTIONARY_ENCODING}），
+ *    行程数据的字段名、枚举值在字典中，小请求也能有明显的压缩率；请求头 {@value #DICTIONARY_HEADER} 携带字典的Adler-32，服务端据此选择字典
+ * 3. 只压缩长度已知的JSON、文本和表单请求体，文件上传等已压缩的数据不处理；gzip要求不小于 minSize（默认1KB），
+ *    字典压缩的门槛 dictionaryMinSize（默认64字节）低得多，小请求正是字典的主要收益所在
+ *
+ * 未配置字典的主机，响应仍由OkHttp透明解gzip；配置了字典的主机由本拦截器同时负责解gzip和字典解压
+ */
+public class CompressionInterceptor implements Interceptor {
+
+    public static final String DICTIONARY_ENCODING = "x-deflate-dict";
+    public static final String DICTIONARY_HEADER = "X-Dictionary-Id";
+
+    /**
+     * 预共享字典
+     */
+    public static final class Dictionary {
+        private final byte[] bytes;
+        private final String id;
+
+        public Dictionary(byte[] bytes) {
+            this.bytes = bytes.clone();
+            Adler32 adler = new Adler32();
+            adler.update(bytes, 0, bytes.length);
+            this.id = Long.toHexString(adler.getValue());
+        }
+
+        /**
+         * 字典的Adler-32，十六进制
+         */
+        public String getId() {
+            return id;
+        }
+
+        /**
+         * 用预设字典以原始deflate格式压缩请求体
+         */
+        public Buffer deflate(RequestBody body) throws IOException {
+            Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+            deflater.setDictionary(bytes);
+            Buffer out = new Buffer();
+            BufferedSink sink = Okio.buffer(new DeflaterSink(out, deflater));
+            try {
+                body.writeTo(sink);
+            } finally {
+                sink.close();
+                deflater.end();
+            }
+            return out;
+        }
+
+        /**
+         * 解压 {@link #deflate(RequestBody)} 格式的数据，关闭返回的Source时释放Inflater
+         */
+        public Source inflate(Source source) {
+            Inflater inflater = new Inflater(true);
+            inflater.setDictionary(bytes);
+            return new InflaterSource(source, inflater);
+        }
+    }
+
+    private final Map<String, Boolean> requestGzip = new ConcurrentHashMap<>();
+    private final Map<String, Dictionary> dictionaries = new ConcurrentHashMap<>();
+    private final AtomicLong rawBytes = new AtomicLong();
+    private final AtomicLong compressedBytes = new AtomicLong();
+    private volatile long minSize = 1024;
+    private volatile long dictionaryMinSize = 64;
+
+    /**
+     * gzip压缩请求体
+     */
+    public static Buffer gzip(RequestBody body) throws IOException {
+        Buffer out = new Buffer();
+        BufferedSink sink = Okio.buffer(new GzipSink(out));
+        try {
+            body.writeTo(sink);
+        } finally {
+            sink.close();
+        }
+        return out;
+    }
+
+    /**
+     * 显式开启或关闭某个主机的请求体gzip，优先于自动协商的结果
+     */
+    public CompressionInterceptor setRequestGzip(String host, boolean enabled) {
+        requestGzip.put(host, enabled);
+        return this;
+    }
+
+    /**
+     * 为主机配置预共享字典，传null移除；服务端需支持 {@value #DICTIONARY_ENCODING} 编码和同一份字典
+     */
+    public CompressionInterceptor setDictionary(String host, byte[] dictionary) {
+        if (dictionary == null) {
+            dictionaries.remove(host);
+        } else {
+            dictionaries.put(host, new Dictionary(dictionary));
+        }
+        return this;
+    }
+
+    /**
+     * 不gzip小于该长度的请求体，默认1KB
+     */
+    public CompressionInterceptor setMinSize(long minSize) {
+        this.minSize = minSize;
+        return this;
+    }
+
+    /**
+     * 配置了字典的主机，不压缩小于该长度的请求体，默认64字节
+     */
+    public CompressionInterceptor setDictionaryMinSize(long dictionaryMinSize) {
+        this.dictionaryMinSize = dictionaryMinSize;
+        return this;
+    }
+
+    /**
+     * 主机的请求体是否已确定使用gzip
+     */
+    public boolean isRequestGzipEnabled(String host) {
+        return Boolean.TRUE.equals(requestGzip.get(host));
+    }
+
+    /**
+     * 压缩过的请求体的原始总字节数
+     */
+    public long getRawBytes() {
+        return rawBytes.get();
+    }
+
+    /**
+     * 压缩过的请求体压缩后的总字节数
+     */
+    public long getCompressedBytes() {
+        return compressedBytes.get();
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        String host = request.url().host();
+        Dictionary dictionary = dictionaries.get(host);
+        if (dictionary != null && request.header("Accept-Encoding") == null) {
+            request = request.newBuilder()
+                    .header("Accept-Encoding", DICTIONARY_ENCODING + ", gzip")
+                    .header(DICTIONARY_HEADER, dictionary.getId())
+                    .build();
+        } else {
+            dictionary = null;
+        }
+
+        Request compressed = compress(request, host, dictionary);
+        Response response = chain.proceed(compressed);
+        if (compressed != request && response.code() == 415) {
+            // 服务端不接受压缩的请求体，之后该主机只发原始请求体
+            requestGzip.put(host, false);
+            response.close();
+            response = chain.proceed(request);
+        } else if (!requestGzip.containsKey(host)) {
+            String accept = response.header("Accept-Encoding");
+            if (accept != null && accept.toLowerCase().contains("gzip")) {
+                requestGzip.put(host, true);
+            }
+        }
+        return dictionary == null ? response : decode(response, dictionary);
+    }
+
+    private Request compress(Request request, String host, Dictionary dictionary) throws IOException {
+        RequestBody body = request.body();
+        if (body == null || request.header("Content-Encoding") != null || !compressible(body.contentType())) {
+            return request;
+        }
+        long length = body.contentLength();
+        if (length < 0) {
+            return request;
+        }
+        Boolean gzip = requestGzip.get(host);
+        String encoding;
+        Buffer buffer;
+        if (dictionary != null && !Boolean.FALSE.equals(gzip) && length >= dictionaryMinSize) {
+            encoding = DICTIONARY_ENCODING;
+            buffer = dictionary.deflate(body);
+        } else if (Boolean.TRUE.equals(gzip) && length >= minSize) {
+            encoding = "gzip";
+            buffer = gzip(body);
+        } else {
+            return request;
+        }
+        rawBytes.addAndGet(length);
+        compressedBytes.addAndGet(buffer.size());
+        return request.newBuilder()
+                .header("Content-Encoding", encoding)
+                .method(request.method(), RequestBody.create(body.contentType(), buffer.readByteString()))
+                .build();
+    }
+
+    private static Response decode(Response response, Dictionary dictionary) {
+        String encoding = response.header("Content-Encoding");
+        ResponseBody body = response.body();
+        if (encoding == null || body == null || "HEAD".equals(response.request().method())
+                || response.code() == 204 || response.code() == 304) {
+            return response;
+        }
+        Source source;
+        if (DICTIONARY_ENCODING.equalsIgnoreCase(encoding)) {
+            source = dictionary.inflate(body.source());
+        } else if ("gzip".equalsIgnoreCase(encoding)) {
+            source = new GzipSource(body.source());
+        } else {
+            return response;
+        }
+        BufferedSource decoded = Okio.buffer(source);
+        return response.newBuilder()
+                .removeHeader("Content-Encoding")
+                .removeHeader("Content-Length")
+                .body(ResponseBody.create(body.contentType(), -1, decoded))
+                .build();
+    }
+
+    private static boolean compressible(MediaType type) {
+        if (type == null) return false;
+        String subtype = type.subtype();
+        return "text".equals(type.type()) || subtype.contains("json") || subtype.contains("x-www-form-urlencoded");
+    }
+}
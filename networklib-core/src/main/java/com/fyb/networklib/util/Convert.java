@@ -0,0 +1,213 @@
+/*
+ * Copyright 2016 jeasonlzy(廖子尧)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fyb.networklib.util;
+
+import com.fyb.networklib.data.BaseEntity;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonIOException;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+
+import java.io.Reader;
+import java.lang.reflect.GenericArrayType;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.lang.reflect.WildcardType;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * ================================================
+ * 作    者：jeasonlzy（廖子尧）Github地址：https://github.com/jeasonlzy
+ * 版    本：1.0
+ * 创建日期：16/9/28
+ * 描    述：
+ * 修订历史：
+ * ================================================
+ *
+ * 解析引擎可配置：注册TypeAdapter、TypeAdapterFactory，关闭HTML转义；配置变更后下次使用时重建Gson，
+ * 已解析过的类型缓存随之失效，应在Application初始化时完成注册。
+ * LzyResponse、SimpleResponse、BaseEntity 等库内模型通过 @JsonAdapter 自带手写的解析器，不走反射绑定字段；
+ * {@link #warmUp(Type...)} 在后台线程预先创建Gson和常用类型的解析器，减少首次解析的耗时
+ */
+public class Convert {
+
+    private static final Object LOCK = new Object();
+    private static final Map<Type, Object> typeAdapters = new LinkedHashMap<>();
+    private static final List<TypeAdapterFactory> factories = new ArrayList<>();
+    private static boolean htmlEscaping = true;
+    private static volatile Gson gson;
+
+    private static Gson create() {
+        Gson current = gson;
+        if (current == null) {
+            synchronized (LOCK) {
+                current = gson;
+                if (current == null) {
+                    GsonBuilder builder = new GsonBuilder();
+                    for (Map.Entry<Type, Object> entry : typeAdapters.entrySet()) {
+                        builder.registerTypeAdapter(entry.getKey(), entry.getValue());
+                    }
+                    for (TypeAdapterFactory factory : factories) {
+                        builder.registerTypeAdapterFactory(factory);
+                    }
+                    if (!htmlEscaping) {
+                        builder.disableHtmlEscaping();
+                    }
+                    gson = current = builder.create();
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * 当前使用的Gson实例
+     */
+    public static Gson getGson() {
+        return create();
+    }
+
+    /**
+     * 注册类型解析器，typeAdapter可为TypeAdapter、JsonSerializer、JsonDeserializer或InstanceCreator
+     */
+    public static void registerTypeAdapter(Type type, Object typeAdapter) {
+        synchronized (LOCK) {
+            typeAdapters.put(type, typeAdapter);
+            gson = null;
+        }
+    }
+
+    /**
+     * 注册解析器工厂，先注册的优先
+     */
+    public static void registerTypeAdapterFactory(TypeAdapterFactory factory) {
+        synchronized (LOCK) {
+            factories.add(factory);
+            gson = null;
+        }
+    }
+
+    /**
+     * 是否转义 &lt; &gt; &amp; = ' 等HTML字符，默认转义（与Gson默认一致）
+     */
+    public static void setHtmlEscaping(boolean enabled) {
+        synchronized (LOCK) {
+            htmlEscaping = enabled;
+            gson = null;
+        }
+    }
+
+    /**
+     * 在后台线程创建Gson并预先生成库内模型和指定类型的解析器
+     *
+     * @param types 业务中常用的返回类型，如 new TypeToken&lt;LzyResponse&lt;List&lt;Trip&gt;&gt;&gt;() {}.getType()
+     */
+    public static void warmUp(final Type... types) {
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                Gson current = create();
+                current.getAdapter(SimpleResponse.class);
+                current.getAdapter(BaseEntity.class);
+                current.fromJson("{\"code\":0,\"msg\":\"\",\"data\":[]}", LzyResponse.class);
+                for (Type type : types) {
+                    current.getAdapter(TypeToken.get(type));
+                }
+            }
+        }, "OkNet-Warmup");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        thread.start();
+    }
+
+    /**
+     * 泛型类型的第index个实参，原始类型或类型变量返回Object.class，通配符取上界；供手写的解析器解析data字段
+     */
+    public static Type typeArgument(Type type, int index) {
+        if (type instanceof ParameterizedType) {
+            Type argument = ((ParameterizedType) type).getActualTypeArguments()[index];
+            if (argument instanceof WildcardType) {
+                argument = ((WildcardType) argument).getUpperBounds()[0];
+            }
+            if (argument instanceof Class || argument instanceof ParameterizedType
+                    || argument instanceof GenericArrayType) {
+                return argument;
+            }
+        }
+        return Object.class;
+    }
+
+    public static <T> T fromJson(String json, Class<T> type) throws JsonIOException, JsonSyntaxException {
+        return create().fromJson(json, type);
+    }
+
+    public static <T> T fromJson(String json, Type type) {
+        return create().fromJson(json, type);
+    }
+
+    public static <T> T fromJson(JsonReader reader, Type typeOfT) throws JsonIOException, JsonSyntaxException {
+        return create().fromJson(reader, typeOfT);
+    }
+
+    public static <T> T fromJson(Reader json, Class<T> classOfT) throws JsonSyntaxException, JsonIOException {
+        return create().fromJson(json, classOfT);
+    }
+
+    public static <T> T fromJson(Reader json, Type typeOfT) throws JsonIOException, JsonSyntaxException {
+        return create().fromJson(json, typeOfT);
+    }
+
+    public static <T> T fromJson(JsonElement json, Type typeOfT) throws JsonSyntaxException {
+        return create().fromJson(json, typeOfT);
+    }
+
+    public static String toJson(Object src) {
+        return create().toJson(src);
+    }
+
+    public static String toJson(Object src, Type typeOfSrc) {
+        return create().toJson(src, typeOfSrc);
+    }
+
+    public static String formatJson(String json) {
+        try {
+            JsonParser jp = new JsonParser();
+            JsonElement je = jp.parse(json);
+            return create().toJson(je);
+        } catch (Exception e) {
+            return json;
+        }
+    }
+
+    public static String formatJson(Object src) {
+        try {
+            JsonParser jp = new JsonParser();
+            JsonElement je = jp.parse(toJson(src));
+            return create().toJson(je);
+        } catch (Exception e) {
+            return e.getMessage();
+        }
+    }
+}
+
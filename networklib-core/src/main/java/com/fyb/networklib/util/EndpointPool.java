@@ -0,0 +1,285 @@
+package com.fyb.networklib.util;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.NoRouteToHostException;
+import java.net.PortUnreachableException;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import javax.net.ssl.SSLHandshakeException;
+
+import okhttp3.Call;
+import okhttp3.HttpUrl;
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * 多个等价服务地址组成的地址池
+ * 1. 每个地址维护衰减平均的往返耗时和错误率，请求发出前改写到得分最好（耗时 ×（1 + 10 × 错误率））的可用地址
+ * 2. 连接失败（DNS、拒绝连接、TLS握手失败等，请求尚未发出）时立即换下一个地址重试；读超时只对GET/HEAD和携带幂等键的请求换地址重试
+ * 3. 连续失败达到阈值的地址标记为不可用，由后台探测线程定期发送HEAD请求，探测成功后恢复；探测同时刷新其他地址的耗时，较快的地区恢复后会重新被选中
+ *
+ * 只改写以池中某个地址为前缀的请求，业务代码按第一个地址拼接URL即可；探测只在最近有请求时进行
+ */
+public class EndpointPool implements Interceptor {
+
+    private static final double ALPHA = 0.2;
+    /** 探测请求的标签，拦截时直接放行 */
+    private static final Object PROBE = new Object();
+
+    private static final ScheduledExecutorService SCHEDULER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "OkNet-Probe");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * 单个地址及其健康状态
+     */
+    public static class Endpoint {
+        private final String url;
+        private double rttMs = -1;
+        private double errorRate;
+        private int consecutiveFailures;
+        private boolean down;
+
+        Endpoint(String url) {
+            this.url = url;
+        }
+
+        public String getUrl() {
+            return url;
+        }
+
+        /**
+         * 平滑后的往返耗时，尚无样本时为-1
+         */
+        public synchronized double getRttMs() {
+            return rttMs;
+        }
+
+        public synchronized double getErrorRate() {
+            return errorRate;
+        }
+
+        public synchronized boolean isDown() {
+            return down;
+        }
+
+        synchronized double score() {
+            return rttMs * (1 + 10 * errorRate);
+        }
+
+        synchronized void success(long nanos) {
+            double millis = nanos / 1e6;
+            rttMs = rttMs < 0 ? millis : rttMs * (1 - ALPHA) + millis * ALPHA;
+            errorRate = errorRate * (1 - ALPHA);
+            consecutiveFailures = 0;
+            down = false;
+        }
+
+        synchronized void failure(int threshold) {
+            errorRate = errorRate * (1 - ALPHA) + ALPHA;
+            if (++consecutiveFailures >= threshold) {
+                down = true;
+            }
+        }
+
+        @Override
+        public synchronized String toString() {
+            return url + " rtt=" + Math.round(rttMs) + "ms errors=" + Math.round(errorRate * 100) + "%" + (down ? " DOWN" : "");
+        }
+    }
+
+    private final List<Endpoint> endpoints;
+    private volatile int failureThreshold = 3;
+    private volatile String probePath = "";
+    private volatile long probeIntervalMs = 30000;
+    private volatile long lastUsedAt;
+    private ScheduledFuture<?> probing;
+
+    /**
+     * @param baseUrls 等价的服务地址，第一个为业务代码拼接URL时使用的地址
+     */
+    public EndpointPool(String... baseUrls) {
+        if (baseUrls.length == 0) throw new IllegalArgumentException("no endpoint");
+        List<Endpoint> list = new ArrayList<>();
+        for (String baseUrl : baseUrls) {
+            list.add(new Endpoint(HttpUrl.get(baseUrl).toString()));
+        }
+        this.endpoints = Collections.unmodifiableList(list);
+    }
+
+    /**
+     * 连续失败多少次后标记为不可用，默认3
+     */
+    public EndpointPool setFailureThreshold(int failureThreshold) {
+        this.failureThreshold = failureThreshold;
+        return this;
+    }
+
+    /**
+     * 探测请求的相对路径，默认为地址本身
+     */
+    public EndpointPool setProbePath(String probePath) {
+        this.probePath = probePath;
+        return this;
+    }
+
+    public EndpointPool setProbeInterval(long probeIntervalMs) {
+        this.probeIntervalMs = probeIntervalMs;
+        return this;
+    }
+
+    /**
+     * 业务代码拼接URL使用的地址
+     */
+    public String getPrimary() {
+        return endpoints.get(0).url;
+    }
+
+    public List<Endpoint> getEndpoints() {
+        return endpoints;
+    }
+
+    /**
+     * 当前会被选中的地址
+     */
+    public Endpoint select() {
+        return rank().get(0);
+    }
+
+    /**
+     * 请求URL是否以池中某个地址为前缀
+     */
+    public boolean matches(Request request) {
+        return request.tag() != PROBE && find(request.url().toString()) != null;
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        String url = request.url().toString();
+        Endpoint origin = request.tag() == PROBE ? null : find(url);
+        if (origin == null) {
+            return chain.proceed(request);
+        }
+        lastUsedAt = System.currentTimeMillis();
+        String path = url.substring(origin.url.length());
+        IOException last = null;
+        for (Endpoint endpoint : rank()) {
+            if (chain.call().isCanceled()) break;
+            Request routed = endpoint == origin ? request
+                    : request.newBuilder().url(endpoint.url + path).build();
+            long start = System.nanoTime();
+            try {
+                Response response = chain.proceed(routed);
+                if (response.code() >= 500) {
+                    endpoint.failure(Integer.MAX_VALUE);
+                } else {
+                    endpoint.success(System.nanoTime() - start);
+                }
+                return response;
+            } catch (IOException e) {
+                endpoint.failure(failureThreshold);
+                last = e;
+                if (chain.call().isCanceled() || !canFailover(request, e)) throw e;
+            }
+        }
+        throw last != null ? last : new IOException("Canceled");
+    }
+
+    /**
+     * 开始后台探测，call工厂通常为所在的OkHttpClient；重复调用只保留一个探测任务
+     */
+    public synchronized EndpointPool startProbing(final Call.Factory factory) {
+        if (probing != null) return this;
+        lastUsedAt = System.currentTimeMillis();
+        probing = SCHEDULER.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                probe(factory);
+            }
+        }, 0, probeIntervalMs, TimeUnit.MILLISECONDS);
+        return this;
+    }
+
+    public synchronized void stopProbing() {
+        if (probing != null) {
+            probing.cancel(false);
+            probing = null;
+        }
+    }
+
+    /**
+     * 依次探测每个地址；长时间没有业务请求时跳过，避免空耗流量和电量
+     */
+    void probe(Call.Factory factory) {
+        if (System.currentTimeMillis() - lastUsedAt > 2 * probeIntervalMs) return;
+        for (Endpoint endpoint : endpoints) {
+            Request request = new Request.Builder().url(endpoint.url + probePath).head().tag(PROBE).build();
+            long start = System.nanoTime();
+            try (Response response = factory.newCall(request).execute()) {
+                if (response.code() >= 500) {
+                    endpoint.failure(failureThreshold);
+                } else {
+                    endpoint.success(System.nanoTime() - start);
+                }
+            } catch (IOException e) {
+                endpoint.failure(failureThreshold);
+            }
+        }
+    }
+
+    /**
+     * 可用地址按得分排序，有耗时样本的在前；不可用的地址排在最后，仍作为最后的尝试
+     */
+    private List<Endpoint> rank() {
+        // 先取快照再排序，避免排序过程中得分被其他线程修改
+        final int size = endpoints.size();
+        final double[] keys = new double[size];
+        List<Integer> order = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            Endpoint endpoint = endpoints.get(i);
+            double score = endpoint.score();
+            // 无样本的排在有样本的之后，不可用的排在最后，同一档内保持声明顺序
+            keys[i] = (endpoint.isDown() ? 2 : score < 0 ? 1 : 0) * 1e12 + Math.max(score, 0);
+            order.add(i);
+        }
+        Collections.sort(order, (a, b) -> Double.compare(keys[a], keys[b]));
+        List<Endpoint> ranked = new ArrayList<>(size);
+        for (int index : order) {
+            ranked.add(endpoints.get(index));
+        }
+        return ranked;
+    }
+
+    private Endpoint find(String url) {
+        for (Endpoint endpoint : endpoints) {
+            if (url.startsWith(endpoint.url)) return endpoint;
+        }
+        return null;
+    }
+
+    /**
+     * 请求尚未发出的连接错误总是可以换地址；其他网络错误只对幂等请求换地址
+     */
+    private static boolean canFailover(Request request, IOException e) {
+        if (e instanceof ConnectException || e instanceof UnknownHostException
+                || e instanceof NoRouteToHostException || e instanceof PortUnreachableException
+                || e instanceof SSLHandshakeException) {
+            return true;
+        }
+        String method = request.method();
+        return "GET".equals(method) || "HEAD".equals(method)
+                || request.header(IdempotencyInterceptor.HEADER) != null;
+    }
+}
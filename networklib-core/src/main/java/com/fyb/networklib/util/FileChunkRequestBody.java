@@ -0,0 +1,55 @@
+package com.fyb.networklib.util;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.BufferedSink;
+import okio.Okio;
+import okio.Source;
+
+/**
+ * 文件分块请求体
+ * 从 offset 处定位后用Okio按段把文件的 [offset, offset + length) 区间写入sink，只占用Okio的段缓存，
+ * 不会把整个分块读入内存；每次写出都重新打开文件，请求体可重复发送，重试安全
+ */
+public class FileChunkRequestBody extends RequestBody {
+
+    private final MediaType contentType;
+    private final File file;
+    private final long offset;
+    private final long length;
+
+    public FileChunkRequestBody(MediaType contentType, File file, long offset, long length) {
+        this.contentType = contentType;
+        this.file = file;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    @Override
+    public MediaType contentType() {
+        return contentType;
+    }
+
+    @Override
+    public long contentLength() {
+        return length;
+    }
+
+    @Override
+    public void writeTo(BufferedSink sink) throws IOException {
+        try (FileInputStream in = new FileInputStream(file)) {
+            in.getChannel().position(offset);
+            Source source = Okio.source(in);
+            try {
+                sink.write(source, length);
+            } catch (EOFException e) {
+                throw new IOException("File truncated before " + (offset + length) + ": " + file.getName(), e);
+            }
+        }
+    }
+}
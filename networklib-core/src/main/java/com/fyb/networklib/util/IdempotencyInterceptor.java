@@ -0,0 +1,57 @@
+package com.fyb.networklib.util;
+
+import java.io.IOException;
+import java.util.UUID;
+
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * 幂等重试拦截器
+ * 携带 Idempotency-Key 请求头的写请求，超时或连接异常时用同一个key原样重试，
+ * 服务端据此识别重复提交，只执行一次副作用；未携带该请求头的请求不做任何处理
+ */
+public class IdempotencyInterceptor implements Interceptor {
+
+    public static final String HEADER = "Idempotency-Key";
+
+    private volatile int maxRetries;
+
+    public IdempotencyInterceptor(int maxRetries) {
+        this.maxRetries = maxRetries;
+    }
+
+    /**
+     * 为一次逻辑写操作生成幂等键
+     * 离线重放时应持久化并复用同一个key，而不是重新生成
+     */
+    public static String newKey() {
+        return UUID.randomUUID().toString();
+    }
+
+    public void setMaxRetries(int maxRetries) {
+        this.maxRetries = maxRetries;
+    }
+
+    public int getMaxRetries() {
+        return maxRetries;
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        if (request.header(HEADER) == null) {
+            return chain.proceed(request);
+        }
+        for (int attempt = 0; ; attempt++) {
+            try {
+                return chain.proceed(request);
+            } catch (IOException e) {
+                if (attempt >= maxRetries || chain.call().isCanceled()) {
+                    throw e;
+                }
+            }
+        }
+    }
+}
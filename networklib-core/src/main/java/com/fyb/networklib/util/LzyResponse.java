@@ -0,0 +1,115 @@
+/*
+ * Copyright 2016 jeasonlzy(廖子尧)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fyb.networklib.util;
+
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.annotations.JsonAdapter;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.io.Serializable;
+
+/**
+ * ================================================
+ * 作    者：jeasonlzy（廖子尧）Github地址：https://github.com/jeasonlzy
+ * 版    本：1.0
+ * 创建日期：16/9/28
+ * 描    述：
+ * 修订历史：
+ * ================================================
+ */
+@JsonAdapter(LzyResponse.AdapterFactory.class)
+public class LzyResponse<T> implements Serializable {
+
+    private static final long serialVersionUID = 5213230387175987834L;
+
+    public int code;
+    public String msg;
+    public T data;
+
+    @Override
+    public String toString() {
+        return "LzyResponse{\n" +//
+                "\tcode=" + code + "\n" +//
+                "\tmsg='" + msg + "'\n" +//
+                "\tdata=" + data + "\n" +//
+                '}';
+    }
+
+    /**
+     * 手写的解析器，不经反射绑定字段；data按泛型实参解析，子类仍走Gson默认的反射解析
+     */
+    static final class AdapterFactory implements TypeAdapterFactory {
+        @Override
+        @SuppressWarnings("unchecked")
+        public <R> TypeAdapter<R> create(Gson gson, TypeToken<R> typeToken) {
+            if (typeToken.getRawType() != LzyResponse.class) return null;
+            return (TypeAdapter<R>) new Adapter<>(gson, gson.getAdapter(TypeToken.get(Convert.typeArgument(typeToken.getType(), 0))));
+        }
+    }
+
+    private static final class Adapter<T> extends TypeAdapter<LzyResponse<T>> {
+        private final TypeAdapter<Integer> intAdapter;
+        private final TypeAdapter<String> stringAdapter;
+        private final TypeAdapter<T> dataAdapter;
+
+        @SuppressWarnings("unchecked")
+        Adapter(Gson gson, TypeAdapter<?> dataAdapter) {
+            this.intAdapter = gson.getAdapter(int.class);
+            this.stringAdapter = gson.getAdapter(String.class);
+            this.dataAdapter = (TypeAdapter<T>) dataAdapter;
+        }
+
+        @Override
+        public void write(JsonWriter out, LzyResponse<T> value) throws IOException {
+            out.beginObject();
+            out.name("code").value(value.code);
+            out.name("msg");
+            stringAdapter.write(out, value.msg);
+            out.name("data");
+            dataAdapter.write(out, value.data);
+            out.endObject();
+        }
+
+        @Override
+        public LzyResponse<T> read(JsonReader in) throws IOException {
+            LzyResponse<T> response = new LzyResponse<>();
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "code":
+                        Integer code = intAdapter.read(in);
+                        if (code != null) response.code = code;
+                        break;
+                    case "msg":
+                        response.msg = stringAdapter.read(in);
+                        break;
+                    case "data":
+                        response.data = dataAdapter.read(in);
+                        break;
+                    default:
+                        in.skipValue();
+                }
+            }
+            in.endObject();
+            return response;
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.fyb.networklib.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 请求耗时统计快照，可直接序列化为JSON上报或写入日志
+ */
+public class MetricsSnapshot {
+
+    public long timestamp;
+    /** 路由 -> 统计 */
+    public Map<String, Route> routes = new TreeMap<>();
+
+    public String toJson() {
+        return Convert.toJson(this);
+    }
+
+    public static class Route {
+        public long failures;
+        /** 新建连接次数 */
+        public long newConnections;
+        /** 复用连接池中连接的次数 */
+        public long reusedConnections;
+        /** 阶段名 -> 耗时分布 */
+        public Map<String, Stats> phases = new LinkedHashMap<>();
+    }
+
+    /**
+     * 单个阶段的耗时分布，单位均为微秒
+     */
+    public static class Stats {
+        public long count;
+        public long meanMicros;
+        public long p50Micros;
+        public long p90Micros;
+        public long p99Micros;
+        public long maxMicros;
+    }
+}
@@ -0,0 +1,571 @@
+package com.fyb.networklib.util;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.HttpUrl;
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * 客户端令牌桶限流拦截器
+ * 1. 可按主机和按路由（格式见 {@link RequestMetrics#routeOf(Request)}）分别配置速率和突发量，同时命中时两个桶都要取得令牌
+ * 2. 超出速率的请求排队等待而不是失败；排队数超过 maxQueue 或需要等待超过 maxWait 时才失败，
+ *    主机桶已预定而路由桶被拒绝时退还主机桶的令牌
+ * 3. 异步请求通过 {@link #enqueue(Call, Callback)} 在分发前取得令牌：需要等待的Call暂存在限流队列中，
+ *    令牌可用时才交给OkHttp的调度器，排队期间不占用调度器的并发名额；暂存中的请求可按tag取消
+ * 4. 尚未创建Call的请求（如OkGo请求）通过 {@link #admit(String, HttpUrl, Object, Dispatch)} 同样在分发前排队，
+ *    取得的令牌以 {@value #ADMISSION_HEADER} 请求头随请求带到拦截器，拦截器移除该请求头后直接放行
+ * 5. 其余请求（同步请求、未经过以上入口的请求、OkGo的重试）在拦截器中取得令牌，在当前线程等待
+ * 6. 收到429，或503带Retry-After时，按Retry-After（默认1秒）暂停该桶，并把速率减半；之后每次成功恢复配置速率的5%
+ *
+ * 未配置任何限流时直接放行；各桶的排队数（包括限流队列中暂存的请求）、等待耗时等统计可通过 {@link #getBuckets()} 查看
+ */
+public class RateLimiter implements Interceptor {
+
+    /** {@link #admit(String, HttpUrl, Object, Dispatch)} 取得的令牌凭证，发出前由拦截器移除 */
+    public static final String ADMISSION_HEADER = "X-OkNet-Admission";
+
+    private static final long DEFAULT_RETRY_AFTER_MS = 1000;
+    /** 未发出的凭证（如OkGo命中缓存未访问网络）最多保留的数量 */
+    private static final int MAX_ADMISSIONS = 1024;
+
+    private static final ScheduledExecutorService SCHEDULER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "OkNet-RateLimit");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * 单个令牌桶及其统计
+     */
+    public static class Bucket {
+        private final String key;
+        private final double configuredRate;
+        private final double burst;
+        private double rate;
+        private double tokens;
+        /** 令牌已补充到的时间点（纳秒），暂停期间位于未来 */
+        private long refilledAt;
+        private int waiting;
+        private long acquired;
+        private long delayed;
+        private long rejected;
+        private long throttled;
+        private long totalWaitNanos;
+        private long maxWaitNanos;
+
+        Bucket(String key, double ratePerSecond, int burst) {
+            this.key = key;
+            this.configuredRate = ratePerSecond;
+            this.rate = ratePerSecond;
+            this.burst = Math.max(1, burst);
+            this.tokens = this.burst;
+            this.refilledAt = System.nanoTime();
+        }
+
+        /**
+         * 预定一个令牌
+         *
+         * @return 需要等待的纳秒数，-1表示排队已满或等待过久
+         */
+        synchronized long reserve(long now, int maxQueue, long maxWait) {
+            if (now > refilledAt) {
+                tokens = Math.min(burst, tokens + (now - refilledAt) * rate / 1e9);
+                refilledAt = now;
+            }
+            long wait = refilledAt - now;
+            if (tokens < 1) {
+                wait += (long) ((1 - tokens) / rate * 1e9);
+            }
+            if (wait > 0 && (waiting >= maxQueue || wait > maxWait)) {
+                rejected++;
+                return -1;
+            }
+            tokens -= 1;
+            acquired++;
+            if (wait > 0) {
+                waiting++;
+                delayed++;
+            }
+            return wait;
+        }
+
+        /**
+         * 退还 {@link #reserve(long, int, long)} 预定的令牌，用于另一个桶拒绝或排队中的请求被取消
+         */
+        synchronized void refund(boolean delayedReservation) {
+            tokens = Math.min(burst, tokens + 1);
+            acquired--;
+            if (delayedReservation) {
+                waiting--;
+                delayed--;
+            }
+        }
+
+        synchronized void waited(long nanos) {
+            waiting--;
+            totalWaitNanos += nanos;
+            maxWaitNanos = Math.max(maxWaitNanos, nanos);
+        }
+
+        synchronized void pause(long until) {
+            throttled++;
+            rate = Math.max(configuredRate * 0.1, rate * 0.5);
+            if (until > refilledAt) {
+                refilledAt = until;
+                tokens = Math.min(tokens, 0);
+            }
+        }
+
+        synchronized void succeeded() {
+            if (rate < configuredRate) {
+                rate = Math.min(configuredRate, rate + configuredRate * 0.05);
+            }
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        /**
+         * 当前速率（每秒），收到429后会低于配置值
+         */
+        public synchronized double getRate() {
+            return rate;
+        }
+
+        /**
+         * 正在排队等待的请求数，包括限流队列中暂存的请求
+         */
+        public synchronized int getQueueDepth() {
+            return waiting;
+        }
+
+        public synchronized long getAcquiredCount() {
+            return acquired;
+        }
+
+        /**
+         * 因排队已满或等待过久被拒绝的请求数
+         */
+        public synchronized long getRejectedCount() {
+            return rejected;
+        }
+
+        /**
+         * 收到429或Retry-After的次数
+         */
+        public synchronized long getThrottledCount() {
+            return throttled;
+        }
+
+        /**
+         * 排队请求的平均等待时间（毫秒）
+         */
+        public synchronized double getAverageWaitMs() {
+            return delayed == 0 ? 0 : totalWaitNanos / 1e6 / delayed;
+        }
+
+        public synchronized double getMaxWaitMs() {
+            return maxWaitNanos / 1e6;
+        }
+
+        @Override
+        public synchronized String toString() {
+            return key + " rate=" + String.format("%.1f", rate) + "/s queue=" + waiting
+                    + " avgWait=" + Math.round(getAverageWaitMs()) + "ms rejected=" + rejected + " throttled=" + throttled;
+        }
+    }
+
+    /**
+     * 一次请求在主机桶和路由桶上的预定
+     */
+    private static class Ticket {
+        final Bucket host;
+        final Bucket route;
+        final long hostWait;
+        final long routeWait;
+
+        Ticket(Bucket host, Bucket route, long hostWait, long routeWait) {
+            this.host = host;
+            this.route = route;
+            this.hostWait = hostWait;
+            this.routeWait = routeWait;
+        }
+
+        long delay() {
+            return Math.max(hostWait, routeWait);
+        }
+
+        void waited(long nanos) {
+            if (hostWait > 0) host.waited(nanos);
+            if (routeWait > 0) route.waited(nanos);
+        }
+
+        void refund() {
+            if (host != null) host.refund(hostWait > 0);
+            if (route != null) route.refund(routeWait > 0);
+        }
+    }
+
+    /**
+     * 令牌可用后发出请求
+     */
+    public interface Dispatch {
+        /**
+         * @param admission 令牌凭证，需以 {@link #ADMISSION_HEADER} 请求头随请求发出；未限流或被拒绝时为null，
+         *                  此时由拦截器重新预定，被拒绝的请求在拦截器中以IOException结束
+         */
+        void dispatch(String admission);
+    }
+
+    /**
+     * 限流队列中暂存的异步请求
+     */
+    private static class Parked {
+        final Object tag;
+        /** 通过 enqueue 暂存的Call，取消时一并取消；通过 admit 暂存时为null */
+        final Call call;
+        final Ticket ticket;
+        final Runnable task;
+        final long parkedAt = System.nanoTime();
+        ScheduledFuture<?> future;
+
+        Parked(Object tag, Call call, Ticket ticket, Runnable task) {
+            this.tag = tag;
+            this.call = call;
+            this.ticket = ticket;
+            this.task = task;
+        }
+    }
+
+    private final Map<String, Bucket> hostBuckets = new ConcurrentHashMap<>();
+    private final Map<String, Bucket> routeBuckets = new ConcurrentHashMap<>();
+    private volatile double defaultHostRate;
+    private volatile int defaultHostBurst;
+    private volatile int maxQueue = 64;
+    private volatile long maxWaitMs = 30000;
+    private final List<Parked> parked = new ArrayList<>();
+    /** 已在分发前取得令牌的Call，拦截时直接放行 */
+    private final Set<Call> admitted = Collections.synchronizedSet(
+            Collections.newSetFromMap(new WeakHashMap<Call, Boolean>()));
+    /** admit 发出的未使用凭证 */
+    private final Map<String, Boolean> admissions = new LinkedHashMap<String, Boolean>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+            return size() > MAX_ADMISSIONS;
+        }
+    };
+    private final AtomicLong admissionIds = new AtomicLong();
+
+    /**
+     * 限制某个主机的请求速率
+     *
+     * @param ratePerSecond 每秒请求数
+     * @param burst         允许的突发请求数
+     */
+    public RateLimiter setHostLimit(String host, double ratePerSecond, int burst) {
+        hostBuckets.put(host, new Bucket(host, ratePerSecond, burst));
+        return this;
+    }
+
+    /**
+     * 未单独配置的主机使用的默认限流，ratePerSecond为0表示不限
+     */
+    public RateLimiter setDefaultHostLimit(double ratePerSecond, int burst) {
+        this.defaultHostRate = ratePerSecond;
+        this.defaultHostBurst = burst;
+        return this;
+    }
+
+    /**
+     * 限制某个路由的请求速率，如 "POST example.com/api/trip-manage/"
+     */
+    public RateLimiter setRouteLimit(String route, double ratePerSecond, int burst) {
+        routeBuckets.put(route, new Bucket(route, ratePerSecond, burst));
+        return this;
+    }
+
+    /**
+     * 每个桶最多排队的请求数，默认64
+     */
+    public RateLimiter setMaxQueue(int maxQueue) {
+        this.maxQueue = maxQueue;
+        return this;
+    }
+
+    /**
+     * 最长排队等待时间，默认30秒
+     */
+    public RateLimiter setMaxWait(long maxWaitMs) {
+        this.maxWaitMs = maxWaitMs;
+        return this;
+    }
+
+    public List<Bucket> getBuckets() {
+        List<Bucket> buckets = new ArrayList<>(hostBuckets.values());
+        buckets.addAll(routeBuckets.values());
+        return buckets;
+    }
+
+    /**
+     * 所有桶中正在排队的请求总数
+     */
+    public int getQueueDepth() {
+        int depth = 0;
+        for (Bucket bucket : getBuckets()) {
+            depth += bucket.getQueueDepth();
+        }
+        return depth;
+    }
+
+    /**
+     * 在分发前取得令牌后异步执行Call：令牌可用时立即enqueue，否则暂存到限流队列，
+     * 到预定的时间再交给OkHttp的调度器；被拒绝时通过 onFailure 回调IOException
+     *
+     * @param call     尚未执行的Call
+     * @param callback 结果回调，在OkHttp的线程上执行
+     */
+    public void enqueue(final Call call, final Callback callback) {
+        Request request = call.request();
+        Bucket host = hostBucket(request.url().host());
+        Bucket route = routeBuckets.isEmpty() ? null : routeBuckets.get(RequestMetrics.routeOf(request));
+        if (host == null && route == null) {
+            call.enqueue(callback);
+            return;
+        }
+        Ticket ticket;
+        try {
+            ticket = reserve(host, route);
+        } catch (IOException e) {
+            callback.onFailure(call, e);
+            return;
+        }
+        long wait = ticket.delay();
+        if (wait == 0) {
+            admitted.add(call);
+            call.enqueue(callback);
+            return;
+        }
+        park(new Parked(request.tag(), call, ticket, new Runnable() {
+            @Override
+            public void run() {
+                if (call.isCanceled()) {
+                    callback.onFailure(call, new IOException("Canceled"));
+                    return;
+                }
+                admitted.add(call);
+                call.enqueue(callback);
+            }
+        }), wait);
+    }
+
+    /**
+     * 在分发前为尚未创建Call的异步请求（如OkGo请求）取得令牌：令牌可用时立即调用dispatch，
+     * 否则暂存到限流队列，到预定的时间在限流线程上调用；暂存期间可通过 {@link #cancel(Object)} 取消，取消后不再调用
+     *
+     * @param method   请求方法，与url一起决定路由
+     * @param url      请求地址
+     * @param tag      请求标签，用于取消
+     * @param dispatch 发出请求
+     */
+    public void admit(String method, HttpUrl url, Object tag, final Dispatch dispatch) {
+        Bucket host = hostBucket(url.host());
+        Bucket route = routeBuckets.isEmpty() ? null : routeBuckets.get(RequestMetrics.routeOf(method, url));
+        if (host == null && route == null) {
+            dispatch.dispatch(null);
+            return;
+        }
+        Ticket ticket;
+        try {
+            ticket = reserve(host, route);
+        } catch (IOException e) {
+            // 不带凭证发出，拦截器再次预定时失败，由请求自身的回调报告错误
+            dispatch.dispatch(null);
+            return;
+        }
+        final String admission = String.valueOf(admissionIds.incrementAndGet());
+        synchronized (admissions) {
+            admissions.put(admission, Boolean.TRUE);
+        }
+        long wait = ticket.delay();
+        if (wait == 0) {
+            dispatch.dispatch(admission);
+            return;
+        }
+        park(new Parked(tag, null, ticket, new Runnable() {
+            @Override
+            public void run() {
+                dispatch.dispatch(admission);
+            }
+        }), wait);
+    }
+
+    private void park(final Parked entry, long wait) {
+        synchronized (this) {
+            parked.add(entry);
+            entry.future = SCHEDULER.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    dispatch(entry);
+                }
+            }, wait, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * 取消限流队列中tag相同的请求，退还其令牌；已分发的请求通过 CallRegistry 取消
+     *
+     * @return 取消的暂存请求数
+     */
+    public int cancel(Object tag) {
+        List<Parked> canceled = new ArrayList<>();
+        synchronized (this) {
+            Iterator<Parked> iterator = parked.iterator();
+            while (iterator.hasNext()) {
+                Parked entry = iterator.next();
+                if (entry.tag == tag) {
+                    iterator.remove();
+                    entry.future.cancel(false);
+                    canceled.add(entry);
+                }
+            }
+        }
+        for (Parked entry : canceled) {
+            entry.ticket.refund();
+            if (entry.call != null) entry.call.cancel();
+        }
+        return canceled.size();
+    }
+
+    private void dispatch(Parked entry) {
+        synchronized (this) {
+            if (!parked.remove(entry)) return;
+        }
+        entry.ticket.waited(System.nanoTime() - entry.parkedAt);
+        entry.task.run();
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        String admission = request.header(ADMISSION_HEADER);
+        if (admission != null) {
+            request = request.newBuilder().removeHeader(ADMISSION_HEADER).build();
+        }
+        Bucket host = hostBucket(request.url().host());
+        Bucket route = routeBuckets.isEmpty() ? null : routeBuckets.get(RequestMetrics.routeOf(request));
+        if (host == null && route == null) {
+            return chain.proceed(request);
+        }
+        if (!admitted.remove(chain.call()) && !consume(admission)) {
+            acquire(chain.call(), reserve(host, route));
+        }
+
+        Response response = chain.proceed(request);
+        int code = response.code();
+        if (code == 429 || (code == 503 && response.header("Retry-After") != null)) {
+            long until = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(retryAfterMs(response));
+            if (host != null) host.pause(until);
+            if (route != null) route.pause(until);
+        } else {
+            if (host != null) host.succeeded();
+            if (route != null) route.succeeded();
+        }
+        return response;
+    }
+
+    /**
+     * 凭证只能使用一次，OkGo重试时携带的同一个凭证需重新预定
+     */
+    private boolean consume(String admission) {
+        if (admission == null) return false;
+        synchronized (admissions) {
+            return admissions.remove(admission) != null;
+        }
+    }
+
+    private Bucket hostBucket(String host) {
+        Bucket bucket = hostBuckets.get(host);
+        if (bucket == null && defaultHostRate > 0) {
+            Bucket created = new Bucket(host, defaultHostRate, defaultHostBurst);
+            bucket = hostBuckets.putIfAbsent(host, created);
+            if (bucket == null) bucket = created;
+        }
+        return bucket;
+    }
+
+    /**
+     * 依次预定主机桶和路由桶，路由桶拒绝时退还已预定的主机令牌
+     */
+    private Ticket reserve(Bucket host, Bucket route) throws IOException {
+        long now = System.nanoTime();
+        long maxWait = TimeUnit.MILLISECONDS.toNanos(maxWaitMs);
+        long hostWait = host == null ? 0 : host.reserve(now, maxQueue, maxWait);
+        if (hostWait < 0) {
+            throw new IOException("rate limit exceeded: " + host.getKey());
+        }
+        long routeWait = route == null ? 0 : route.reserve(now, maxQueue, maxWait);
+        if (routeWait < 0) {
+            if (host != null) host.refund(hostWait > 0);
+            throw new IOException("rate limit exceeded: " + route.getKey());
+        }
+        return new Ticket(host, route, hostWait, routeWait);
+    }
+
+    private void acquire(Call call, Ticket ticket) throws IOException {
+        long wait = ticket.delay();
+        if (wait == 0) return;
+        long start = System.nanoTime();
+        long deadline = start + wait;
+        try {
+            long remaining;
+            while ((remaining = deadline - System.nanoTime()) > 0) {
+                if (call.isCanceled()) throw new IOException("Canceled");
+                TimeUnit.NANOSECONDS.sleep(Math.min(remaining, TimeUnit.MILLISECONDS.toNanos(50)));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while rate limited");
+        } finally {
+            ticket.waited(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Retry-After 支持秒数和HTTP日期两种格式
+     */
+    static long retryAfterMs(Response response) {
+        String value = response.header("Retry-After");
+        if (value != null) {
+            try {
+                return Math.max(0, Long.parseLong(value.trim()) * 1000);
+            } catch (NumberFormatException e) {
+                Date date = response.headers().getDate("Retry-After");
+                if (date != null) {
+                    return Math.max(0, date.getTime() - System.currentTimeMillis());
+                }
+            }
+        }
+        return DEFAULT_RETRY_AFTER_MS;
+    }
+}
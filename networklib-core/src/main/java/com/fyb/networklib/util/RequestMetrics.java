@@ -0,0 +1,328 @@
+package com.fyb.networklib.util;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.net.Socket;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.net.ssl.SSLSession;
+import javax.net.ssl.SSLSocket;
+
+import okhttp3.Call;
+import okhttp3.Connection;
+import okhttp3.EventListener;
+import okhttp3.Handshake;
+import okhttp3.HttpUrl;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * 请求分阶段耗时统计
+ * 通过OkHttp的EventListener记录每个请求的排队、DNS、建连、TLS、发送、服务端处理、响应体各阶段耗时，
+ * 加上JsonConvert的解析耗时和JsonCallback的回调耗时，按路由汇总到无锁直方图中
+ *
+ * 路由为 "方法 host/路径"，路径中的纯数字或长十六进制段归一为"*"，避免每个ID单独成一条路由
+ */
+public class RequestMetrics implements EventListener.Factory {
+
+    /**
+     * 统计的阶段
+     */
+    public enum Phase {
+        /** 入队到真正开始执行（含应用拦截器） */
+        QUEUE,
+        DNS,
+        /** TCP建连，包含TLS */
+        CONNECT,
+        /** TLS握手（完整握手和会话恢复） */
+        TLS,
+        /** 其中走会话恢复的握手，与TLS对比即可看出会话缓存节省的时间 */
+        TLS_RESUMED,
+        /** 发送请求头和请求体 */
+        REQUEST,
+        /** 请求发送完毕到读完响应头，近似服务端处理时间 */
+        SERVER,
+        /** 读取响应体 */
+        BODY,
+        /** JsonConvert解析 */
+        PARSE,
+        /** 解析完成到主线程回调结束 */
+        DELIVERY,
+        /** 入队到请求结束 */
+        TOTAL
+    }
+
+    private static final int MAX_ROUTES = 256;
+    private static final String OTHER_ROUTE = "other";
+
+    private static volatile RequestMetrics instance;
+
+    private final ConcurrentHashMap<String, RouteMetrics> routes = new ConcurrentHashMap<>();
+    private volatile boolean enabled = true;
+
+    private RequestMetrics() {
+    }
+
+    public static RequestMetrics getInstance() {
+        if (instance == null) {
+            synchronized (RequestMetrics.class) {
+                if (instance == null) {
+                    instance = new RequestMetrics();
+                }
+            }
+        }
+        return instance;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public EventListener create(Call call) {
+        return enabled ? new CallTimer(routeOf(call.request())) : EventListener.NONE;
+    }
+
+    /**
+     * 记录某个路由某阶段的耗时
+     */
+    public void record(String route, Phase phase, long nanos) {
+        if (!enabled || route == null || nanos < 0) return;
+        route(route).histograms[phase.ordinal()].record(nanos);
+    }
+
+    /**
+     * 导出当前统计快照
+     */
+    public MetricsSnapshot snapshot() {
+        MetricsSnapshot snapshot = new MetricsSnapshot();
+        snapshot.timestamp = System.currentTimeMillis();
+        for (Map.Entry<String, RouteMetrics> entry : routes.entrySet()) {
+            RouteMetrics metrics = entry.getValue();
+            MetricsSnapshot.Route route = new MetricsSnapshot.Route();
+            route.failures = metrics.failures.get();
+            route.newConnections = metrics.newConnections.get();
+            route.reusedConnections = metrics.reusedConnections.get();
+            for (Phase phase : Phase.values()) {
+                LatencyHistogram histogram = metrics.histograms[phase.ordinal()];
+                if (histogram.getCount() == 0) continue;
+                MetricsSnapshot.Stats stats = new MetricsSnapshot.Stats();
+                stats.count = histogram.getCount();
+                stats.meanMicros = histogram.getMeanMicros();
+                stats.p50Micros = histogram.getPercentileMicros(0.5);
+                stats.p90Micros = histogram.getPercentileMicros(0.9);
+                stats.p99Micros = histogram.getPercentileMicros(0.99);
+                stats.maxMicros = histogram.getMaxMicros();
+                route.phases.put(phase.name(), stats);
+            }
+            snapshot.routes.put(entry.getKey(), route);
+        }
+        return snapshot;
+    }
+
+    public void reset() {
+        routes.clear();
+    }
+
+    /**
+     * 计算请求所属的路由
+     */
+    public static String routeOf(Request request) {
+        return routeOf(request.method(), request.url());
+    }
+
+    public static String routeOf(String method, HttpUrl url) {
+        StringBuilder sb = new StringBuilder(method).append(' ').append(url.host());
+        for (String segment : url.pathSegments()) {
+            sb.append('/');
+            sb.append(isIdentifier(segment) ? "*" : segment);
+        }
+        return sb.toString();
+    }
+
+    private static boolean isIdentifier(String segment) {
+        if (segment.isEmpty()) return false;
+        boolean digits = true;
+        boolean hex = segment.length() >= 16;
+        for (int i = 0; i < segment.length(); i++) {
+            char c = segment.charAt(i);
+            if (c < '0' || c > '9') digits = false;
+            if (Character.digit(c, 16) < 0 && c != '-') hex = false;
+        }
+        return digits || hex;
+    }
+
+    private RouteMetrics route(String route) {
+        RouteMetrics metrics = routes.get(route);
+        if (metrics == null) {
+            if (routes.size() >= MAX_ROUTES) {
+                route = OTHER_ROUTE;
+            }
+            RouteMetrics created = new RouteMetrics();
+            metrics = routes.putIfAbsent(route, created);
+            if (metrics == null) metrics = created;
+        }
+        return metrics;
+    }
+
+    private static class RouteMetrics {
+        final LatencyHistogram[] histograms = new LatencyHistogram[Phase.values().length];
+        final AtomicLong failures = new AtomicLong();
+        final AtomicLong newConnections = new AtomicLong();
+        final AtomicLong reusedConnections = new AtomicLong();
+
+        RouteMetrics() {
+            for (int i = 0; i < histograms.length; i++) {
+                histograms[i] = new LatencyHistogram();
+            }
+        }
+    }
+
+    /**
+     * 单个请求的计时器，事件按顺序在同一请求上触发，无需同步
+     */
+    private class CallTimer extends EventListener {
+
+        private final String route;
+        private long callStart;
+        private long dnsStart;
+        private long connectStart;
+        private long secureConnectStart;
+        private long secureConnectStartMillis;
+        private long tlsNanos = -1;
+        private long requestStart;
+        private long requestEnd;
+        private long responseBodyStart;
+        private boolean started;
+        private boolean connected;
+
+        CallTimer(String route) {
+            this.route = route;
+        }
+
+        private void markStarted(long now) {
+            if (!started) {
+                started = true;
+                record(route, Phase.QUEUE, now - callStart);
+            }
+        }
+
+        @Override
+        public void callStart(Call call) {
+            callStart = System.nanoTime();
+        }
+
+        @Override
+        public void dnsStart(Call call, String domainName) {
+            dnsStart = System.nanoTime();
+            markStarted(dnsStart);
+        }
+
+        @Override
+        public void dnsEnd(Call call, String domainName, List<InetAddress> inetAddressList) {
+            record(route, Phase.DNS, System.nanoTime() - dnsStart);
+        }
+
+        @Override
+        public void connectStart(Call call, InetSocketAddress inetSocketAddress, Proxy proxy) {
+            connectStart = System.nanoTime();
+            markStarted(connectStart);
+            connected = true;
+        }
+
+        @Override
+        public void secureConnectStart(Call call) {
+            secureConnectStart = System.nanoTime();
+            secureConnectStartMillis = System.currentTimeMillis();
+        }
+
+        @Override
+        public void secureConnectEnd(Call call, Handshake handshake) {
+            tlsNanos = System.nanoTime() - secureConnectStart;
+            record(route, Phase.TLS, tlsNanos);
+        }
+
+        @Override
+        public void connectEnd(Call call, InetSocketAddress inetSocketAddress, Proxy proxy, Protocol protocol) {
+            record(route, Phase.CONNECT, System.nanoTime() - connectStart);
+        }
+
+        @Override
+        public void connectionAcquired(Call call, Connection connection) {
+            markStarted(System.nanoTime());
+            if (tlsNanos >= 0 && isResumed(connection)) {
+                record(route, Phase.TLS_RESUMED, tlsNanos);
+            }
+            RouteMetrics metrics = route(route);
+            if (connected) {
+                metrics.newConnections.incrementAndGet();
+            } else {
+                metrics.reusedConnections.incrementAndGet();
+            }
+        }
+
+        /**
+         * 恢复的会话沿用首次握手时的创建时间，早于本次握手开始即说明是会话恢复
+         */
+        private boolean isResumed(Connection connection) {
+            Socket socket = connection.socket();
+            if (!(socket instanceof SSLSocket)) return false;
+            SSLSession session = ((SSLSocket) socket).getSession();
+            return session != null && session.getCreationTime() < secureConnectStartMillis;
+        }
+
+        @Override
+        public void requestHeadersStart(Call call) {
+            requestStart = System.nanoTime();
+        }
+
+        @Override
+        public void requestHeadersEnd(Call call, Request request) {
+            requestEnd = System.nanoTime();
+        }
+
+        @Override
+        public void requestBodyEnd(Call call, long byteCount) {
+            requestEnd = System.nanoTime();
+        }
+
+        @Override
+        public void responseHeadersEnd(Call call, Response response) {
+            // responseHeadersStart在开始阻塞读取前触发，等待服务端的时间要到读完响应头才算结束
+            long now = System.nanoTime();
+            record(route, Phase.REQUEST, requestEnd - requestStart);
+            record(route, Phase.SERVER, now - requestEnd);
+        }
+
+        @Override
+        public void responseBodyStart(Call call) {
+            responseBodyStart = System.nanoTime();
+        }
+
+        @Override
+        public void responseBodyEnd(Call call, long byteCount) {
+            record(route, Phase.BODY, System.nanoTime() - responseBodyStart);
+        }
+
+        @Override
+        public void callEnd(Call call) {
+            record(route, Phase.TOTAL, System.nanoTime() - callStart);
+        }
+
+        @Override
+        public void callFailed(Call call, IOException ioe) {
+            route(route).failures.incrementAndGet();
+            record(route, Phase.TOTAL, System.nanoTime() - callStart);
+        }
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2016 jeasonlzy(廖子尧)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fyb.networklib.util;
+
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.annotations.JsonAdapter;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.io.Serializable;
+
+/**
+ * ================================================
+ * 作    者：jeasonlzy（廖子尧）Github地址：https://github.com/jeasonlzy
+ * 版    本：1.0
+ * 创建日期：16/9/28
+ * 描    述：
+ * 修订历史：
+ * ================================================
+ */
+@JsonAdapter(SimpleResponse.AdapterFactory.class)
+public class SimpleResponse implements Serializable {
+
+    private static final long serialVersionUID = -1477609349345966116L;
+
+    public int code;
+    public String msg;
+
+    public LzyResponse toLzyResponse() {
+        LzyResponse lzyResponse = new LzyResponse();
+        lzyResponse.code = code;
+        lzyResponse.msg = msg;
+        return lzyResponse;
+    }
+
+    /**
+     * 手写的解析器，不经反射绑定字段
+     */
+    static final class AdapterFactory implements TypeAdapterFactory {
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> typeToken) {
+            if (typeToken.getRawType() != SimpleResponse.class) return null;
+            return (TypeAdapter<T>) new Adapter(gson);
+        }
+    }
+
+    private static final class Adapter extends TypeAdapter<SimpleResponse> {
+        private final TypeAdapter<Integer> intAdapter;
+        private final TypeAdapter<String> stringAdapter;
+
+        Adapter(Gson gson) {
+            this.intAdapter = gson.getAdapter(int.class);
+            this.stringAdapter = gson.getAdapter(String.class);
+        }
+
+        @Override
+        public void write(JsonWriter out, SimpleResponse value) throws IOException {
+            out.beginObject();
+            out.name("code").value(value.code);
+            out.name("msg");
+            stringAdapter.write(out, value.msg);
+            out.endObject();
+        }
+
+        @Override
+        public SimpleResponse read(JsonReader in) throws IOException {
+            SimpleResponse response = new SimpleResponse();
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "code":
+                        Integer code = intAdapter.read(in);
+                        if (code != null) response.code = code;
+                        break;
+                    case "msg":
+                        response.msg = stringAdapter.read(in);
+                        break;
+                    default:
+                        in.skipValue();
+                }
+            }
+            in.endObject();
+            return response;
+        }
+    }
+}
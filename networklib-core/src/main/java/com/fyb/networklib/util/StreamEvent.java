@@ -0,0 +1,28 @@
+package com.fyb.networklib.util;
+
+import java.io.Serializable;
+
+/**
+ * 流式响应中的单个事件
+ * 对应SSE的一帧（id/event/data）或NDJSON的一行
+ */
+public class StreamEvent<T> implements Serializable {
+
+    private static final long serialVersionUID = 3081624597405519634L;
+
+    /** 事件ID，对应SSE的id字段，NDJSON时为null */
+    public String id;
+    /** 事件类型，对应SSE的event字段，未指定时为"message" */
+    public String event;
+    /** 解析后的事件数据 */
+    public T data;
+
+    @Override
+    public String toString() {
+        return "StreamEvent{" +
+                "id='" + id + '\'' +
+                ", event='" + event + '\'' +
+                ", data=" + data +
+                '}';
+    }
+}
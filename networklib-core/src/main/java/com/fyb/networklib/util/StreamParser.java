@@ -0,0 +1,150 @@
+package com.fyb.networklib.util;
+
+import java.io.IOException;
+
+import okio.Buffer;
+import okio.BufferedSource;
+
+/**
+ * 流式响应的逐行解析器
+ * 从okio source中增量解析 text/event-stream（SSE）帧或换行分隔的JSON（NDJSON），每解析出一个事件回调一次
+ *
+ * SSE：多行data以换行拼接，空行结束一帧；id字段更新 {@link #getLastEventId()}，没有id的帧沿用上一个ID；
+ * retry字段更新 {@link #getRetryMillis()}；冒号开头的注释行忽略
+ * NDJSON：每个非空行是一个事件
+ *
+ * 单行长度受maxLineBytes限制，超过时抛出IOException；同一个解析器可跨多次请求复用，保留最后的事件ID用于续传
+ */
+public class StreamParser {
+
+    /**
+     * 事件回调，在读取线程执行
+     */
+    public interface Listener {
+        /**
+         * @param id    事件ID，NDJSON为null
+         * @param event 事件名，未指定时为null
+         * @param data  事件数据
+         * @return 是否继续读取
+         */
+        boolean onEvent(String id, String event, String data) throws Exception;
+    }
+
+    private final long maxLineBytes;
+    private volatile String lastEventId;
+    private volatile long retryMillis = -1;
+
+    public StreamParser(long maxLineBytes) {
+        this.maxLineBytes = maxLineBytes;
+    }
+
+    /**
+     * 最后收到的事件ID，用于断点续传
+     */
+    public String getLastEventId() {
+        return lastEventId;
+    }
+
+    public void setLastEventId(String lastEventId) {
+        this.lastEventId = lastEventId;
+    }
+
+    /**
+     * 服务端通过retry字段建议的重连间隔（毫秒），未指定时返回-1
+     */
+    public long getRetryMillis() {
+        return retryMillis;
+    }
+
+    /**
+     * 解析SSE帧直到流结束或listener返回false
+     */
+    public void readEventStream(BufferedSource source, Listener listener) throws Exception {
+        String id = null;
+        String event = null;
+        StringBuilder data = null;
+        String line;
+        while ((line = readLine(source)) != null) {
+            if (line.isEmpty()) {
+                // 空行表示一帧结束
+                if (data != null) {
+                    if (id != null) lastEventId = id;
+                    if (!listener.onEvent(id != null ? id : lastEventId, event, data.toString())) return;
+                }
+                id = null;
+                event = null;
+                data = null;
+                continue;
+            }
+            if (line.charAt(0) == ':') {
+                continue; // 注释行，服务端常用于保活
+            }
+            int colon = line.indexOf(':');
+            String field = colon < 0 ? line : line.substring(0, colon);
+            String value = colon < 0 ? "" : line.substring(colon + 1);
+            if (value.startsWith(" ")) value = value.substring(1);
+            switch (field) {
+                case "data":
+                    if (data == null) {
+                        data = new StringBuilder(value);
+                    } else {
+                        data.append('\n').append(value);
+                    }
+                    break;
+                case "event":
+                    event = value;
+                    break;
+                case "id":
+                    id = value;
+                    break;
+                case "retry":
+                    try {
+                        retryMillis = Long.parseLong(value);
+                    } catch (NumberFormatException ignored) {
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    /**
+     * 解析NDJSON直到流结束或listener返回false
+     */
+    public void readJsonLines(BufferedSource source, Listener listener) throws Exception {
+        String line;
+        while ((line = readLine(source)) != null) {
+            if (!line.trim().isEmpty() && !listener.onEvent(null, null, line)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * 读取一行（不含换行符），单行长度受maxLineBytes限制，流结束时返回null
+     */
+    private String readLine(BufferedSource source) throws IOException {
+        Buffer buffer = source.buffer();
+        long scanned = 0;
+        while (true) {
+            long index = buffer.indexOf((byte) '\n', scanned);
+            if (index > maxLineBytes) {
+                // 整行已在缓冲区中同样受限
+                throw new IOException("Stream line exceeds " + maxLineBytes + " bytes");
+            }
+            if (index != -1) {
+                String line = buffer.readUtf8(index);
+                buffer.skip(1);
+                return line.endsWith("\r") ? line.substring(0, line.length() - 1) : line;
+            }
+            scanned = buffer.size();
+            if (scanned > maxLineBytes) {
+                throw new IOException("Stream line exceeds " + maxLineBytes + " bytes");
+            }
+            if (!source.request(scanned + 1)) {
+                return scanned == 0 ? null : buffer.readUtf8();
+            }
+        }
+    }
+}
@@ -0,0 +1,249 @@
+package com.fyb.networklib.util;
+
+import com.fyb.networklib.data.TripDelta;
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.lang.reflect.Type;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 本地物化记录存储
+ * 以ID为键保存服务端记录的最新状态和同步令牌，读取全部在内存中完成；
+ * 增量合并后整体写入gzip压缩的JSON文件：先写临时文件、刷盘后再重命名覆盖，进程中途被杀也不会留下半个文件
+ */
+public class SyncStore {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final int VERSION = 1;
+    private static final Gson GSON = new Gson();
+
+    private final File file;
+    private final String idField;
+    private final Map<String, JsonObject> records = new LinkedHashMap<>();
+    /** 串行化写文件，多个save共用同一个临时文件 */
+    private final Object saveLock = new Object();
+    private String syncToken;
+    private boolean loaded;
+    /** 每次clear加一，clear之前开始的save不再覆盖文件 */
+    private int generation;
+
+    /**
+     * @param file    存储文件
+     * @param idField 记录中作为主键的字段名，如 "id"
+     */
+    public SyncStore(File file, String idField) {
+        this.file = file;
+        this.idField = idField;
+    }
+
+    /**
+     * 从文件加载，只在第一次调用时读取；文件不存在或已损坏时从空存储开始（下次同步会拉取全量）
+     */
+    public synchronized void load() {
+        if (loaded) return;
+        loaded = true;
+        if (!file.exists()) return;
+        try (JsonReader reader = new JsonReader(new InputStreamReader(
+                new GZIPInputStream(new BufferedInputStream(new FileInputStream(file))), UTF8))) {
+            String token = null;
+            Map<String, JsonObject> read = new LinkedHashMap<>();
+            JsonParser parser = new JsonParser();
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+                if ("version".equals(name) && reader.nextInt() != VERSION) {
+                    return;
+                } else if ("token".equals(name)) {
+                    token = reader.nextString();
+                } else if ("records".equals(name)) {
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        JsonObject record = parser.parse(reader).getAsJsonObject();
+                        String id = idOf(record);
+                        if (id != null) read.put(id, record);
+                    }
+                    reader.endArray();
+                } else if (!"version".equals(name)) {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+            records.putAll(read);
+            syncToken = token;
+        } catch (IOException | RuntimeException e) {
+            // 文件损坏或无法读取时丢弃，下次同步拉取全量
+            records.clear();
+            syncToken = null;
+        }
+    }
+
+    public synchronized boolean isLoaded() {
+        return loaded;
+    }
+
+    public synchronized String getSyncToken() {
+        return syncToken;
+    }
+
+    public synchronized int size() {
+        return records.size();
+    }
+
+    /**
+     * 按ID读取记录，不存在时返回null
+     */
+    public synchronized <T> T get(String id, Type type) {
+        JsonObject record = records.get(id);
+        return record == null ? null : Convert.<T>fromJson(record, type);
+    }
+
+    /**
+     * 读取全部记录，按首次写入的顺序
+     */
+    public <T> List<T> getAll(Type type) {
+        List<JsonObject> snapshot;
+        synchronized (this) {
+            snapshot = new ArrayList<>(records.values());
+        }
+        List<T> result = new ArrayList<>(snapshot.size());
+        for (JsonObject record : snapshot) {
+            result.add(Convert.<T>fromJson(record, type));
+        }
+        return result;
+    }
+
+    /**
+     * 合并一批增量并更新同步令牌，不写文件
+     *
+     * @return 本批新增、修改或删除的记录ID
+     */
+    public synchronized Set<String> apply(TripDelta delta) {
+        Set<String> changed = new LinkedHashSet<>();
+        // 全量数据：未再出现的记录视为已删除
+        Map<String, JsonObject> previous = null;
+        if (delta.isFull()) {
+            previous = new LinkedHashMap<>(records);
+            records.clear();
+        }
+        if (delta.getUpserts() != null) {
+            for (JsonObject record : delta.getUpserts()) {
+                String id = idOf(record);
+                if (id == null) continue;
+                JsonObject old = records.put(id, record);
+                if (previous != null) old = previous.remove(id);
+                if (!record.equals(old)) changed.add(id);
+            }
+        }
+        if (previous != null) {
+            changed.addAll(previous.keySet());
+        }
+        if (delta.getDeletes() != null) {
+            for (String id : delta.getDeletes()) {
+                if (records.remove(id) != null) changed.add(id);
+            }
+        }
+        if (delta.getSyncToken() != null) {
+            syncToken = delta.getSyncToken();
+        }
+        return changed;
+    }
+
+    /**
+     * 把当前内存状态原子地写入文件；并发调用时依次写入，写文件期间不阻塞读取
+     */
+    public void save() throws IOException {
+        synchronized (saveLock) {
+            write();
+        }
+    }
+
+    private void write() throws IOException {
+        List<JsonObject> snapshot;
+        String token;
+        int snapshotGeneration;
+        synchronized (this) {
+            snapshot = new ArrayList<>(records.values());
+            token = syncToken;
+            snapshotGeneration = generation;
+        }
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs() && !parent.exists()) {
+            throw new IOException("cannot create " + parent);
+        }
+        File temp = new File(file.getPath() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(temp)) {
+            GZIPOutputStream gzip = new GZIPOutputStream(new BufferedOutputStream(out));
+            JsonWriter writer = new JsonWriter(new OutputStreamWriter(gzip, UTF8));
+            writer.beginObject();
+            writer.name("version").value(VERSION);
+            if (token != null) writer.name("token").value(token);
+            writer.name("records").beginArray();
+            for (JsonObject record : snapshot) {
+                GSON.toJson(record, writer);
+            }
+            writer.endArray();
+            writer.endObject();
+            writer.flush();
+            gzip.finish();
+            gzip.flush();
+            // 刷盘后再重命名，避免断电后出现内容为空的新文件
+            out.getFD().sync();
+        }
+        synchronized (this) {
+            if (snapshotGeneration != generation) {
+                // 写入期间被clear，旧数据不能再落盘
+                //noinspection ResultOfMethodCallIgnored
+                temp.delete();
+                return;
+            }
+            if (!temp.renameTo(file)) {
+                // 个别文件系统不允许覆盖已存在的文件
+                if (!file.delete() || !temp.renameTo(file)) {
+                    throw new IOException("cannot replace " + file);
+                }
+            }
+        }
+    }
+
+    /**
+     * 清空记录和令牌并删除文件，如退出登录时
+     */
+    public synchronized void clear() {
+        records.clear();
+        syncToken = null;
+        generation++;
+        //noinspection ResultOfMethodCallIgnored
+        file.delete();
+    }
+
+    public synchronized Set<String> ids() {
+        return Collections.unmodifiableSet(new LinkedHashSet<>(records.keySet()));
+    }
+
+    private String idOf(JsonObject record) {
+        JsonElement id = record.get(idField);
+        return id == null || id.isJsonNull() ? null : id.getAsString();
+    }
+}
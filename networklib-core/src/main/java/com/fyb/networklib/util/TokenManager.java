@@ -0,0 +1,262 @@
+package com.fyb.networklib.util;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import okhttp3.Authenticator;
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.Route;
+
+/**
+ * 访问令牌管理
+ * 1. 缓存令牌及其过期时间，在过期前 refreshAhead 毫秒于后台主动刷新
+ * 2. 同一时刻最多只有一次刷新（single-flight），并发请求等待同一次刷新的结果
+ * 3. 作为拦截器为请求补上最新令牌；作为Authenticator处理401：若令牌已被其他请求刷新过则直接重放，否则等待共享刷新后重放
+ *
+ * 刷新逻辑由 {@link Refresher} 提供，在专用后台线程中执行；刷新请求本身不会再触发拦截器和Authenticator，避免自我等待
+ */
+public class TokenManager implements TokenProvider, Interceptor, Authenticator {
+
+    public static final String HEADER = "Authorization";
+    public static final String PREFIX = "JWT ";
+
+    private static final long AWAIT_TIMEOUT_MS = 30000;
+
+    private static final ScheduledExecutorService SCHEDULER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "OkNet-Token");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /** 标记当前线程正在执行刷新 */
+    private static final ThreadLocal<Boolean> REFRESHING = new ThreadLocal<>();
+
+    /**
+     * 令牌刷新逻辑
+     */
+    public interface Refresher {
+        /**
+         * 同步刷新令牌（后台线程调用）
+         *
+         * @param expired 当前令牌，可能已过期
+         * @return 新令牌；返回null表示需要重新登录，管理器会清空令牌
+         */
+        Token refresh(Token expired) throws IOException;
+    }
+
+    /**
+     * 访问令牌及其过期时间
+     */
+    public static class Token {
+        public final String accessToken;
+        /** 过期时间点（毫秒时间戳） */
+        public final long expiresAt;
+
+        public Token(String accessToken, long expiresAt) {
+            this.accessToken = accessToken;
+            this.expiresAt = expiresAt;
+        }
+
+        public boolean isExpired() {
+            return System.currentTimeMillis() >= expiresAt;
+        }
+    }
+
+    private final Refresher refresher;
+    private volatile long refreshAheadMs = 60000;
+    private volatile Token token;
+    private CompletableFuture<Token> inFlight;
+    private ScheduledFuture<?> scheduled;
+
+    public TokenManager(Refresher refresher) {
+        this.refresher = refresher;
+    }
+
+    /**
+     * 提前多久开始主动刷新，默认60秒
+     */
+    public TokenManager setRefreshAhead(long refreshAheadMs) {
+        this.refreshAheadMs = refreshAheadMs;
+        return this;
+    }
+
+    /**
+     * 设置令牌（如登录成功后）
+     *
+     * @param expiresAt 过期时间点（毫秒时间戳）
+     */
+    public void setToken(String accessToken, long expiresAt) {
+        synchronized (this) {
+            store(new Token(accessToken, expiresAt));
+        }
+    }
+
+    public Token getToken() {
+        return token;
+    }
+
+    /**
+     * 清空令牌（如退出登录）
+     */
+    public synchronized void clear() {
+        store(null);
+    }
+
+    /**
+     * 不阻塞：返回当前令牌，临近或已经过期时触发后台刷新；可在主线程调用
+     */
+    @Override
+    public String getAccessToken() {
+        Token current = token;
+        if (current == null) return null;
+        if (needsRefresh(current)) {
+            refreshAsync(current);
+        }
+        return current.accessToken;
+    }
+
+    /**
+     * 阻塞：令牌已过期时等待刷新完成，临近过期时触发后台刷新但立即返回当前令牌；不要在主线程调用
+     */
+    public String awaitAccessToken() throws IOException {
+        Token current = token;
+        if (current == null) return null;
+        if (current.isExpired()) {
+            Token fresh = await(refreshAsync(current));
+            return fresh == null ? null : fresh.accessToken;
+        }
+        if (needsRefresh(current)) {
+            refreshAsync(current);
+        }
+        return current.accessToken;
+    }
+
+    /**
+     * 为请求补上最新令牌；已带有非JWT授权头的请求保持不变
+     */
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        String header = request.header(HEADER);
+        if (REFRESHING.get() != null || token == null || (header != null && !header.startsWith(PREFIX))) {
+            return chain.proceed(request);
+        }
+        String accessToken = awaitAccessToken();
+        if (accessToken != null && !(PREFIX + accessToken).equals(header)) {
+            request = request.newBuilder().header(HEADER, PREFIX + accessToken).build();
+        }
+        return chain.proceed(request);
+    }
+
+    /**
+     * 收到401时在请求线程中调用：令牌已被刷新则直接用新令牌重放，否则等待共享的刷新结果后重放
+     */
+    @Override
+    public Request authenticate(Route route, Response response) throws IOException {
+        if (REFRESHING.get() != null || priorCount(response) >= 2) return null;
+        Request request = response.request();
+        String header = request.header(HEADER);
+        if (header != null && !header.startsWith(PREFIX)) return null;
+
+        Token current = token;
+        if (current == null) return null;
+        String failed = header == null ? null : header.substring(PREFIX.length());
+        Token fresh = current.accessToken.equals(failed) ? await(refreshAsync(current)) : current;
+        if (fresh == null) return null;
+        return request.newBuilder().header(HEADER, PREFIX + fresh.accessToken).build();
+    }
+
+    private boolean needsRefresh(Token current) {
+        return System.currentTimeMillis() >= current.expiresAt - refreshAheadMs;
+    }
+
+    /**
+     * 发起或加入一次刷新
+     *
+     * @param stale 调用方认为已失效的令牌；若此时令牌已被替换，直接返回新令牌
+     */
+    private synchronized CompletableFuture<Token> refreshAsync(final Token stale) {
+        Token current = token;
+        if (current != null && current != stale && !needsRefresh(current)) {
+            return CompletableFuture.completedFuture(current);
+        }
+        if (inFlight != null) return inFlight;
+        final CompletableFuture<Token> future = new CompletableFuture<>();
+        inFlight = future;
+        SCHEDULER.execute(new Runnable() {
+            @Override
+            public void run() {
+                REFRESHING.set(Boolean.TRUE);
+                try {
+                    Token fresh = refresher.refresh(stale);
+                    synchronized (TokenManager.this) {
+                        inFlight = null;
+                        store(fresh);
+                    }
+                    future.complete(fresh);
+                } catch (Throwable t) {
+                    synchronized (TokenManager.this) {
+                        inFlight = null;
+                    }
+                    future.completeExceptionally(t);
+                } finally {
+                    REFRESHING.remove();
+                }
+            }
+        });
+        return future;
+    }
+
+    /**
+     * 保存令牌并安排下一次主动刷新，需持有锁
+     */
+    private void store(final Token fresh) {
+        token = fresh;
+        if (scheduled != null) {
+            scheduled.cancel(false);
+            scheduled = null;
+        }
+        if (fresh == null) return;
+        long delay = fresh.expiresAt - refreshAheadMs - System.currentTimeMillis();
+        if (delay > 0) {
+            scheduled = SCHEDULER.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    refreshAsync(fresh);
+                }
+            }, delay, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private static Token await(CompletableFuture<Token> future) throws IOException {
+        try {
+            return future.get(AWAIT_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while refreshing token");
+        } catch (TimeoutException e) {
+            throw new InterruptedIOException("token refresh timed out");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) throw (IOException) cause;
+            throw new IOException("token refresh failed", cause);
+        }
+    }
+
+    private static int priorCount(Response response) {
+        int count = 0;
+        while ((response = response.priorResponse()) != null) {
+            count++;
+        }
+        return count;
+    }
+}
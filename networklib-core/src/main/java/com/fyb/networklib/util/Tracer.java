@@ -0,0 +1,464 @@
+package com.fyb.networklib.util;
+
+import com.google.gson.stream.JsonWriter;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+import okhttp3.Call;
+import okhttp3.EventListener;
+import okhttp3.Handshake;
+import okhttp3.Interceptor;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * 请求链路追踪
+ * 1. 一次用户操作通过 {@link #begin(String)} 开始一个追踪，期间发起的请求（同步请求，以及在此期间创建的 JsonCallback 对应的请求）都归入同一个追踪ID
+ * 2. 每个请求是一个子span，排队、DNS、建连、TLS、发送、服务端处理、响应体各阶段再细分为子span；解析和主线程回调也记为请求的子span
+ * 3. 请求头携带W3C的 traceparent，服务端的日志和追踪可以按同一个追踪ID关联
+ * 4. 结束的span写入固定容量的环形缓冲区，{@link #export(File)} 导出为Chrome Trace Event格式的JSON，可在 chrome://tracing 或 Perfetto 中查看关键路径
+ *
+ * 默认关闭，关闭时不添加请求头也不记录；没有所属追踪的请求各自作为一个追踪
+ */
+public class Tracer implements EventListener.Factory, Interceptor {
+
+    public static final String HEADER = "traceparent";
+
+    private static final long BASE_MILLIS = System.currentTimeMillis();
+    private static final long BASE_NANOS = System.nanoTime();
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private static volatile Tracer instance;
+
+    /**
+     * 一段有起止时间的操作
+     */
+    public static final class Span {
+        private final Tracer tracer;
+        private final String traceId;
+        private final String spanId;
+        private final String parentId;
+        private final String name;
+        private final String category;
+        private final long startNanos;
+        private final long threadId;
+        private final String threadName;
+        private final Map<String, Object> args = new LinkedHashMap<>();
+        private long endNanos = -1;
+        private Span previous;
+
+        Span(Tracer tracer, String traceId, String parentId, String name, String category, long startNanos) {
+            this.tracer = tracer;
+            this.traceId = traceId;
+            this.spanId = randomHex(8);
+            this.parentId = parentId;
+            this.name = name;
+            this.category = category;
+            this.startNanos = startNanos;
+            Thread thread = Thread.currentThread();
+            this.threadId = thread.getId();
+            this.threadName = thread.getName();
+        }
+
+        /**
+         * 从当前时间开始的子span，不改变线程的当前span
+         */
+        public Span child(String name) {
+            return new Span(tracer, traceId, spanId, name, "app", System.nanoTime());
+        }
+
+        /**
+         * 设为当前线程的当前span，之后在本线程发起的请求归入此span，{@link #end()} 时恢复之前的span
+         */
+        public Span makeCurrent() {
+            previous = tracer.current.get();
+            tracer.current.set(this);
+            return this;
+        }
+
+        public synchronized Span arg(String key, Object value) {
+            args.put(key, value);
+            return this;
+        }
+
+        public void end() {
+            end(System.nanoTime());
+        }
+
+        void end(long nanos) {
+            synchronized (this) {
+                if (endNanos >= 0) return;
+                endNanos = nanos;
+            }
+            if (tracer.current.get() == this) {
+                if (previous == null) {
+                    tracer.current.remove();
+                } else {
+                    tracer.current.set(previous);
+                }
+            }
+            tracer.add(this);
+        }
+
+        /**
+         * W3C traceparent请求头的值
+         */
+        public String traceparent() {
+            return "00-" + traceId + "-" + spanId + "-01";
+        }
+
+        public String getTraceId() {
+            return traceId;
+        }
+
+        public String getSpanId() {
+            return spanId;
+        }
+
+        /**
+         * 根span返回null
+         */
+        public String getParentId() {
+            return parentId;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getCategory() {
+            return category;
+        }
+
+        /**
+         * 持续时间（微秒），尚未结束时为-1
+         */
+        public synchronized long getDurationMicros() {
+            return endNanos < 0 ? -1 : (endNanos - startNanos) / 1000;
+        }
+    }
+
+    private final ThreadLocal<Span> current = new ThreadLocal<>();
+    private final Map<Call, Span> calls = new ConcurrentHashMap<>();
+    private volatile boolean enabled;
+    private Span[] buffer = new Span[4096];
+    private int next;
+    private long recorded;
+
+    private Tracer() {
+    }
+
+    public static Tracer getInstance() {
+        if (instance == null) {
+            synchronized (Tracer.class) {
+                if (instance == null) {
+                    instance = new Tracer();
+                }
+            }
+        }
+        return instance;
+    }
+
+    public Tracer setEnabled(boolean enabled) {
+        this.enabled = enabled;
+        return this;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 环形缓冲区容量，默认4096个span，超出时覆盖最早的；修改容量会清空已记录的span
+     */
+    public synchronized Tracer setCapacity(int capacity) {
+        buffer = new Span[Math.max(1, capacity)];
+        next = 0;
+        recorded = 0;
+        return this;
+    }
+
+    /**
+     * 开始一个操作并设为当前线程的当前span；当前线程已有span时作为其子span，否则开始新的追踪
+     */
+    public Span begin(String name) {
+        Span parent = current.get();
+        Span span = parent == null
+                ? new Span(this, randomHex(16), null, name, "app", System.nanoTime())
+                : parent.child(name);
+        return span.makeCurrent();
+    }
+
+    /**
+     * 当前线程的当前span，没有时返回null
+     */
+    public Span current() {
+        return current.get();
+    }
+
+    /**
+     * 为携带traceparent的请求记录一段子span，如解析和回调；请求不属于任何追踪时忽略
+     */
+    public void record(Request request, String name, long startNanos, long endNanos) {
+        if (!enabled || request == null) return;
+        String[] context = parse(request.header(HEADER));
+        if (context == null) return;
+        new Span(this, context[0], context[1], name, "app", startNanos).end(endNanos);
+    }
+
+    /**
+     * 已记录的span，按结束时间从早到晚
+     */
+    public synchronized List<Span> getSpans() {
+        List<Span> spans = new ArrayList<>();
+        int size = (int) Math.min(recorded, buffer.length);
+        int start = recorded > buffer.length ? next : 0;
+        for (int i = 0; i < size; i++) {
+            spans.add(buffer[(start + i) % buffer.length]);
+        }
+        return spans;
+    }
+
+    public synchronized void clear() {
+        buffer = new Span[buffer.length];
+        next = 0;
+        recorded = 0;
+    }
+
+    /**
+     * 以Chrome Trace Event格式导出缓冲区中的span，先写临时文件再替换
+     */
+    public void export(File file) throws IOException {
+        File tmp = new File(file.getPath() + ".tmp");
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(tmp), UTF8)) {
+            export(writer);
+        }
+        if (!tmp.renameTo(file)) {
+            file.delete();
+            if (!tmp.renameTo(file)) throw new IOException("rename failed: " + file);
+        }
+    }
+
+    public void export(Writer out) throws IOException {
+        List<Span> spans = getSpans();
+        JsonWriter writer = new JsonWriter(out);
+        writer.beginObject();
+        writer.name("traceEvents").beginArray();
+        Map<Long, String> threads = new HashMap<>();
+        for (Span span : spans) {
+            threads.put(span.threadId, span.threadName);
+            writer.beginObject();
+            writer.name("name").value(span.name);
+            writer.name("cat").value(span.category);
+            writer.name("ph").value("X");
+            writer.name("ts").value(BASE_MILLIS * 1000 + (span.startNanos - BASE_NANOS) / 1000);
+            writer.name("dur").value(span.getDurationMicros());
+            writer.name("pid").value(1);
+            writer.name("tid").value(span.threadId);
+            writer.name("args").beginObject();
+            writer.name("traceId").value(span.traceId);
+            writer.name("spanId").value(span.spanId);
+            if (span.parentId != null) writer.name("parentId").value(span.parentId);
+            synchronized (span) {
+                for (Map.Entry<String, Object> arg : span.args.entrySet()) {
+                    writer.name(arg.getKey()).value(String.valueOf(arg.getValue()));
+                }
+            }
+            writer.endObject();
+            writer.endObject();
+        }
+        for (Map.Entry<Long, String> thread : threads.entrySet()) {
+            writer.beginObject();
+            writer.name("name").value("thread_name");
+            writer.name("ph").value("M");
+            writer.name("pid").value(1);
+            writer.name("tid").value(thread.getKey());
+            writer.name("args").beginObject().name("name").value(thread.getValue()).endObject();
+            writer.endObject();
+        }
+        writer.endArray();
+        writer.name("displayTimeUnit").value("ms");
+        writer.endObject();
+        writer.flush();
+    }
+
+    /**
+     * 为请求补上当前请求span的traceparent，并记录排队阶段
+     */
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        Span span = enabled ? calls.get(chain.call()) : null;
+        if (span == null) {
+            return chain.proceed(request);
+        }
+        phase(span, "queue", span.startNanos, System.nanoTime());
+        return chain.proceed(request.newBuilder().header(HEADER, span.traceparent()).build());
+    }
+
+    @Override
+    public EventListener create(Call call) {
+        return enabled ? new CallTracer() : EventListener.NONE;
+    }
+
+    synchronized void add(Span span) {
+        buffer[next] = span;
+        next = (next + 1) % buffer.length;
+        recorded++;
+    }
+
+    private void phase(Span parent, String name, long start, long end) {
+        if (start <= 0 || end < start) return;
+        Span span = new Span(this, parent.traceId, parent.spanId, name, "http", start);
+        span.end(end);
+    }
+
+    /**
+     * 解析traceparent，返回 [traceId, parentId]，格式不符时返回null
+     */
+    static String[] parse(String traceparent) {
+        if (traceparent == null) return null;
+        String[] parts = traceparent.trim().split("-");
+        if (parts.length < 4 || parts[1].length() != 32 || parts[2].length() != 16) return null;
+        return new String[]{parts[1], parts[2]};
+    }
+
+    private static String randomHex(int bytes) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        StringBuilder sb = new StringBuilder(bytes * 2);
+        for (int i = 0; i < bytes; i++) {
+            int b = random.nextInt(256);
+            sb.append(Character.forDigit(b >> 4, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 单个请求的追踪，事件按顺序在同一请求上触发
+     */
+    private class CallTracer extends EventListener {
+
+        private Span span;
+        private long dnsStart;
+        private long connectStart;
+        private long secureConnectStart;
+        private long requestStart;
+        private long requestEnd;
+        private long responseBodyStart;
+
+        @Override
+        public void callStart(Call call) {
+            Request request = call.request();
+            long now = System.nanoTime();
+            String name = RequestMetrics.routeOf(request);
+            String[] context = parse(request.header(HEADER));
+            Span parent = current.get();
+            if (context != null) {
+                span = new Span(Tracer.this, context[0], context[1], name, "http", now);
+            } else if (parent != null) {
+                span = new Span(Tracer.this, parent.traceId, parent.spanId, name, "http", now);
+            } else {
+                span = new Span(Tracer.this, randomHex(16), null, name, "http", now);
+            }
+            span.arg("url", request.url());
+            calls.put(call, span);
+        }
+
+        @Override
+        public void dnsStart(Call call, String domainName) {
+            dnsStart = System.nanoTime();
+        }
+
+        @Override
+        public void dnsEnd(Call call, String domainName, List<InetAddress> inetAddressList) {
+            if (span != null) phase(span, "dns", dnsStart, System.nanoTime());
+        }
+
+        @Override
+        public void connectStart(Call call, InetSocketAddress inetSocketAddress, Proxy proxy) {
+            connectStart = System.nanoTime();
+        }
+
+        @Override
+        public void secureConnectStart(Call call) {
+            secureConnectStart = System.nanoTime();
+        }
+
+        @Override
+        public void secureConnectEnd(Call call, Handshake handshake) {
+            if (span != null) phase(span, "tls", secureConnectStart, System.nanoTime());
+        }
+
+        @Override
+        public void connectEnd(Call call, InetSocketAddress inetSocketAddress, Proxy proxy, Protocol protocol) {
+            if (span != null) phase(span, "connect", connectStart, System.nanoTime());
+        }
+
+        @Override
+        public void requestHeadersStart(Call call) {
+            requestStart = System.nanoTime();
+        }
+
+        @Override
+        public void requestHeadersEnd(Call call, Request request) {
+            requestEnd = System.nanoTime();
+        }
+
+        @Override
+        public void requestBodyEnd(Call call, long byteCount) {
+            requestEnd = System.nanoTime();
+        }
+
+        @Override
+        public void responseHeadersEnd(Call call, Response response) {
+            if (span == null) return;
+            long now = System.nanoTime();
+            phase(span, "request", requestStart, requestEnd);
+            phase(span, "server", requestEnd, now);
+            span.arg("status", response.code());
+        }
+
+        @Override
+        public void responseBodyStart(Call call) {
+            responseBodyStart = System.nanoTime();
+        }
+
+        @Override
+        public void responseBodyEnd(Call call, long byteCount) {
+            if (span != null) phase(span, "body", responseBodyStart, System.nanoTime());
+        }
+
+        @Override
+        public void callEnd(Call call) {
+            finish(call, null);
+        }
+
+        @Override
+        public void callFailed(Call call, IOException ioe) {
+            finish(call, ioe);
+        }
+
+        private void finish(Call call, IOException ioe) {
+            calls.remove(call);
+            if (span == null) return;
+            if (ioe != null) span.arg("error", ioe.toString());
+            span.end();
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.fyb.networklib.util;
+
+/**
+ * 可在内存紧张时收缩的组件
+ * Android端的 MemoryTrimmer 把系统的trim-memory信号换算成收缩级别后通知各组件，压力解除后以 {@link #NONE} 通知恢复
+ */
+public interface Trimmable {
+
+    /** 无内存压力，恢复到配置的大小 */
+    int NONE = 0;
+    /** 应用退到后台或内存偏低：释放空闲资源 */
+    int BACKGROUND = 1;
+    /** 内存不足：丢弃可重建的缓存，降低并发和缓冲区 */
+    int LOW = 2;
+    /** 内存严重不足：只保留正在使用的最小集合 */
+    int CRITICAL = 3;
+
+    /**
+     * @param level 收缩级别，见本接口常量
+     */
+    void trimMemory(int level);
+}
@@ -0,0 +1,102 @@
+package com.fyb.networklib.api;
+
+import com.fyb.networklib.util.TestServer;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.Request;
+import okhttp3.Response;
+
+import static org.junit.Assert.*;
+
+/**
+ * 验证后台请求暂存到交互请求出现或截止时间到达时才一起发出
+ */
+public class DeferredRequestSchedulerTest {
+
+    private final BlockingQueue<String> hits = new LinkedBlockingQueue<>();
+    private TestServer server;
+    private String baseUrl;
+
+    @Before
+    public void setUp() throws IOException {
+        server = TestServer.start("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                hits.add(exchange.getRequestURI().getPath());
+                byte[] bytes = "ok".getBytes(Charset.forName("UTF-8"));
+                TestServer.respond(exchange, 200, bytes);
+            }
+        });
+        baseUrl = server.url("/");
+    }
+
+    @After
+    public void tearDown() {
+        server.close();
+    }
+
+    @Test
+    public void piggybacksOnInteractiveTraffic() throws Exception {
+        NetworkClient client = new NetworkClient();
+        DeferredRequestScheduler scheduler = client.getDeferredScheduler().setActiveWindow(0);
+        BlockingQueue<Integer> codes = new LinkedBlockingQueue<>();
+        for (int i = 0; i < 3; i++) {
+            scheduler.enqueue(new Request.Builder().url(baseUrl + "events/" + i).build(), 60000, recorder(codes));
+        }
+        scheduler.enqueue(new Request.Builder().url(baseUrl + "canceled").tag("t").build(), 60000, recorder(codes));
+        assertEquals(1, client.cancel("t"));
+        assertNull(hits.poll(200, TimeUnit.MILLISECONDS));
+        assertEquals(3, scheduler.getPendingCount());
+
+        assertEquals("ok", client.get(baseUrl + "trips/", null, String.class, null));
+        for (int i = 0; i < 3; i++) {
+            assertEquals(Integer.valueOf(200), codes.poll(5, TimeUnit.SECONDS));
+        }
+        assertEquals(4, hits.size());
+        assertFalse(hits.contains("/canceled"));
+        assertEquals(1, scheduler.getFlushCount());
+        assertEquals(3, scheduler.getSentCount());
+    }
+
+    @Test
+    public void flushesAllAtEarliestDeadline() throws Exception {
+        NetworkClient client = new NetworkClient();
+        DeferredRequestScheduler scheduler = client.getDeferredScheduler().setActiveWindow(0);
+        BlockingQueue<Integer> codes = new LinkedBlockingQueue<>();
+        long start = System.nanoTime();
+        scheduler.enqueue(new Request.Builder().url(baseUrl + "late").build(), 60000, recorder(codes));
+        scheduler.enqueue(new Request.Builder().url(baseUrl + "soon").build(), 300, recorder(codes));
+        assertEquals(Integer.valueOf(200), codes.poll(5, TimeUnit.SECONDS));
+        assertEquals(Integer.valueOf(200), codes.poll(5, TimeUnit.SECONDS));
+        assertTrue((System.nanoTime() - start) / 1000000 >= 300);
+        assertEquals(1, scheduler.getFlushCount());
+    }
+
+    private static Callback recorder(final BlockingQueue<Integer> codes) {
+        return new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                codes.add(-1);
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) {
+                codes.add(response.code());
+                response.close();
+            }
+        };
+    }
+}
@@ -0,0 +1,128 @@
+package com.fyb.networklib.api;
+
+import com.fyb.networklib.util.LzyResponse;
+import com.fyb.networklib.util.TestServer;
+import com.google.gson.reflect.TypeToken;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * 在普通JVM上验证阻塞API：解析规则与Android端一致，并发任务可在阻塞执行器上完成
+ */
+public class NetworkClientTest {
+
+    private static final Type NAMES = new TypeToken<LzyResponse<List<String>>>() {}.getType();
+
+    private TestServer server;
+    private String baseUrl;
+
+    @Before
+    public void setUp() throws IOException {
+        server = TestServer.start("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                String path = exchange.getRequestURI().getPath();
+                int status = 200;
+                String body;
+                if (path.endsWith("/denied/")) {
+                    body = "{\"code\":104,\"msg\":\"denied\"}";
+                } else if (path.endsWith("/echo/")) {
+                    String sent = new String(TestServer.readAll(exchange.getRequestBody()), TestServer.UTF8);
+                    body = "{\"code\":0,\"msg\":\"ok\",\"data\":[\"" + exchange.getRequestMethod() + "\",\""
+                            + exchange.getRequestHeaders().getFirst("X-Client") + "\"," + sent + "]}";
+                } else if (path.endsWith("/broken/")) {
+                    status = 500;
+                    body = "{}";
+                } else {
+                    String query = exchange.getRequestURI().getQuery();
+                    body = "{\"code\":0,\"msg\":\"ok\",\"data\":[\"" + query + "\"]}";
+                }
+                byte[] bytes = body.getBytes(Charset.forName("UTF-8"));
+                TestServer.respond(exchange, status, bytes);
+            }
+        });
+        baseUrl = server.url("/api/");
+    }
+
+    @After
+    public void tearDown() {
+        server.close();
+    }
+
+    @Test
+    public void getParsesLzyResponse() throws IOException {
+        NetworkClient client = new NetworkClient();
+        LzyResponse<List<String>> response = client.get(baseUrl + "names/",
+                Collections.singletonMap("page", "1"), NAMES, null);
+        assertEquals(0, response.code);
+        assertEquals(Collections.singletonList("page=1"), response.data);
+    }
+
+    @Test
+    public void envelopeErrorIsThrown() {
+        NetworkClient client = new NetworkClient();
+        try {
+            client.get(baseUrl + "denied/", null, NAMES, null);
+            fail();
+        } catch (IllegalStateException e) {
+            assertEquals("用户授权信息无效", e.getMessage());
+        } catch (IOException e) {
+            fail(e.toString());
+        }
+    }
+
+    @Test
+    public void httpErrorIsThrown() {
+        NetworkClient client = new NetworkClient();
+        try {
+            client.get(baseUrl + "broken/", null, NAMES, null);
+            fail();
+        } catch (HttpStatusException e) {
+            assertEquals(500, e.getCode());
+        } catch (IOException e) {
+            fail(e.toString());
+        }
+    }
+
+    @Test
+    public void templateIsReusedAcrossCalls() throws IOException {
+        NetworkClient client = new NetworkClient();
+        RequestTemplate template = RequestTemplate.post(baseUrl + "echo/")
+                .header("X-Client", "test")
+                .returns(NAMES);
+        for (int i = 0; i < 3; i++) {
+            LzyResponse<List<String>> response = client.execute(template, "\"" + i + "\"", null, null);
+            assertEquals(Arrays.asList("POST", "test", String.valueOf(i)), response.data);
+        }
+    }
+
+    @Test
+    public void submitRunsBlockingCallsConcurrently() throws Exception {
+        final NetworkClient client = new NetworkClient().setMaxConcurrentCalls(8);
+        List<CompletableFuture<LzyResponse<List<String>>>> futures = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            final String page = String.valueOf(i);
+            futures.add(client.submit(() -> client.<LzyResponse<List<String>>>get(baseUrl + "names/",
+                    Collections.singletonMap("page", page), NAMES, null)));
+        }
+        for (int i = 0; i < futures.size(); i++) {
+            assertEquals("page=" + i, futures.get(i).get(10, TimeUnit.SECONDS).data.get(0));
+        }
+    }
+}
@@ -0,0 +1,240 @@
+package com.fyb.networklib.api;
+
+import com.fyb.networklib.util.LzyResponse;
+import com.fyb.networklib.util.TestServer;
+import com.fyb.networklib.util.Trimmable;
+import com.google.gson.reflect.TypeToken;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * 验证分页加载器的预取、窗口淘汰、游标模式和失败退避
+ */
+public class PagedLoaderTest {
+
+    private static final Type NAMES = new TypeToken<LzyResponse<List<String>>>() {}.getType();
+    private static final int PAGE_SIZE = 10;
+    private static final int PAGES = 8;
+
+    private final AtomicInteger failingHits = new AtomicInteger();
+    private volatile int failingPage = -1;
+    private TestServer server;
+    private String baseUrl;
+
+    @Before
+    public void setUp() throws IOException {
+        server = TestServer.start("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                String query = exchange.getRequestURI().getQuery();
+                int page = 1;
+                if (query != null) {
+                    for (String pair : query.split("&")) {
+                        String[] kv = pair.split("=");
+                        if (kv[0].equals("page") || kv[0].equals("cursor")) page = Integer.parseInt(kv[1]);
+                    }
+                }
+                if (page == failingPage) {
+                    failingHits.incrementAndGet();
+                    TestServer.respond(exchange, 500, (byte[]) null);
+                    return;
+                }
+                StringBuilder data = new StringBuilder();
+                for (int i = 0; page <= PAGES && i < PAGE_SIZE; i++) {
+                    if (i > 0) data.append(',');
+                    data.append('"').append(page).append('-').append(i).append('"');
+                }
+                String body = "{\"code\":0,\"msg\":\"" + (page < PAGES ? page + 1 : "") + "\",\"data\":[" + data + "]}";
+                byte[] bytes = body.getBytes(Charset.forName("UTF-8"));
+                TestServer.respond(exchange, 200, bytes);
+            }
+        });
+        baseUrl = server.url("/api/trips/");
+    }
+
+    @After
+    public void tearDown() {
+        server.close();
+    }
+
+    @Test
+    public void prefetchesAndKeepsBoundedWindow() throws Exception {
+        final BlockingQueue<Integer> loaded = new LinkedBlockingQueue<>();
+        final BlockingQueue<Integer> dropped = new LinkedBlockingQueue<>();
+        PagedLoader<LzyResponse<List<String>>, String> loader = newLoader()
+                .setPageSize("size", PAGE_SIZE)
+                .setMaxPages(3)
+                .setListener(new Recorder(loaded, dropped));
+        loader.load();
+        assertEquals(Integer.valueOf(0), loaded.poll(5, TimeUnit.SECONDS));
+
+        for (int page = 1; page < PAGES; page++) {
+            // 距离本页末尾不超过最小预取距离时预取下一页
+            loader.onItemVisible(page * PAGE_SIZE - 3);
+            assertEquals(Integer.valueOf(page), loaded.poll(5, TimeUnit.SECONDS));
+        }
+        assertEquals(PAGES * PAGE_SIZE, loader.getItemCount());
+        assertEquals("8-9", loader.getItem(PAGES * PAGE_SIZE - 1));
+        assertNull("最早的页已被丢弃", loader.getItem(0));
+        assertEquals(PAGES - 3, dropped.size());
+
+        // 最后一页不足pageSize之前不会结束；第9页为空页
+        loader.onItemVisible(PAGES * PAGE_SIZE - 1);
+        assertEquals(Integer.valueOf(PAGES), loaded.poll(5, TimeUnit.SECONDS));
+        assertTrue(loader.isEnd());
+
+        // 回滚到被丢弃的页时重新加载
+        loader.onItemVisible(5);
+        assertEquals(Integer.valueOf(0), loaded.poll(5, TimeUnit.SECONDS));
+        assertEquals("1-5", loader.getItem(5));
+        assertTrue(loader.getLatencyMs() > 0);
+    }
+
+    @Test
+    public void shrinksWindowUnderMemoryPressure() throws Exception {
+        final BlockingQueue<Integer> loaded = new LinkedBlockingQueue<>();
+        final BlockingQueue<Integer> dropped = new LinkedBlockingQueue<>();
+        PagedLoader<LzyResponse<List<String>>, String> loader = newLoader()
+                .setPageSize("size", PAGE_SIZE)
+                .setListener(new Recorder(loaded, dropped));
+        loader.load();
+        assertEquals(Integer.valueOf(0), loaded.poll(5, TimeUnit.SECONDS));
+        for (int page = 1; page < 4; page++) {
+            loader.onItemVisible(page * PAGE_SIZE - 3);
+            assertEquals(Integer.valueOf(page), loaded.poll(5, TimeUnit.SECONDS));
+        }
+        assertEquals(0, dropped.size());
+
+        loader.trimMemory(Trimmable.CRITICAL);
+        assertEquals(3, dropped.size());
+        assertNull(loader.getItem(0));
+        assertEquals("3-7", loader.getItem(27));
+
+        // 压力解除后回滚到被丢弃的页重新加载，且不再被丢弃
+        loader.trimMemory(Trimmable.NONE);
+        loader.onItemVisible(5);
+        assertEquals(Integer.valueOf(0), loaded.poll(5, TimeUnit.SECONDS));
+        assertEquals("1-5", loader.getItem(5));
+        assertEquals(3, dropped.size());
+    }
+
+    @Test
+    public void followsCursor() throws Exception {
+        final BlockingQueue<Integer> loaded = new LinkedBlockingQueue<>();
+        PagedLoader<LzyResponse<List<String>>, String> loader = newLoader()
+                .setCursorParam("cursor")
+                .setListener(new Recorder(loaded, new LinkedBlockingQueue<Integer>()));
+        loader.load();
+        assertEquals(Integer.valueOf(0), loaded.poll(5, TimeUnit.SECONDS));
+        for (int page = 1; page < PAGES; page++) {
+            loader.onItemVisible(loader.getItemCount() - 1);
+            assertEquals(Integer.valueOf(page), loaded.poll(5, TimeUnit.SECONDS));
+        }
+        assertTrue(loader.isEnd());
+        assertEquals("8-0", loader.getItem((PAGES - 1) * PAGE_SIZE));
+    }
+
+    @Test
+    public void backsOffFailedPage() throws Exception {
+        final BlockingQueue<Integer> loaded = new LinkedBlockingQueue<>();
+        final BlockingQueue<Integer> errors = new LinkedBlockingQueue<>();
+        // 第3页（下标2）加载失败
+        failingPage = 3;
+        PagedLoader<LzyResponse<List<String>>, String> loader = newLoader()
+                .setPageSize("size", PAGE_SIZE)
+                .setRetryBackoff(300, 1000)
+                .setListener(new Recorder(loaded, new LinkedBlockingQueue<Integer>(), errors));
+        loader.load();
+        assertEquals(Integer.valueOf(0), loaded.poll(5, TimeUnit.SECONDS));
+        loader.onItemVisible(PAGE_SIZE - 3);
+        assertEquals(Integer.valueOf(1), loaded.poll(5, TimeUnit.SECONDS));
+
+        loader.onItemVisible(2 * PAGE_SIZE - 3);
+        assertEquals(Integer.valueOf(2), errors.poll(5, TimeUnit.SECONDS));
+        // 退避期内继续滚动不会重新请求
+        for (int i = 0; i < 20; i++) {
+            loader.onItemVisible(2 * PAGE_SIZE - 3 + i % 3);
+        }
+        assertNull(errors.poll(100, TimeUnit.MILLISECONDS));
+        assertEquals(1, failingHits.get());
+
+        // 退避期过后重试，再次失败时退避翻倍
+        Thread.sleep(300);
+        loader.onItemVisible(2 * PAGE_SIZE - 3);
+        assertEquals(Integer.valueOf(2), errors.poll(5, TimeUnit.SECONDS));
+        assertEquals(2, failingHits.get());
+        Thread.sleep(300);
+        loader.onItemVisible(2 * PAGE_SIZE - 3);
+        assertNull(errors.poll(100, TimeUnit.MILLISECONDS));
+        assertEquals(2, failingHits.get());
+
+        failingPage = -1;
+        Thread.sleep(400);
+        loader.onItemVisible(2 * PAGE_SIZE - 3);
+        assertEquals(Integer.valueOf(2), loaded.poll(5, TimeUnit.SECONDS));
+    }
+
+    private PagedLoader<LzyResponse<List<String>>, String> newLoader() {
+        return new PagedLoader<>(new NetworkClient(), RequestTemplate.get(baseUrl).returns(NAMES),
+                new PagedLoader.PageReader<LzyResponse<List<String>>, String>() {
+                    @Override
+                    public List<String> items(LzyResponse<List<String>> response) {
+                        return response.data;
+                    }
+
+                    @Override
+                    public String nextCursor(LzyResponse<List<String>> response) {
+                        return response.msg.isEmpty() ? null : response.msg;
+                    }
+                });
+    }
+
+    private static class Recorder implements PagedLoader.Listener<String> {
+        private final BlockingQueue<Integer> loaded;
+        private final BlockingQueue<Integer> dropped;
+        private final BlockingQueue<Integer> errors;
+
+        Recorder(BlockingQueue<Integer> loaded, BlockingQueue<Integer> dropped) {
+            this(loaded, dropped, null);
+        }
+
+        Recorder(BlockingQueue<Integer> loaded, BlockingQueue<Integer> dropped, BlockingQueue<Integer> errors) {
+            this.loaded = loaded;
+            this.dropped = dropped;
+            this.errors = errors;
+        }
+
+        @Override
+        public void onPageLoaded(int page, int start, List<String> items) {
+            loaded.add(page);
+        }
+
+        @Override
+        public void onPageDropped(int page, int start, int count) {
+            dropped.add(page);
+        }
+
+        @Override
+        public void onError(int page, Throwable error) {
+            if (errors == null) {
+                fail(error.toString());
+            }
+            errors.add(page);
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.fyb.networklib.api;
+
+import com.fyb.networklib.util.SyncStore;
+import com.fyb.networklib.util.TestServer;
+import com.google.gson.JsonObject;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * 验证增量合并、分批拉取、本地存储的持久化，以及同步中途reset
+ */
+public class TripSyncEngineTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private TestServer server;
+    private String baseUrl;
+    private volatile CountDownLatch arrived;
+    private volatile CountDownLatch hold;
+
+    @Before
+    public void setUp() throws IOException {
+        server = TestServer.start("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                if (hold != null) {
+                    arrived.countDown();
+                    try {
+                        hold.await(5, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                String query = exchange.getRequestURI().getQuery();
+                String data;
+                if (!query.contains("since=")) {
+                    data = "{\"syncToken\":\"1\",\"full\":true,\"upserts\":[{\"id\":1,\"name\":\"a\"},{\"id\":2,\"name\":\"b\"}]}";
+                } else if (query.contains("since=1")) {
+                    data = "{\"syncToken\":\"2\",\"hasMore\":true,\"upserts\":[{\"id\":2,\"name\":\"b2\"}]}";
+                } else if (query.contains("since=2")) {
+                    data = "{\"syncToken\":\"3\",\"deletes\":[\"1\"]}";
+                } else {
+                    data = "{\"syncToken\":\"3\"}";
+                }
+                byte[] bytes = ("{\"code\":2000,\"msg\":\"ok\",\"data\":" + data + "}").getBytes(Charset.forName("UTF-8"));
+                TestServer.respond(exchange, 200, bytes);
+            }
+        });
+        baseUrl = server.url("/");
+    }
+
+    @After
+    public void tearDown() {
+        server.close();
+    }
+
+    @Test
+    public void mergesDeltasAndPersists() throws Exception {
+        File file = new File(folder.getRoot(), "trips.sync");
+        TripSyncEngine engine = new TripSyncEngine(new NetworkClient(), baseUrl, new SyncStore(file, "id"));
+
+        assertEquals(new HashSet<>(Arrays.asList("1", "2")), engine.sync().get(5, TimeUnit.SECONDS));
+        assertEquals("1", engine.getStore().getSyncToken());
+
+        // 两批：修改2，删除1
+        assertEquals(new HashSet<>(Arrays.asList("1", "2")), engine.sync().get(5, TimeUnit.SECONDS));
+        assertEquals(Collections.emptySet(), engine.sync().get(5, TimeUnit.SECONDS));
+
+        SyncStore reopened = new SyncStore(file, "id");
+        reopened.load();
+        assertEquals("3", reopened.getSyncToken());
+        List<JsonObject> trips = reopened.getAll(JsonObject.class);
+        assertEquals(1, trips.size());
+        assertEquals("b2", trips.get(0).get("name").getAsString());
+        assertFalse(new File(file.getPath() + ".tmp").exists());
+    }
+
+    @Test
+    public void resetDiscardsInFlightSync() throws Exception {
+        File file = new File(folder.getRoot(), "trips.sync");
+        TripSyncEngine engine = new TripSyncEngine(new NetworkClient(), baseUrl, new SyncStore(file, "id"));
+        arrived = new CountDownLatch(1);
+        hold = new CountDownLatch(1);
+        CompletableFuture<?> future = engine.sync();
+        assertTrue(arrived.await(5, TimeUnit.SECONDS));
+
+        engine.reset();
+        hold.countDown();
+        try {
+            future.get(5, TimeUnit.SECONDS);
+            fail("reset之前发起的同步不应成功");
+        } catch (ExecutionException expected) {
+        }
+        assertEquals(0, engine.getStore().size());
+        assertNull(engine.getStore().getSyncToken());
+        assertFalse(file.exists());
+    }
+}
@@ -0,0 +1,126 @@
+package com.fyb.networklib.util;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+
+import static org.junit.Assert.*;
+
+/**
+ * 验证按tag取消只影响该tag的请求，以及请求完成、失败后从索引中移除
+ */
+public class CallRegistryTest {
+
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final CallRegistry registry = new CallRegistry();
+    private TestServer server;
+    private OkHttpClient client;
+
+    @Before
+    public void setUp() throws IOException {
+        server = TestServer.start(new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                if (exchange.getRequestURI().getPath().startsWith("/slow")) {
+                    try {
+                        release.await(5, TimeUnit.SECONDS);
+                    } catch (InterruptedException ignored) {
+                    }
+                }
+                TestServer.respond(exchange, 200, "ok");
+            }
+        });
+        client = new OkHttpClient.Builder().eventListenerFactory(registry).build();
+    }
+
+    @After
+    public void tearDown() {
+        release.countDown();
+        server.close();
+    }
+
+    @Test
+    public void cancelsOnlyCallsWithTag() throws Exception {
+        Object page = new Object();
+        Object other = new Object();
+        BlockingQueue<String> results = new LinkedBlockingQueue<>();
+        enqueue("/slow/1", page, results);
+        enqueue("/slow/2", page, results);
+        enqueue("/slow/3", other, results);
+        assertEquals(2, registry.count(page));
+        assertEquals(1, registry.count(other));
+
+        assertEquals(2, registry.cancel(page));
+        assertEquals(0, registry.count(page));
+        assertEquals("failed", results.poll(5, TimeUnit.SECONDS));
+        assertEquals("failed", results.poll(5, TimeUnit.SECONDS));
+        assertEquals(0, registry.cancel(page));
+
+        release.countDown();
+        assertEquals("ok", results.poll(5, TimeUnit.SECONDS));
+        assertEquals(0, registry.count(other));
+        assertEquals(0, registry.cancel(null));
+    }
+
+    @Test
+    public void removesOnCallEnd() throws Exception {
+        Object tag = new Object();
+        Response response = client.newCall(request("/fast", tag)).execute();
+        // callEnd在响应体关闭后才触发，未关闭前仍持有tag
+        assertEquals(1, registry.count(tag));
+        assertEquals("ok", response.body().string());
+        assertEquals(0, registry.count(tag));
+    }
+
+    @Test
+    public void removesOnCallFailed() throws Exception {
+        TestServer closed = TestServer.start(new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                TestServer.respond(exchange, 200, "ok");
+            }
+        });
+        String url = closed.url("/gone");
+        closed.close();
+        Object tag = new Object();
+        try {
+            client.newCall(new Request.Builder().url(url).tag(tag).build()).execute();
+            fail("expected connection failure");
+        } catch (IOException expected) {
+        }
+        assertEquals(0, registry.count(tag));
+    }
+
+    private Request request(String path, Object tag) {
+        return new Request.Builder().url(server.url(path)).tag(tag).build();
+    }
+
+    private void enqueue(String path, Object tag, final BlockingQueue<String> results) {
+        client.newCall(request(path, tag)).enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                results.add("failed");
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) throws IOException {
+                results.add(response.body().string());
+            }
+        });
+    }
+}
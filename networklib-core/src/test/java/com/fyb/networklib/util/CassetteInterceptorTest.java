@@ -0,0 +1,91 @@
+package com.fyb.networklib.util;
+
+import com.fyb.networklib.api.NetworkClient;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * 录制后关闭服务端，回放结果与录制时一致且不访问网络
+ */
+public class CassetteInterceptorTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void replaysRecordedResponsesOffline() throws Exception {
+        final AtomicInteger hits = new AtomicInteger();
+        TestServer server = TestServer.start("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                byte[] bytes = ("{\"n\":" + hits.incrementAndGet() + "}").getBytes(Charset.forName("UTF-8"));
+                exchange.getResponseHeaders().add("Content-Type", "application/json");
+                TestServer.respond(exchange, 200, bytes);
+            }
+        });
+        String url = server.url("/api/trips/");
+        File file = new File(folder.getRoot(), "trips.cassette");
+
+        CassetteInterceptor recorder = CassetteInterceptor.record(file).ignoreQueryParams("_t");
+        NetworkClient client = newClient(recorder);
+        assertEquals("{\"n\":1}", client.get(url, Collections.singletonMap("_t", "1"), String.class, null));
+        assertEquals("{\"n\":2}", client.get(url, Collections.singletonMap("_t", "2"), String.class, null));
+        assertEquals("{\"n\":3}", client.postJson(url, "{}", null, String.class, null));
+        server.close();
+        assertEquals(3, recorder.getRecordedCount());
+
+        CassetteInterceptor player = CassetteInterceptor.replay(file).ignoreQueryParams("_t").setTimeScale(0);
+        client = newClient(player);
+        assertEquals(3, player.getRecordedCount());
+        assertEquals("{\"n\":1}", client.get(url, Collections.singletonMap("_t", "9"), String.class, null));
+        assertEquals("{\"n\":2}", client.get(url, null, String.class, null));
+        // 录制用完后重复最后一条
+        assertEquals("{\"n\":2}", client.get(url, null, String.class, null));
+        assertEquals("{\"n\":3}", client.postJson(url, "{}", null, String.class, null));
+        try {
+            client.postJson(url, "{\"other\":1}", null, String.class, null);
+            fail();
+        } catch (IOException expected) {
+            assertEquals(1, player.getMissCount());
+        }
+        assertEquals(3, hits.get());
+    }
+
+    @Test
+    public void keepsResponseWhenCassetteUnwritable() throws Exception {
+        TestServer server = TestServer.start("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                TestServer.respond(exchange, 200, "ok");
+            }
+        });
+        try {
+            // 父路径是普通文件，无法创建磁带所在的目录
+            File blocker = folder.newFile("blocker");
+            CassetteInterceptor recorder = CassetteInterceptor.record(new File(blocker, "api.cassette"));
+            NetworkClient client = newClient(recorder);
+            assertEquals("ok", client.get(server.url("/api/trips/"), null, String.class, null));
+            assertEquals(0, recorder.getRecordedCount());
+            assertEquals(1, recorder.getWriteErrorCount());
+        } finally {
+            server.close();
+        }
+    }
+
+    private static NetworkClient newClient(CassetteInterceptor cassette) {
+        NetworkClient client = new NetworkClient();
+        return client.setOkHttpClient(client.newClientBuilder().addInterceptor(cassette).build());
+    }
+}
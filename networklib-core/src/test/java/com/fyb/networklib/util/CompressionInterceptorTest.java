@@ -0,0 +1,117 @@
+package com.fyb.networklib.util;
+
+import com.fyb.networklib.api.NetworkClient;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+import static org.junit.Assert.*;
+
+/**
+ * 验证请求体gzip的按主机协商、415回退，以及预共享字典的双向压缩
+ */
+public class CompressionInterceptorTest {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final byte[] DICTIONARY = "{\"code\":2000,\"msg\":\"\",\"data\":{\"tripId\":\"\",\"startTime\":\"\",\"endTime\":\"\",\"status\":\"\"}}".getBytes(UTF8);
+
+    private TestServer server;
+    private String baseUrl;
+    private volatile boolean rejectGzip;
+
+    @Before
+    public void setUp() throws IOException {
+        server = TestServer.start("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                String encoding = exchange.getRequestHeaders().getFirst("Content-Encoding");
+                if ("gzip".equals(encoding) && rejectGzip) {
+                    TestServer.respond(exchange, 415, (byte[]) null);
+                    return;
+                }
+                InputStream in = exchange.getRequestBody();
+                if ("gzip".equals(encoding)) {
+                    in = new GZIPInputStream(in);
+                } else if (CompressionInterceptor.DICTIONARY_ENCODING.equals(encoding)) {
+                    Inflater inflater = new Inflater(true);
+                    inflater.setDictionary(DICTIONARY);
+                    in = new InflaterInputStream(in, inflater);
+                }
+                String body = new String(TestServer.readAll(in), UTF8);
+                byte[] bytes = ((encoding == null ? "identity" : encoding) + " " + body.length()).getBytes(UTF8);
+                exchange.getResponseHeaders().add("Accept-Encoding", "gzip");
+                String accept = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+                if (accept != null && accept.startsWith(CompressionInterceptor.DICTIONARY_ENCODING)) {
+                    Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+                    deflater.setDictionary(DICTIONARY);
+                    ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+                    DeflaterOutputStream out = new DeflaterOutputStream(buffer, deflater);
+                    out.write(bytes);
+                    out.close();
+                    bytes = buffer.toByteArray();
+                    exchange.getResponseHeaders().add("Content-Encoding", CompressionInterceptor.DICTIONARY_ENCODING);
+                }
+                TestServer.respond(exchange, 200, bytes);
+            }
+        });
+        baseUrl = server.url("/api/trips/");
+    }
+
+    @After
+    public void tearDown() {
+        server.close();
+    }
+
+    @Test
+    public void negotiatesRequestGzipPerHost() throws IOException {
+        NetworkClient client = new NetworkClient();
+        String json = payload();
+        assertEquals("identity " + json.length(), client.postJson(baseUrl, json, null, String.class, null));
+        assertTrue(client.getCompression().isRequestGzipEnabled("127.0.0.1"));
+        assertEquals("gzip " + json.length(), client.postJson(baseUrl, json, null, String.class, null));
+        assertEquals("identity 2", client.postJson(baseUrl, "{}", null, String.class, null));
+        assertTrue(client.getCompression().getCompressedBytes() * 5 < client.getCompression().getRawBytes());
+
+        // 服务端拒绝压缩的请求体时以原始请求体重发，之后不再压缩
+        rejectGzip = true;
+        assertEquals("identity " + json.length(), client.postJson(baseUrl, json, null, String.class, null));
+        assertFalse(client.getCompression().isRequestGzipEnabled("127.0.0.1"));
+    }
+
+    @Test
+    public void usesSharedDictionaryBothWays() throws IOException {
+        NetworkClient client = new NetworkClient();
+        client.getCompression().setDictionary("127.0.0.1", DICTIONARY);
+        String json = payload();
+        assertEquals(CompressionInterceptor.DICTIONARY_ENCODING + " " + json.length(),
+                client.postJson(baseUrl, json, null, String.class, null));
+        // 远小于gzip门槛的单条记录也使用字典
+        String single = "{\"tripId\":\"T1\",\"startTime\":\"2024-01-01 08:00\",\"endTime\":\"2024-01-01 09:00\",\"status\":\"done\"}";
+        assertEquals(CompressionInterceptor.DICTIONARY_ENCODING + " " + single.length(),
+                client.postJson(baseUrl, single, null, String.class, null));
+        assertEquals("identity 2", client.postJson(baseUrl, "{}", null, String.class, null));
+        assertEquals("identity 0", client.get(baseUrl, null, String.class, null));
+    }
+
+    private static String payload() {
+        StringBuilder json = new StringBuilder("{\"code\":2000,\"msg\":\"\",\"data\":[");
+        for (int i = 0; i < 100; i++) {
+            if (i > 0) json.append(',');
+            json.append("{\"tripId\":\"T").append(i).append("\",\"startTime\":\"2024-01-01 08:00\",\"endTime\":\"2024-01-01 09:00\",\"status\":\"done\"}");
+        }
+        return json.append("]}").toString();
+    }
+}
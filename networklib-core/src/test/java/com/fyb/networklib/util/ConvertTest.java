@@ -0,0 +1,88 @@
+package com.fyb.networklib.util;
+
+import com.fyb.networklib.data.BaseEntity;
+import com.google.gson.TypeAdapter;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * 验证库内模型的手写解析器与反射解析结果一致，以及注册解析器、关闭HTML转义
+ */
+public class ConvertTest {
+
+    private static final Type LZY_NAMES = new TypeToken<LzyResponse<List<String>>>() {}.getType();
+    private static final Type ENTITY_MAP = new TypeToken<BaseEntity<Map<String, Integer>>>() {}.getType();
+
+    @Test
+    public void parsesModelsWithoutReflection() {
+        assertFalse(Convert.getGson().getAdapter(TypeToken.get(LZY_NAMES)).getClass().getName().contains("Reflective"));
+        LzyResponse<List<String>> lzy = Convert.fromJson(
+                "{\"code\":\"3\",\"extra\":{\"a\":[1]},\"msg\":null,\"data\":[\"a\",\"b\"]}", LZY_NAMES);
+        assertEquals(3, lzy.code);
+        assertNull(lzy.msg);
+        assertEquals(Arrays.asList("a", "b"), lzy.data);
+        assertEquals("{\"code\":3,\"data\":[\"a\",\"b\"]}", Convert.toJson(lzy, LZY_NAMES));
+
+        BaseEntity<Map<String, Integer>> entity = Convert.fromJson(
+                "{\"code\":2000,\"msg\":\"ok\",\"success\":true,\"data\":{\"n\":1}}", ENTITY_MAP);
+        assertTrue(entity.isSuccess());
+        assertEquals(Integer.valueOf(1), entity.getData().get("n"));
+        assertEquals("{\"code\":2000,\"data\":{\"n\":1},\"msg\":\"ok\",\"success\":true}", Convert.toJson(entity, ENTITY_MAP));
+
+        SimpleResponse simple = Convert.fromJson("{\"code\":1,\"msg\":\"m\",\"data\":{}}", SimpleResponse.class);
+        assertEquals(1, simple.code);
+        assertEquals("m", simple.msg);
+        // 原始类型的data按Object解析
+        LzyResponse<?> raw = Convert.fromJson("{\"data\":{\"k\":\"v\"}}", LzyResponse.class);
+        assertEquals("v", ((Map<?, ?>) raw.data).get("k"));
+    }
+
+    @Test
+    public void appliesRegisteredAdaptersAndEscaping() {
+        Convert.registerTypeAdapter(Point.class, new TypeAdapter<Point>() {
+            @Override
+            public void write(JsonWriter out, Point value) throws IOException {
+                out.value(value.x + "," + value.y);
+            }
+
+            @Override
+            public Point read(JsonReader in) throws IOException {
+                String[] parts = in.nextString().split(",");
+                return new Point(Integer.parseInt(parts[0]), Integer.parseInt(parts[1]));
+            }
+        });
+        Type type = new TypeToken<LzyResponse<Point>>() {}.getType();
+        LzyResponse<Point> response = Convert.fromJson("{\"code\":0,\"data\":\"3,4\"}", type);
+        assertEquals(4, response.data.y);
+
+        response.msg = "<a>";
+        assertEquals("{\"code\":0,\"msg\":\"\\u003ca\\u003e\",\"data\":\"3,4\"}", Convert.toJson(response, type));
+        Convert.setHtmlEscaping(false);
+        try {
+            assertEquals("{\"code\":0,\"msg\":\"<a>\",\"data\":\"3,4\"}", Convert.toJson(response, type));
+        } finally {
+            Convert.setHtmlEscaping(true);
+        }
+    }
+
+    private static class Point {
+        final int x;
+        final int y;
+
+        Point(int x, int y) {
+            this.x = x;
+            this.y = y;
+        }
+    }
+}
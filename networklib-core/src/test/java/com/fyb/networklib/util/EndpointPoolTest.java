@@ -0,0 +1,83 @@
+package com.fyb.networklib.util;
+
+import com.fyb.networklib.api.NetworkClient;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * 验证连接失败时切换地址、连续失败后标记不可用，以及按探测耗时选择地址
+ */
+public class EndpointPoolTest {
+
+    private final List<TestServer> servers = new ArrayList<>();
+
+    @After
+    public void tearDown() {
+        for (TestServer server : servers) {
+            server.close();
+        }
+    }
+
+    @Test
+    public void failsOverToHealthyEndpoint() throws Exception {
+        String dead = "http://127.0.0.1:" + closedPort() + "/";
+        String live = startServer("live", 0);
+        EndpointPool pool = new EndpointPool(dead, live).setFailureThreshold(2);
+        NetworkClient client = new NetworkClient().addEndpointPool(pool);
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals("live /api/trips/", client.get(dead + "api/trips/", null, String.class, null));
+        }
+        assertTrue(pool.getEndpoints().get(0).isDown());
+        assertEquals(live, pool.select().getUrl());
+        pool.stopProbing();
+    }
+
+    @Test
+    public void prefersLowerLatency() throws Exception {
+        String slow = startServer("slow", 80);
+        String fast = startServer("fast", 0);
+        EndpointPool pool = new EndpointPool(slow, fast);
+        NetworkClient client = new NetworkClient().addEndpointPool(pool);
+        for (int i = 0; i < 3; i++) {
+            pool.probe(client.getOkHttpClient());
+        }
+        assertEquals(fast, pool.select().getUrl());
+        assertTrue(pool.getEndpoints().get(0).getRttMs() > pool.getEndpoints().get(1).getRttMs());
+
+        assertEquals("fast /v1/", client.get(slow + "v1/", null, String.class, null));
+        pool.stopProbing();
+    }
+
+    private String startServer(final String name, final long delayMs) throws IOException {
+        TestServer server = TestServer.start("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                try {
+                    Thread.sleep(delayMs);
+                } catch (InterruptedException ignored) {
+                }
+                String body = name + " " + exchange.getRequestURI().getPath();
+                TestServer.respond(exchange, 200, "HEAD".equals(exchange.getRequestMethod()) ? null : body.getBytes(TestServer.UTF8));
+            }
+        });
+        servers.add(server);
+        return server.url("/");
+    }
+
+    private static int closedPort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
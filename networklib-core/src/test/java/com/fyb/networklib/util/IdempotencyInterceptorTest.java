@@ -0,0 +1,108 @@
+package com.fyb.networklib.util;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+
+import static org.junit.Assert.*;
+
+/**
+ * 使用本地模拟服务端验证：首次提交已生效但响应超时，重试携带同一个幂等键，副作用只发生一次
+ */
+public class IdempotencyInterceptorTest {
+
+    private static final MediaType JSON = MediaType.parse("application/json; charset=utf-8");
+
+    private TestServer server;
+    private final AtomicInteger attempts = new AtomicInteger();
+    private final AtomicInteger sideEffects = new AtomicInteger();
+    private final Map<String, String> applied = new ConcurrentHashMap<>();
+
+    @Before
+    public void setUp() throws IOException {
+        server = TestServer.start("/api/trip-manage/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                attempts.incrementAndGet();
+                String key = exchange.getRequestHeaders().getFirst(IdempotencyInterceptor.HEADER);
+                String body = key == null ? null : applied.get(key);
+                boolean slow = false;
+                if (body == null) {
+                    // 首次提交：执行副作用，然后模拟响应迟迟不返回
+                    body = "{\"code\":2000,\"data\":" + sideEffects.incrementAndGet() + "}";
+                    if (key != null) applied.put(key, body);
+                    slow = true;
+                }
+                if (slow) {
+                    try {
+                        Thread.sleep(1000);
+                    } catch (InterruptedException ignored) {
+                    }
+                }
+                byte[] bytes = body.getBytes(Charset.forName("UTF-8"));
+                TestServer.respond(exchange, 200, bytes);
+            }
+        });
+    }
+
+    @After
+    public void tearDown() {
+        server.close();
+    }
+
+    private OkHttpClient client(int maxRetries) {
+        return new OkHttpClient.Builder()
+                .readTimeout(300, TimeUnit.MILLISECONDS)
+                .addInterceptor(new IdempotencyInterceptor(maxRetries))
+                .build();
+    }
+
+    private Request.Builder post() {
+        String url = server.url("/api/trip-manage/");
+        return new Request.Builder().url(url).post(RequestBody.create(JSON, "{\"name\":\"trip\"}"));
+    }
+
+    @Test
+    public void retriesWithSameKeyWithoutDuplicateSideEffects() throws IOException {
+        Request request = post().header(IdempotencyInterceptor.HEADER, IdempotencyInterceptor.newKey()).build();
+        Response response = client(2).newCall(request).execute();
+
+        assertEquals(200, response.code());
+        assertEquals("{\"code\":2000,\"data\":1}", response.body().string());
+        assertEquals(2, attempts.get());
+        assertEquals(1, sideEffects.get());
+    }
+
+    @Test
+    public void requestWithoutKeyIsNotRetried() {
+        try {
+            client(2).newCall(post().build()).execute();
+            fail("expected read timeout");
+        } catch (IOException expected) {
+            // 无幂等键的写请求超时后不能自动重试
+        }
+        assertEquals(1, attempts.get());
+        assertEquals(1, sideEffects.get());
+    }
+
+    @Test
+    public void newKeyIsUniquePerLogicalWrite() {
+        assertNotEquals(IdempotencyInterceptor.newKey(), IdempotencyInterceptor.newKey());
+    }
+}
@@ -0,0 +1,80 @@
+package com.fyb.networklib.util;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * 验证分桶边界、相对误差和已知分布下的分位值
+ */
+public class LatencyHistogramTest {
+
+    @Test
+    public void bucketsCoverEveryValueWithinQuarterError() {
+        int last = -1;
+        for (long micros = 1; micros <= 1 << 20; micros++) {
+            int bucket = LatencyHistogram.bucketOf(micros);
+            long upper = LatencyHistogram.upperBound(bucket);
+            assertTrue("bucket order at " + micros, bucket >= last);
+            assertTrue("upper bound at " + micros, micros <= upper);
+            assertEquals("upper bound shares the bucket at " + micros, bucket, LatencyHistogram.bucketOf(upper));
+            assertNotEquals("next bucket starts after upper at " + micros, bucket, LatencyHistogram.bucketOf(upper + 1));
+            if (micros >= 4) {
+                // 每个2的幂区间分4个子桶，桶宽不超过下界的1/4
+                assertTrue("relative error at " + micros, 4 * (upper + 1) <= 5 * micros);
+            }
+            last = bucket;
+        }
+        assertEquals(62 * 4 + 3, LatencyHistogram.bucketOf(Long.MAX_VALUE));
+        assertEquals(Long.MAX_VALUE, LatencyHistogram.upperBound(62 * 4 + 3));
+    }
+
+    @Test
+    public void knownBucketBounds() {
+        assertEquals(1, LatencyHistogram.upperBound(LatencyHistogram.bucketOf(1)));
+        assertEquals(3, LatencyHistogram.upperBound(LatencyHistogram.bucketOf(2)));
+        assertEquals(7, LatencyHistogram.upperBound(LatencyHistogram.bucketOf(7)));
+        assertEquals(1023, LatencyHistogram.upperBound(LatencyHistogram.bucketOf(1000)));
+        assertEquals(1279, LatencyHistogram.upperBound(LatencyHistogram.bucketOf(1024)));
+    }
+
+    @Test
+    public void percentilesOfUniformDistribution() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getPercentileMicros(0.5));
+        for (int ms = 1; ms <= 1000; ms++) {
+            histogram.record(ms * 1000000L);
+        }
+        assertEquals(1000, histogram.getCount());
+        assertEquals(500500, histogram.getMeanMicros());
+        assertEquals(1000000, histogram.getMaxMicros());
+
+        long p50 = histogram.getPercentileMicros(0.5);
+        assertTrue("p50 " + p50, p50 >= 500000 && p50 <= 625000);
+        long p99 = histogram.getPercentileMicros(0.99);
+        assertTrue("p99 " + p99, p99 >= 990000 && p99 <= 1000000);
+        // 上界不超过实际最大值
+        assertEquals(1000000, histogram.getPercentileMicros(1.0));
+    }
+
+    @Test
+    public void percentilesOfSkewedDistribution() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 0; i < 990; i++) {
+            histogram.record(1000000L);
+        }
+        for (int i = 0; i < 10; i++) {
+            histogram.record(2000000000L);
+        }
+        assertEquals(1023, histogram.getPercentileMicros(0.5));
+        assertEquals(1023, histogram.getPercentileMicros(0.99));
+        assertEquals(2000000, histogram.getPercentileMicros(0.995));
+
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getPercentileMicros(0.99));
+        // 不足1微秒的样本计为1微秒
+        histogram.record(10);
+        assertEquals(1, histogram.getPercentileMicros(0.5));
+    }
+}
@@ -0,0 +1,223 @@
+package com.fyb.networklib.util;
+
+import com.fyb.networklib.api.HttpStatusException;
+import com.fyb.networklib.api.NetworkClient;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.HttpUrl;
+import okhttp3.Request;
+import okhttp3.Response;
+
+import static org.junit.Assert.*;
+
+/**
+ * 验证超出速率的请求排队而不是失败，异步请求和OkGo请求在分发前排队，以及429 Retry-After 的退避
+ */
+public class RateLimiterTest {
+
+    private final AtomicInteger throttleNext = new AtomicInteger();
+    private volatile String lastAdmission;
+    private TestServer server;
+    private String baseUrl;
+
+    @Before
+    public void setUp() throws IOException {
+        server = TestServer.start("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                lastAdmission = exchange.getRequestHeaders().getFirst(RateLimiter.ADMISSION_HEADER);
+                int status = 200;
+                if (throttleNext.getAndSet(0) > 0) {
+                    status = 429;
+                    exchange.getResponseHeaders().add("Retry-After", "1");
+                }
+                byte[] bytes = "ok".getBytes(Charset.forName("UTF-8"));
+                TestServer.respond(exchange, status, bytes);
+            }
+        });
+        baseUrl = server.url("/api/");
+    }
+
+    @After
+    public void tearDown() {
+        server.close();
+    }
+
+    @Test
+    public void queuesRequestsAboveRate() throws IOException {
+        NetworkClient client = new NetworkClient();
+        client.getRateLimiter().setRouteLimit("GET 127.0.0.1/api/trips/", 20, 2);
+        long start = System.nanoTime();
+        for (int i = 0; i < 6; i++) {
+            assertEquals("ok", client.get(baseUrl + "trips/", null, String.class, null));
+        }
+        long elapsedMs = (System.nanoTime() - start) / 1000000;
+        // 突发2个，其余4个按每50毫秒一个放行
+        assertTrue("elapsed " + elapsedMs, elapsedMs >= 180);
+        RateLimiter.Bucket bucket = client.getRateLimiter().getBuckets().get(0);
+        assertEquals(6, bucket.getAcquiredCount());
+        assertEquals(0, bucket.getQueueDepth());
+        assertTrue(bucket.getAverageWaitMs() > 0);
+    }
+
+    @Test
+    public void backsOffOnRetryAfter() throws IOException {
+        NetworkClient client = new NetworkClient();
+        client.getRateLimiter().setHostLimit("127.0.0.1", 100, 10);
+        throttleNext.set(1);
+        try {
+            client.get(baseUrl + "trips/", null, String.class, null);
+            fail();
+        } catch (HttpStatusException e) {
+            assertEquals(429, e.getCode());
+        }
+        long start = System.nanoTime();
+        assertEquals("ok", client.get(baseUrl + "trips/", null, String.class, null));
+        assertTrue((System.nanoTime() - start) / 1000000 >= 900);
+        RateLimiter.Bucket bucket = client.getRateLimiter().getBuckets().get(0);
+        assertEquals(1, bucket.getThrottledCount());
+        assertTrue(bucket.getRate() < 100);
+
+        client.getRateLimiter().setMaxWait(100);
+        throttleNext.set(1);
+        try {
+            client.get(baseUrl + "trips/", null, String.class, null);
+        } catch (HttpStatusException expected) {
+        }
+        try {
+            client.get(baseUrl + "trips/", null, String.class, null);
+            fail("等待超过maxWait时应立即失败");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().startsWith("rate limit exceeded"));
+        }
+    }
+
+    @Test
+    public void parksAsyncCallsBeforeDispatch() throws Exception {
+        NetworkClient client = new NetworkClient();
+        client.getRateLimiter().setRouteLimit("GET 127.0.0.1/api/trips/", 20, 1);
+        final CountDownLatch done = new CountDownLatch(4);
+        final AtomicInteger ok = new AtomicInteger();
+        Callback callback = new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                done.countDown();
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) {
+                if (response.isSuccessful()) ok.incrementAndGet();
+                response.close();
+                done.countDown();
+            }
+        };
+        long start = System.nanoTime();
+        for (int i = 0; i < 4; i++) {
+            client.enqueue(new Request.Builder().url(baseUrl + "trips/").build(), callback);
+        }
+        // 后3个在限流队列中排队，没有交给调度器
+        assertEquals(3, client.getRateLimiter().getQueueDepth());
+        assertTrue(client.getOkHttpClient().dispatcher().queuedCallsCount()
+                + client.getOkHttpClient().dispatcher().runningCallsCount() <= 1);
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(4, ok.get());
+        assertTrue((System.nanoTime() - start) / 1000000 >= 140);
+        assertEquals(0, client.getRateLimiter().getQueueDepth());
+    }
+
+    @Test
+    public void admitsUncreatedRequestsBeforeDispatch() throws Exception {
+        NetworkClient client = new NetworkClient();
+        RateLimiter limiter = client.getRateLimiter().setRouteLimit("GET 127.0.0.1/api/trips/", 20, 1);
+        HttpUrl url = HttpUrl.parse(baseUrl + "trips/");
+        final BlockingQueue<String> admissions = new LinkedBlockingQueue<>();
+        RateLimiter.Dispatch record = new RateLimiter.Dispatch() {
+            @Override
+            public void dispatch(String admission) {
+                admissions.add(admission);
+            }
+        };
+        Object tag = new Object();
+        limiter.admit("GET", url, null, record);
+        limiter.admit("GET", url, null, record);
+        limiter.admit("GET", url, tag, record);
+        // 第一个立即放行，其余两个在限流队列中等待
+        String first = admissions.poll();
+        assertNotNull(first);
+        assertNull(admissions.poll());
+        assertEquals(2, limiter.getQueueDepth());
+        assertEquals(1, limiter.cancel(tag));
+        assertEquals(1, limiter.getQueueDepth());
+        assertNotNull(admissions.poll(1, TimeUnit.SECONDS));
+        assertNull(admissions.poll(200, TimeUnit.MILLISECONDS));
+        assertEquals(0, limiter.getQueueDepth());
+
+        // 携带凭证的请求在拦截器中直接放行，凭证请求头不会发到服务端
+        RateLimiter.Bucket bucket = limiter.getBuckets().get(0);
+        assertEquals(2, bucket.getAcquiredCount());
+        Request admitted = new Request.Builder().url(url).header(RateLimiter.ADMISSION_HEADER, first).build();
+        assertEquals("ok", client.<String>execute(admitted, String.class));
+        assertEquals(2, bucket.getAcquiredCount());
+        assertNull(lastAdmission);
+        // 凭证只能使用一次，OkGo重试携带同一个凭证时重新预定
+        assertEquals("ok", client.<String>execute(admitted, String.class));
+        assertEquals(3, bucket.getAcquiredCount());
+    }
+
+    @Test
+    public void cancelsParkedCallsAndRollsBackHost() throws IOException {
+        NetworkClient client = new NetworkClient();
+        RateLimiter limiter = client.getRateLimiter()
+                .setHostLimit("127.0.0.1", 100, 10)
+                .setRouteLimit("GET 127.0.0.1/api/trips/", 1, 1)
+                .setMaxWait(100);
+        assertEquals("ok", client.get(baseUrl + "trips/", null, String.class, null));
+        try {
+            client.get(baseUrl + "trips/", null, String.class, null);
+            fail("路由桶需要等待1秒，超过maxWait");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().startsWith("rate limit exceeded"));
+        }
+        RateLimiter.Bucket host = null;
+        for (RateLimiter.Bucket bucket : limiter.getBuckets()) {
+            if ("127.0.0.1".equals(bucket.getKey())) host = bucket;
+        }
+        // 被路由桶拒绝的请求不占用主机桶的令牌
+        assertEquals(1, host.getAcquiredCount());
+
+        limiter.setMaxWait(30000);
+        Object tag = new Object();
+        Callback ignored = new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) {
+                response.close();
+            }
+        };
+        Call call = client.enqueue(new Request.Builder().url(baseUrl + "trips/").tag(tag).build(), ignored);
+        assertEquals(1, limiter.getQueueDepth());
+        assertEquals(1, client.cancel(tag));
+        assertTrue(call.isCanceled());
+        assertEquals(0, limiter.getQueueDepth());
+        assertEquals(1, host.getAcquiredCount());
+    }
+}
@@ -0,0 +1,97 @@
+package com.fyb.networklib.util;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+
+import static org.junit.Assert.*;
+
+/**
+ * 验证分阶段耗时的记录、连接复用计数、失败计数和路由数上限
+ */
+public class RequestMetricsTest {
+
+    private final RequestMetrics metrics = RequestMetrics.getInstance();
+    private TestServer server;
+    private OkHttpClient client;
+
+    @Before
+    public void setUp() throws IOException {
+        metrics.reset();
+        server = TestServer.start(new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                TestServer.respond(exchange, 200, "{\"code\":0}");
+            }
+        });
+        client = new OkHttpClient.Builder().eventListenerFactory(metrics).build();
+    }
+
+    @After
+    public void tearDown() {
+        server.close();
+        metrics.reset();
+    }
+
+    @Test
+    public void recordsPhasesAndReusedConnections() throws Exception {
+        for (int i = 0; i < 2; i++) {
+            Response response = client.newCall(new Request.Builder()
+                    .url(server.url("/api/metrics/" + (1000 + i))).build()).execute();
+            assertEquals("{\"code\":0}", response.body().string());
+        }
+
+        // 路径中的ID归一为*，两次请求计入同一条路由
+        MetricsSnapshot.Route route = metrics.snapshot().routes.get("GET 127.0.0.1/api/metrics/*");
+        assertNotNull(route);
+        assertEquals(1, route.newConnections);
+        assertEquals(1, route.reusedConnections);
+        assertEquals(0, route.failures);
+        assertEquals(1, route.phases.get("CONNECT").count);
+        for (String phase : new String[]{"QUEUE", "REQUEST", "SERVER", "BODY", "TOTAL"}) {
+            MetricsSnapshot.Stats stats = route.phases.get(phase);
+            assertNotNull(phase, stats);
+            assertEquals(phase, 2, stats.count);
+            assertTrue(phase, stats.p50Micros <= stats.p99Micros && stats.p99Micros <= stats.maxMicros);
+        }
+        // 明文连接没有TLS阶段
+        assertNull(route.phases.get("TLS"));
+        assertNull(route.phases.get("TLS_RESUMED"));
+    }
+
+    @Test
+    public void countsFailures() throws Exception {
+        String url = server.url("/api/gone");
+        server.close();
+        try {
+            client.newCall(new Request.Builder().url(url).build()).execute();
+            fail("expected connection failure");
+        } catch (IOException expected) {
+        }
+        MetricsSnapshot.Route route = metrics.snapshot().routes.get("GET 127.0.0.1/api/gone");
+        assertEquals(1, route.failures);
+        assertEquals(1, route.phases.get("TOTAL").count);
+    }
+
+    @Test
+    public void capsDistinctRoutes() {
+        for (int i = 0; i < 300; i++) {
+            metrics.record("GET example.com/route" + i, RequestMetrics.Phase.TOTAL, 1000000);
+        }
+        MetricsSnapshot snapshot = metrics.snapshot();
+        // 超出上限（256条）的路由合并到other；单例可能还记录了其他测试的请求，只检查上限
+        assertTrue(snapshot.routes.size() <= 257);
+        assertTrue(snapshot.routes.get("other").phases.get("TOTAL").count >= 44);
+        assertNull(snapshot.routes.get("GET example.com/route299"));
+        assertNotNull(snapshot.routes.get("GET example.com/route0"));
+    }
+}
@@ -0,0 +1,114 @@
+package com.fyb.networklib.util;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import okio.Buffer;
+
+import static org.junit.Assert.*;
+
+/**
+ * 验证SSE/NDJSON的逐行解析：多行data、事件ID续传、retry、注释行和单行长度上限
+ */
+public class StreamParserTest {
+
+    @Test
+    public void parsesEventStreamFrames() throws Exception {
+        StreamParser parser = new StreamParser(1024);
+        List<String[]> events = new ArrayList<>();
+        parser.readEventStream(source(": keep-alive\r\n"
+                + "id: 1\n"
+                + "event: trip\n"
+                + "data: {\"a\":1,\n"
+                + "data:\"b\":2}\n"
+                + "\n"
+                + "retry: 3000\n"
+                + "data: second\n"
+                + "\n"
+                + "id: 7\n"
+                + "\n"
+                + "data: tail"), recorder(events));
+
+        assertEquals(2, events.size());
+        assertArrayEquals(new String[]{"1", "trip", "{\"a\":1,\n\"b\":2}"}, events.get(0));
+        // 没有id的帧沿用上一个事件ID，未指定事件名时为null
+        assertArrayEquals(new String[]{"1", null, "second"}, events.get(1));
+        assertEquals(3000, parser.getRetryMillis());
+        // 没有data的帧不投递，也不更新事件ID；流末尾未以空行结束的帧丢弃
+        assertEquals("1", parser.getLastEventId());
+    }
+
+    @Test
+    public void keepsLastEventIdAcrossStreams() throws Exception {
+        StreamParser parser = new StreamParser(1024);
+        parser.setLastEventId("41");
+        List<String[]> events = new ArrayList<>();
+        parser.readEventStream(source("data: resumed\n\nid: 42\ndata: next\n\n"), recorder(events));
+
+        assertEquals("41", events.get(0)[0]);
+        assertEquals("42", events.get(1)[0]);
+        assertEquals("42", parser.getLastEventId());
+        assertEquals(-1, parser.getRetryMillis());
+    }
+
+    @Test
+    public void parsesJsonLines() throws Exception {
+        StreamParser parser = new StreamParser(1024);
+        List<String[]> events = new ArrayList<>();
+        parser.readJsonLines(source("{\"a\":1}\r\n\n  \n{\"a\":2}"), recorder(events));
+
+        assertEquals(2, events.size());
+        assertArrayEquals(new String[]{null, null, "{\"a\":1}"}, events.get(0));
+        assertEquals("{\"a\":2}", events.get(1)[2]);
+    }
+
+    @Test
+    public void stopsWhenListenerDeclines() throws Exception {
+        StreamParser parser = new StreamParser(1024);
+        final List<String> seen = new ArrayList<>();
+        parser.readJsonLines(source("1\n2\n3\n"), new StreamParser.Listener() {
+            @Override
+            public boolean onEvent(String id, String event, String data) {
+                seen.add(data);
+                return seen.size() < 2;
+            }
+        });
+        assertEquals(2, seen.size());
+    }
+
+    @Test
+    public void rejectsOverlongLine() throws Exception {
+        StringBuilder line = new StringBuilder();
+        for (int i = 0; i < 20000; i++) {
+            line.append('x');
+        }
+        StreamParser parser = new StreamParser(8192);
+        List<String[]> events = new ArrayList<>();
+        parser.readJsonLines(source("short\n" + line.substring(0, 8000) + "\n"), recorder(events));
+        assertEquals(2, events.size());
+        try {
+            parser.readJsonLines(source(line + "\n"), recorder(events));
+            fail("expected IOException");
+        } catch (IOException expected) {
+            assertTrue(expected.getMessage().contains("8192"));
+        }
+        assertEquals(2, events.size());
+    }
+
+    private static Buffer source(String text) {
+        return new Buffer().writeUtf8(text);
+    }
+
+    private static StreamParser.Listener recorder(final List<String[]> events) {
+        return new StreamParser.Listener() {
+            @Override
+            public boolean onEvent(String id, String event, String data) {
+                events.add(new String[]{id, event, data});
+                return true;
+            }
+        };
+    }
+}
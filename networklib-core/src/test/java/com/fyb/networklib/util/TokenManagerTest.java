@@ -0,0 +1,106 @@
+package com.fyb.networklib.util;
+
+import com.fyb.networklib.api.NetworkClient;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * 令牌失效后大量并发请求同时收到401，只应触发一次刷新，且全部请求用新令牌重放成功
+ */
+public class TokenManagerTest {
+
+    private TestServer server;
+    private volatile String validToken = "new";
+    private final AtomicInteger refreshes = new AtomicInteger();
+    private String url;
+
+    @Before
+    public void setUp() throws IOException {
+        server = TestServer.start("/api/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                String header = exchange.getRequestHeaders().getFirst(TokenManager.HEADER);
+                boolean ok = (TokenManager.PREFIX + validToken).equals(header);
+                byte[] bytes = (ok ? "{\"code\":0,\"msg\":\"ok\"}" : "{}").getBytes(Charset.forName("UTF-8"));
+                TestServer.respond(exchange, ok ? 200 : 401, bytes);
+            }
+        });
+        url = server.url("/api/");
+    }
+
+    @After
+    public void tearDown() {
+        server.close();
+    }
+
+    private TokenManager manager() {
+        return new TokenManager(new TokenManager.Refresher() {
+            @Override
+            public TokenManager.Token refresh(TokenManager.Token expired) {
+                refreshes.incrementAndGet();
+                try {
+                    Thread.sleep(200);
+                } catch (InterruptedException ignored) {
+                }
+                return new TokenManager.Token("new", System.currentTimeMillis() + 3600000);
+            }
+        });
+    }
+
+    @Test
+    public void concurrentUnauthorizedCallsShareOneRefresh() throws Exception {
+        TokenManager manager = manager();
+        // 服务端已吊销的旧令牌，本地认为仍有效
+        manager.setToken("old", System.currentTimeMillis() + 3600000);
+        final NetworkClient client = new NetworkClient().setTokenManager(manager);
+
+        List<CompletableFuture<SimpleResponse>> futures = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            futures.add(client.submit(() -> client.<SimpleResponse>get(url, null, SimpleResponse.class, null)));
+        }
+        for (CompletableFuture<SimpleResponse> future : futures) {
+            assertEquals(0, future.get(10, TimeUnit.SECONDS).code);
+        }
+        assertEquals(1, refreshes.get());
+        assertEquals("new", manager.getAccessToken());
+    }
+
+    @Test
+    public void expiredTokenIsRefreshedBeforeSending() throws Exception {
+        TokenManager manager = manager();
+        manager.setToken("old", System.currentTimeMillis() - 1);
+        NetworkClient client = new NetworkClient().setTokenManager(manager);
+
+        SimpleResponse response = client.get(url, null, SimpleResponse.class, null);
+        assertEquals(0, response.code);
+        assertEquals(1, refreshes.get());
+    }
+
+    @Test
+    public void tokenNearExpiryIsRefreshedInBackground() throws Exception {
+        TokenManager manager = manager().setRefreshAhead(60000);
+        manager.setToken("new", System.currentTimeMillis() + 1000);
+
+        // 临近过期：立即返回当前令牌，刷新在后台完成
+        assertEquals("new", manager.getAccessToken());
+        long deadline = System.currentTimeMillis() + 5000;
+        while (refreshes.get() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(1, refreshes.get());
+    }
+}
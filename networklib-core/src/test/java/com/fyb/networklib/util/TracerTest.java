@@ -0,0 +1,84 @@
+package com.fyb.networklib.util;
+
+import com.fyb.networklib.api.NetworkClient;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * 验证一次操作内的请求共享追踪ID、各阶段记为请求的子span，以及导出格式
+ */
+public class TracerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private volatile String received;
+
+    @After
+    public void tearDown() {
+        Tracer.getInstance().setEnabled(false).clear();
+    }
+
+    @Test
+    public void tracesRequestsWithinOperation() throws Exception {
+        TestServer server = TestServer.start("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                received = exchange.getRequestHeaders().getFirst(Tracer.HEADER);
+                byte[] bytes = "{\"code\":0,\"msg\":\"\",\"data\":1}".getBytes(Charset.forName("UTF-8"));
+                TestServer.respond(exchange, 200, bytes);
+            }
+        });
+        String url = server.url("/api/trips/");
+        Tracer tracer = Tracer.getInstance().setEnabled(true).setCapacity(64);
+        NetworkClient client = new NetworkClient();
+
+        Tracer.Span operation = tracer.begin("openTrips");
+        client.get(url, null, LzyResponse.class, null);
+        client.get(url, null, LzyResponse.class, null);
+        operation.end();
+        server.close();
+        assertNull(tracer.current());
+        assertNotNull(received);
+        assertEquals(operation.getTraceId(), received.split("-")[1]);
+
+        Set<String> requests = new HashSet<>();
+        Set<String> names = new HashSet<>();
+        for (Tracer.Span span : tracer.getSpans()) {
+            assertEquals(operation.getTraceId(), span.getTraceId());
+            assertTrue(span.getDurationMicros() >= 0);
+            if (operation.getSpanId().equals(span.getParentId())) requests.add(span.getSpanId());
+        }
+        assertEquals(2, requests.size());
+        for (Tracer.Span span : tracer.getSpans()) {
+            if (requests.contains(span.getParentId())) names.add(span.getName());
+        }
+        assertTrue(names.toString(), names.containsAll(Arrays.asList("queue", "connect", "request", "server", "body", "parse")));
+
+        File file = new File(folder.getRoot(), "trace.json");
+        tracer.export(file);
+        JsonObject json = new JsonParser().parse(new InputStreamReader(new FileInputStream(file), "UTF-8")).getAsJsonObject();
+        JsonArray events = json.getAsJsonArray("traceEvents");
+        assertTrue(events.size() > tracer.getSpans().size());
+        assertEquals("X", events.get(0).getAsJsonObject().get("ph").getAsString());
+    }
+}
@@ -5,6 +5,7 @@
 -keep class com.fyb.networklib.api.NetworkApi { *; }
 -keep class com.fyb.networklib.api.LicenseInfo { *; }
 -keep class com.fyb.networklib.data.BaseEntity { *; }
+-keep class com.fyb.networklib.data.TripDelta { *; }
 -keep class com.fyb.networklib.util.JsonCallback { *; }
 -keep class com.fyb.networklib.util.TokenProvider { *; }
 
@@ -21,3 +22,8 @@
     <fields>;
 }
 
+
+# @JsonAdapter 指定的手写解析器工厂通过反射实例化
+-keep class com.fyb.networklib.**$AdapterFactory {
+    <init>();
+}
@@ -0,0 +1,548 @@
+package com.fyb.networklib.api;
+
+import android.util.Log;
+
+import com.fyb.networklib.util.Convert;
+import com.fyb.networklib.util.FileChunkRequestBody;
+import com.fyb.networklib.util.IdempotencyInterceptor;
+import com.fyb.networklib.util.ProgressCoalescer;
+import com.lzy.okgo.OkGo;
+import com.lzy.okgo.model.Progress;
+import com.lzy.okserver.OkUpload;
+import com.lzy.okserver.upload.UploadListener;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import okhttp3.Call;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+
+/**
+ * 分块并行断点上传任务
+ * 把文件切块并行上传，每块由 FileChunkRequestBody 按段流式写出，
+ * 服务端确认的分块记录在应用缓存目录中，中断后只补传未确认的分块；
+ * 并发数不超过共享调度器的单host并发上限，避免上传占满所有连接
+ *
+ * 与服务端约定：
+ * 分块：POST url，请求头 Upload-Id、Content-Range: bytes a-b/total，2xx表示该块已落盘；
+ *       同一分块重复上传由服务端按 Upload-Id + Content-Range 覆盖，连接异常和5xx由本任务按指数退避重试，不再叠加幂等重试
+ * 查询：HEAD url，请求头 Upload-Id，响应头 Upload-Offset 为服务端已连续收到的字节数，404表示会话已失效
+ * 完成：POST url，请求头 Upload-Id、Upload-Length、Upload-Complete: true，响应体交给onFinish
+ *
+ * 回调与okserver一致，使用 UploadListener，在主线程执行；
+ * 分块任务运行在独立的线程池上（okserver的 XExecutor 只接受 PriorityRunnable），线程数取okserver上传线程池的核心线程数
+ */
+public class ChunkedUploadTask {
+
+    private static final String TAG = "ChunkedUploadTask";
+
+    private static final long DEFAULT_CHUNK_SIZE = 4 * 1024 * 1024;
+    private static final int CHUNK_RETRY = 3;
+    private static final long MIN_BACKOFF_MS = 1000;
+    private static final long MAX_BACKOFF_MS = 16000;
+    private static final String STATE_DIR = "oknet-upload";
+    private static final MediaType OCTET_STREAM = MediaType.parse("application/octet-stream");
+
+    private static volatile ThreadPoolExecutor sExecutor;
+
+    private final String url;
+    private final File file;
+    private final List<UploadListener<String>> listeners = new CopyOnWriteArrayList<>();
+    private final Set<Call> calls = Collections.synchronizedSet(new HashSet<Call>());
+    private final ConcurrentLinkedQueue<Integer> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger activeWorkers = new AtomicInteger();
+    private final Random random = new Random();
+    private final Progress progress = new Progress();
+
+    private Object tag;
+    private long chunkSize = DEFAULT_CHUNK_SIZE;
+    private int maxConcurrency;
+
+    private volatile boolean running;
+    private volatile boolean paused;
+    private volatile Throwable failure;
+    private File stateFile;
+    private State state;
+    private ProgressCoalescer coalescer;
+
+    public ChunkedUploadTask(String url, File file) {
+        this.url = url;
+        this.file = file;
+        progress.tag = file.getAbsolutePath();
+        progress.url = url;
+        progress.folder = file.getParent();
+        progress.fileName = file.getName();
+        progress.filePath = file.getAbsolutePath();
+        progress.status = Progress.NONE;
+    }
+
+    public ChunkedUploadTask tag(Object tag) {
+        this.tag = tag;
+        return this;
+    }
+
+    /**
+     * 设置分块大小，只对新的上传会话生效
+     */
+    public ChunkedUploadTask chunkSize(long chunkSize) {
+        this.chunkSize = chunkSize;
+        return this;
+    }
+
+    /**
+     * 设置最大并发分块数，实际并发数不超过调度器的单host并发上限
+     */
+    public ChunkedUploadTask maxConcurrency(int maxConcurrency) {
+        this.maxConcurrency = maxConcurrency;
+        return this;
+    }
+
+    public ChunkedUploadTask register(UploadListener<String> listener) {
+        listeners.add(listener);
+        return this;
+    }
+
+    public void unRegister(UploadListener<String> listener) {
+        listeners.remove(listener);
+    }
+
+    public Progress getProgress() {
+        return progress;
+    }
+
+    /**
+     * 开始或继续上传
+     */
+    public synchronized void start() {
+        if (running) return;
+        running = true;
+        paused = false;
+        failure = null;
+        executor().execute(new Runnable() {
+            @Override
+            public void run() {
+                prepare();
+            }
+        });
+    }
+
+    /**
+     * 暂停上传，已确认的分块会保留
+     */
+    public synchronized void pause() {
+        paused = true;
+        cancelCalls();
+        notifyAll();
+    }
+
+    /**
+     * 删除任务及本地的断点记录
+     */
+    public synchronized void remove() {
+        paused = true;
+        cancelCalls();
+        notifyAll();
+        executor().execute(new Runnable() {
+            @Override
+            public void run() {
+                stateFile().delete();
+                progress.status = Progress.NONE;
+                post(new Event() {
+                    @Override
+                    void call(UploadListener<String> listener) {
+                        listener.onRemove(progress);
+                    }
+                });
+            }
+        });
+    }
+
+    private static ThreadPoolExecutor executor() {
+        if (sExecutor == null) {
+            synchronized (ChunkedUploadTask.class) {
+                if (sExecutor == null) {
+                    int threads = Math.max(1, OkUpload.getInstance().getThreadPool().getExecutor().getCorePoolSize());
+                    ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                            new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                        private final AtomicInteger count = new AtomicInteger();
+
+                        @Override
+                        public Thread newThread(Runnable runnable) {
+                            return new Thread(runnable, "OkNet-Chunk-" + count.incrementAndGet());
+                        }
+                    });
+                    executor.allowCoreThreadTimeOut(true);
+                    sExecutor = executor;
+                }
+            }
+        }
+        return sExecutor;
+    }
+
+    private void prepare() {
+        try {
+            state = loadState();
+            if (state != null && !resume(state)) {
+                state = null;
+            }
+            if (state == null) {
+                state = new State();
+                state.uploadId = UUID.randomUUID().toString();
+                state.url = url;
+                state.path = file.getAbsolutePath();
+                state.length = file.length();
+                state.lastModified = file.lastModified();
+                state.chunkSize = chunkSize;
+                state.acked = new boolean[(int) ((state.length + chunkSize - 1) / chunkSize)];
+            }
+            saveState();
+
+            pending.clear();
+            for (int i = 0; i < state.acked.length; i++) {
+                if (!state.acked[i]) pending.add(i);
+            }
+            coalescer = new ProgressCoalescer();
+            coalescer.update(state.ackedBytes(), state.length);
+            coalescer.fill(progress);
+            progress.status = Progress.LOADING;
+            post(new Event() {
+                @Override
+                void call(UploadListener<String> listener) {
+                    listener.onStart(progress);
+                }
+            });
+
+            int workers = Math.max(1, Math.min(concurrencyLimit(), pending.size()));
+            activeWorkers.set(workers);
+            for (int i = 0; i < workers; i++) {
+                executor().execute(new Worker());
+            }
+        } catch (Throwable e) {
+            failure = e;
+            activeWorkers.set(1);
+            onWorkerExit();
+        }
+    }
+
+    private int concurrencyLimit() {
+        int limit = maxConcurrency > 0 ? maxConcurrency : executor().getCorePoolSize();
+        OkHttpClient client = OkGo.getInstance().getOkHttpClient();
+        // 给同host的其他请求至少留一个位置
+        return Math.max(1, Math.min(limit, client.dispatcher().getMaxRequestsPerHost() - 1));
+    }
+
+    /**
+     * 向服务端核对已连续收到的字节数
+     *
+     * @return 会话仍然有效时返回true
+     */
+    private boolean resume(State saved) throws IOException {
+        Call call = OkGo.<String>head(url)
+                .tag(tag)
+                .headers("Upload-Id", saved.uploadId)
+                .getRawCall();
+        Response response = call.execute();
+        try {
+            if (response.code() == 404 || response.code() == 410) {
+                Log.i(TAG, "Upload session expired, restart: " + file.getName());
+                return false;
+            }
+            String offset = response.header("Upload-Offset");
+            if (response.isSuccessful() && offset != null) {
+                long received = Long.parseLong(offset.trim());
+                for (int i = 0; i < saved.acked.length; i++) {
+                    if (saved.chunkEnd(i) <= received) saved.acked[i] = true;
+                }
+            }
+            return true;
+        } catch (NumberFormatException e) {
+            return true;
+        } finally {
+            response.close();
+        }
+    }
+
+    private void upload(int index) throws IOException {
+        long start = index * state.chunkSize;
+        long end = state.chunkEnd(index);
+        RequestBody body = new FileChunkRequestBody(OCTET_STREAM, file, start, end - start);
+        int attempt = 0;
+        while (!paused) {
+            int code;
+            try {
+                code = send(index, start, end, body);
+            } catch (IOException e) {
+                if (paused || ++attempt > CHUNK_RETRY) throw e;
+                Log.w(TAG, "Chunk " + index + " retry " + attempt + ": " + e.getMessage());
+                backoff(attempt);
+                continue;
+            }
+            if (code >= 200 && code < 300) {
+                ack(index);
+                return;
+            }
+            // 4xx说明请求本身有问题，重试没有意义
+            if (code < 500 || ++attempt > CHUNK_RETRY) {
+                throw new IOException("Chunk " + index + " rejected: HTTP " + code);
+            }
+            Log.w(TAG, "Chunk " + index + " retry " + attempt + ": HTTP " + code);
+            backoff(attempt);
+        }
+    }
+
+    /**
+     * 第attempt次重试前等待，指数退避 + 随机抖动，避免并行的分块同时重试；暂停时立即返回
+     */
+    private void backoff(int attempt) throws IOException {
+        long backoff = Math.min(MAX_BACKOFF_MS, MIN_BACKOFF_MS << Math.min(attempt - 1, 16));
+        long deadline = System.currentTimeMillis() + backoff / 2 + (long) (random.nextDouble() * (backoff / 2));
+        synchronized (this) {
+            long left;
+            while (!paused && (left = deadline - System.currentTimeMillis()) > 0) {
+                try {
+                    wait(left);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("interrupted while waiting to retry chunk");
+                }
+            }
+        }
+    }
+
+    private int send(int index, long start, long end, RequestBody body) throws IOException {
+        Call call = OkGo.<String>post(url)
+                .tag(tag)
+                .headers("Upload-Id", state.uploadId)
+                .headers("Content-Range", "bytes " + start + "-" + (end - 1) + "/" + state.length)
+                .upRequestBody(body)
+                .getRawCall();
+        calls.add(call);
+        try {
+            Response response = call.execute();
+            response.close();
+            return response.code();
+        } finally {
+            calls.remove(call);
+        }
+    }
+
+    private void ack(int index) {
+        synchronized (state) {
+            state.acked[index] = true;
+        }
+        saveState();
+        if (!coalescer.update(state.ackedBytes(), state.length)) return;
+        coalescer.post(OkGo.getInstance().getDelivery(), new Runnable() {
+            @Override
+            public void run() {
+                coalescer.fill(progress);
+                for (UploadListener<String> listener : listeners) {
+                    listener.onProgress(progress);
+                }
+            }
+        });
+    }
+
+    /**
+     * 预计剩余时间（毫秒），未知时返回-1
+     */
+    public long getEtaMillis() {
+        ProgressCoalescer current = coalescer;
+        return current == null ? -1 : current.getEtaMillis();
+    }
+
+    private String commit() throws IOException {
+        Call call = OkGo.<String>post(url)
+                .tag(tag)
+                .headers("Upload-Id", state.uploadId)
+                .headers("Upload-Length", String.valueOf(state.length))
+                .headers("Upload-Complete", "true")
+                .headers(IdempotencyInterceptor.HEADER, state.uploadId + "-complete")
+                .upRequestBody(RequestBody.create(OCTET_STREAM, new byte[0]))
+                .getRawCall();
+        calls.add(call);
+        try {
+            Response response = call.execute();
+            try {
+                if (!response.isSuccessful()) {
+                    throw new IOException("Upload commit failed: HTTP " + response.code());
+                }
+                return response.body() == null ? null : response.body().string();
+            } finally {
+                response.close();
+            }
+        } finally {
+            calls.remove(call);
+        }
+    }
+
+    private void onWorkerExit() {
+        if (activeWorkers.decrementAndGet() != 0) return;
+        if (failure == null && !paused) {
+            try {
+                final String result = commit();
+                stateFile().delete();
+                progress.currentSize = progress.totalSize;
+                progress.fraction = 1.0f;
+                progress.status = Progress.FINISH;
+                running = false;
+                post(new Event() {
+                    @Override
+                    void call(UploadListener<String> listener) {
+                        listener.onFinish(result, progress);
+                    }
+                });
+                return;
+            } catch (IOException e) {
+                if (!paused) failure = e;
+            }
+        }
+        running = false;
+        if (failure != null) {
+            progress.status = Progress.ERROR;
+            progress.exception = failure;
+            post(new Event() {
+                @Override
+                void call(UploadListener<String> listener) {
+                    listener.onError(progress);
+                }
+            });
+        } else {
+            progress.status = Progress.PAUSE;
+            post(new Event() {
+                @Override
+                void call(UploadListener<String> listener) {
+                    listener.onProgress(progress);
+                }
+            });
+        }
+    }
+
+    private synchronized File stateFile() {
+        if (stateFile == null) {
+            File dir = new File(OkGo.getInstance().getContext().getCacheDir(), STATE_DIR);
+            dir.mkdirs();
+            String key = Integer.toHexString((url + "|" + file.getAbsolutePath()).hashCode());
+            stateFile = new File(dir, key + ".json");
+        }
+        return stateFile;
+    }
+
+    private State loadState() {
+        File saved = stateFile();
+        if (!saved.exists()) return null;
+        try (Reader reader = new FileReader(saved)) {
+            State s = Convert.fromJson(reader, State.class);
+            // 文件被修改过时旧的分块不再可信
+            if (s == null || s.acked == null || !url.equals(s.url) || s.length != file.length()
+                    || s.lastModified != file.lastModified()) {
+                return null;
+            }
+            return s;
+        } catch (Exception e) {
+            Log.w(TAG, "Upload state unreadable, restart upload: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private void saveState() {
+        State current = state;
+        if (current == null) return;
+        synchronized (current) {
+            try (Writer writer = new FileWriter(stateFile())) {
+                writer.write(Convert.toJson(current));
+            } catch (IOException e) {
+                Log.w(TAG, "Upload state save failed: " + e.getMessage());
+            }
+        }
+    }
+
+    private void cancelCalls() {
+        List<Call> snapshot;
+        synchronized (calls) {
+            snapshot = new ArrayList<>(calls);
+        }
+        for (Call call : snapshot) {
+            call.cancel();
+        }
+    }
+
+    private void post(final Event event) {
+        OkGo.getInstance().getDelivery().post(new Runnable() {
+            @Override
+            public void run() {
+                for (UploadListener<String> listener : listeners) {
+                    event.call(listener);
+                }
+            }
+        });
+    }
+
+    private class Worker implements Runnable {
+        @Override
+        public void run() {
+            try {
+                Integer index;
+                while (!paused && failure == null && (index = pending.poll()) != null) {
+                    upload(index);
+                }
+            } catch (Throwable e) {
+                if (failure == null && !paused) failure = e;
+                cancelCalls();
+            } finally {
+                onWorkerExit();
+            }
+        }
+    }
+
+    private abstract static class Event {
+        abstract void call(UploadListener<String> listener);
+    }
+
+    /**
+     * 断点续传记录，acked[i]表示第i块已被服务端确认
+     */
+    static class State {
+        String uploadId;
+        String url;
+        String path;
+        long length;
+        long lastModified;
+        long chunkSize;
+        boolean[] acked;
+
+        long chunkEnd(int index) {
+            return Math.min(length, (index + 1) * chunkSize);
+        }
+
+        long ackedBytes() {
+            long sum = 0;
+            for (int i = 0; i < acked.length; i++) {
+                if (acked[i]) sum += chunkEnd(i) - i * chunkSize;
+            }
+            return sum;
+        }
+    }
+}
@@ -1,8 +1,19 @@
 package com.fyb.networklib.api;
 
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.annotations.JsonAdapter;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+
 /**
  * 许可证信息模型类
  */
+@JsonAdapter(LicenseInfo.AdapterFactory.class)
 public class LicenseInfo {
     private String key;
     private String name;
@@ -80,4 +91,85 @@ public class LicenseInfo {
                 ", minutes_remaining=" + minutes_remaining +
                 '}';
     }
+
+    /**
+     * 手写的解析器，不经反射绑定字段
+     */
+    static final class AdapterFactory implements TypeAdapterFactory {
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> typeToken) {
+            if (typeToken.getRawType() != LicenseInfo.class) return null;
+            return (TypeAdapter<T>) new Adapter(gson);
+        }
+    }
+
+    private static final class Adapter extends TypeAdapter<LicenseInfo> {
+        private final TypeAdapter<Integer> intAdapter;
+        private final TypeAdapter<String> stringAdapter;
+        private final TypeAdapter<Boolean> booleanAdapter;
+
+        Adapter(Gson gson) {
+            this.intAdapter = gson.getAdapter(int.class);
+            this.stringAdapter = gson.getAdapter(String.class);
+            this.booleanAdapter = gson.getAdapter(boolean.class);
+        }
+
+        @Override
+        public void write(JsonWriter out, LicenseInfo value) throws IOException {
+            out.beginObject();
+            out.name("key");
+            stringAdapter.write(out, value.key);
+            out.name("name");
+            stringAdapter.write(out, value.name);
+            out.name("expiry_date");
+            stringAdapter.write(out, value.expiry_date);
+            out.name("is_expired").value(value.is_expired);
+            out.name("days_remaining").value(value.days_remaining);
+            out.name("hours_remaining").value(value.hours_remaining);
+            out.name("minutes_remaining").value(value.minutes_remaining);
+            out.endObject();
+        }
+
+        @Override
+        public LicenseInfo read(JsonReader in) throws IOException {
+            LicenseInfo info = new LicenseInfo();
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "key":
+                        info.key = stringAdapter.read(in);
+                        break;
+                    case "name":
+                        info.name = stringAdapter.read(in);
+                        break;
+                    case "expiry_date":
+                        info.expiry_date = stringAdapter.read(in);
+                        break;
+                    case "is_expired":
+                        Boolean expired = booleanAdapter.read(in);
+                        if (expired != null) info.is_expired = expired;
+                        break;
+                    case "days_remaining":
+                        info.days_remaining = readInt(in, info.days_remaining);
+                        break;
+                    case "hours_remaining":
+                        info.hours_remaining = readInt(in, info.hours_remaining);
+                        break;
+                    case "minutes_remaining":
+                        info.minutes_remaining = readInt(in, info.minutes_remaining);
+                        break;
+                    default:
+                        in.skipValue();
+                }
+            }
+            in.endObject();
+            return info;
+        }
+
+        private int readInt(JsonReader in, int fallback) throws IOException {
+            Integer value = intAdapter.read(in);
+            return value == null ? fallback : value;
+        }
+    }
 }
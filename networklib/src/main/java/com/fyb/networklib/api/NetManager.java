@@ -3,15 +3,14 @@ package com.fyb.networklib.api;
 import android.app.Application;
 import android.content.Context;
 
+import com.fyb.networklib.util.SampledLoggingInterceptor;
 import com.lzy.okgo.OkGo;
 import com.lzy.okgo.cache.CacheEntity;
 import com.lzy.okgo.cache.CacheMode;
 import com.lzy.okgo.cookie.CookieJarImpl;
 import com.lzy.okgo.cookie.store.SPCookieStore;
-import com.lzy.okgo.interceptor.HttpLoggingInterceptor;
 
 import java.util.concurrent.TimeUnit;
-import java.util.logging.Level;
 
 import okhttp3.OkHttpClient;
 
@@ -45,11 +44,8 @@ public class NetManager {
     private void initOkGo(Application application) {
         OkHttpClient.Builder builder = new OkHttpClient.Builder();
 
-        // Logging interceptor
-        HttpLoggingInterceptor loggingInterceptor = new HttpLoggingInterceptor("OkGo");
-        loggingInterceptor.setPrintLevel(HttpLoggingInterceptor.Level.BODY);
-        loggingInterceptor.setColorLevel(Level.INFO);
-        builder.addInterceptor(loggingInterceptor);
+        // Logging interceptor，采样、限制body大小并在后台线程输出
+        builder.addInterceptor(new SampledLoggingInterceptor("OkGo"));
 
         // Global timeout
         builder.readTimeout(10000, TimeUnit.MILLISECONDS);
@@ -2,17 +2,35 @@ package com.fyb.networklib.api;
 
 import android.app.Application;
 import android.content.Context;
+import android.content.pm.ApplicationInfo;
+import android.net.ConnectivityManager;
+import android.net.SSLSessionCache;
 import android.os.Handler;
 import android.util.Log;
 
+import androidx.lifecycle.Lifecycle;
+import androidx.lifecycle.LifecycleEventObserver;
+import androidx.lifecycle.LifecycleOwner;
+
+import com.fyb.networklib.util.CassetteInterceptor;
+import com.fyb.networklib.util.CompressionInterceptor;
+import com.fyb.networklib.util.Convert;
+import com.fyb.networklib.util.IdempotencyInterceptor;
+import com.fyb.networklib.util.RateLimiter;
 import com.fyb.networklib.util.JsonCallback;
-import com.google.gson.Gson;
+import com.fyb.networklib.util.MemoryTrimmer;
+import com.fyb.networklib.util.ProgressCoalescer;
+import com.fyb.networklib.util.RequestMetrics;
+import com.fyb.networklib.util.SampledLoggingInterceptor;
+import com.fyb.networklib.util.StreamCallback;
+import com.fyb.networklib.util.TlsSessionCache;
+import com.fyb.networklib.util.TokenManager;
+import com.fyb.networklib.util.Tracer;
 import com.lzy.okgo.OkGo;
 import com.lzy.okgo.cache.CacheEntity;
 import com.lzy.okgo.cache.CacheMode;
 import com.lzy.okgo.cookie.CookieJarImpl;
 import com.lzy.okgo.cookie.store.SPCookieStore;
-import com.lzy.okgo.interceptor.HttpLoggingInterceptor;
 import com.lzy.okgo.model.HttpHeaders;
 import com.lzy.okgo.model.HttpParams;
 import com.lzy.okgo.request.DeleteRequest;
@@ -25,11 +43,17 @@ import com.lzy.okgo.request.PutRequest;
 import com.lzy.okgo.request.TraceRequest;
 import com.lzy.okgo.request.base.Request;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.Map;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
-import java.util.logging.Level;
 
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.Headers;
+import okhttp3.HttpUrl;
 import okhttp3.OkHttpClient;
 import okhttp3.Response;
 
@@ -42,6 +66,14 @@ public class NetworkApi {
     private static NetworkApi instance;
     private static volatile boolean isAuthorized = false;
     private LicenseInfo licenseInfo;
+    private final NetworkClient networkClient = new NetworkClient();
+    /** 公共请求头的OkHttp快照，供模板请求直接复用 */
+    private volatile Headers commonHeaders = Headers.of();
+    private SSLSessionCache tlsSessionCache;
+    private CassetteInterceptor cassette;
+    private MemoryTrimmer memoryTrimmer;
+    private volatile ConnectivityManager connectivityManager;
+    private final SampledLoggingInterceptor loggingInterceptor = new SampledLoggingInterceptor("OkGo").setSampleRate(0);
     private String licenseServerUrl = a("687474703a2f2f3130372e3137352e3235342e34373a383030302f6c6963656e73652f");
 
     private NetworkApi() {
@@ -108,28 +140,86 @@ public class NetworkApi {
         return this;
     }
 
+    /**
+     * 设置持久化TLS会话缓存，需在init之前调用；默认关闭，传null关闭
+     * 开启后连接固定为HTTP/1.1且不再使用OkHttp的ConnectionSpec（见 {@link TlsSessionCache}），只适合不依赖HTTP/2的服务，
+     * 缓存可通过 TlsSessionCache.create(context) 创建
+     *
+     * @param cache 会话缓存
+     * @return NetworkApi实例
+     */
+    public NetworkApi setTlsSessionCache(SSLSessionCache cache) {
+        this.tlsSessionCache = cache;
+        return this;
+    }
+
+    /**
+     * 设置录制/回放磁带，需在init之前调用；回放模式下包括许可证校验在内的所有请求都不访问网络，用于离线的性能测试和回归测试
+     * 只在可调试（debuggable）的构建中生效，release构建中忽略，避免回放录制的许可证响应绕过校验
+     *
+     * @param cassette 录制或回放拦截器，传null关闭
+     * @return NetworkApi实例
+     */
+    public NetworkApi setCassette(CassetteInterceptor cassette) {
+        this.cassette = cassette;
+        return this;
+    }
+
     /**
      * 初始化OkGo并设置默认配置
      */
     private void initOkGo(Application application) {
-        OkHttpClient.Builder builder = new OkHttpClient.Builder();
+        // 后台预热Gson，许可证校验和首个接口的解析不必在主线程上创建解析器
+        Convert.warmUp(LicenseInfo.class);
 
-        // Logging interceptor
-        HttpLoggingInterceptor loggingInterceptor = new HttpLoggingInterceptor("OkGo");
-        loggingInterceptor.setPrintLevel(HttpLoggingInterceptor.Level.BODY);
-        loggingInterceptor.setColorLevel(Level.INFO);
-//        builder.addInterceptor(loggingInterceptor);
+        // 超时、幂等重试、请求标签索引和耗时统计由 networklib-core 的 NetworkClient 统一配置
+        OkHttpClient.Builder builder = networkClient.newClientBuilder();
 
-        // Global timeout - 使用较短的超时时间用于license验证
-        builder.readTimeout(10000, TimeUnit.MILLISECONDS);
-        builder.writeTimeout(10000, TimeUnit.MILLISECONDS);
-        builder.connectTimeout(10000, TimeUnit.MILLISECONDS);
+        // Logging interceptor，默认采样率为0（关闭），通过getLoggingInterceptor()按需开启
+        builder.addInterceptor(loggingInterceptor);
+
+        // 录制/回放位于拦截器链末尾，日志仍能看到回放的响应；只在可调试构建中安装
+        if (cassette != null) {
+            if ((application.getApplicationInfo().flags & ApplicationInfo.FLAG_DEBUGGABLE) != 0) {
+                builder.addInterceptor(cassette);
+            } else {
+                Log.w("NetworkApi", "Cassette ignored in non-debuggable build");
+            }
+        }
 
         // Cookie management
         builder.cookieJar(new CookieJarImpl(new SPCookieStore(application)));
 
+        // 持久化TLS会话需显式开启：系统的SocketFactory会提前握手，ALPN和ConnectionSpec随之失效
+        SSLSessionCache sessionCache = tlsSessionCache;
+        if (sessionCache != null) {
+            TlsSessionCache.install(builder, sessionCache, 10000);
+        }
+
+        OkHttpClient okHttpClient = builder.build();
+        networkClient.setOkHttpClient(okHttpClient);
+
+        // 内存紧张时收缩连接池、并发和缓冲区，压力解除后逐级恢复；OkGo的数据库缓存和Cookie存储不在内存中，不做处理
+        if (memoryTrimmer != null) {
+            application.unregisterComponentCallbacks(memoryTrimmer);
+        }
+        memoryTrimmer = new MemoryTrimmer(okHttpClient, networkClient).register(loggingInterceptor);
+        application.registerComponentCallbacks(memoryTrimmer);
+
+        // 射频被其他流量（包括其他应用）唤醒时，顺带发出暂存的后台请求
+        ConnectivityManager manager = (ConnectivityManager) application.getSystemService(Context.CONNECTIVITY_SERVICE);
+        if (manager != null && connectivityManager == null) {
+            final DeferredRequestScheduler scheduler = networkClient.getDeferredScheduler();
+            manager.addDefaultNetworkActiveListener(new ConnectivityManager.OnNetworkActiveListener() {
+                @Override
+                public void onNetworkActive() {
+                    scheduler.onNetworkActive();
+                }
+            });
+        }
+        connectivityManager = manager;
         OkGo.getInstance().init(application)
-                .setOkHttpClient(builder.build())
+                .setOkHttpClient(okHttpClient)
                 .setCacheMode(CacheMode.NO_CACHE)
                 .setCacheTime(CacheEntity.CACHE_NEVER_EXPIRE)
                 .setRetryCount(1); // license验证时减少重试次数
@@ -169,10 +259,8 @@ public class NetworkApi {
 
                         @Override
                         public LicenseInfo convertResponse(Response response) throws Throwable {
-                            // 使用Gson进行JSON解析
-                            String json = response.body().string();
-                            Gson gson = new Gson();
-                            return gson.fromJson(json, LicenseInfo.class);
+                            // 使用Convert的Gson解析，LicenseInfo自带手写的解析器
+                            return Convert.fromJson(response.body().charStream(), LicenseInfo.class);
                         }
                     });
 
@@ -231,9 +319,118 @@ public class NetworkApi {
             return this;
         }
         OkGo.getInstance().setOkHttpClient(okHttpClient);
+        networkClient.setOkHttpClient(okHttpClient);
+        return this;
+    }
+
+    /**
+     * 获取与平台无关的网络客户端，与OkGo共用同一个OkHttpClient，可在后台线程中使用其阻塞API
+     *
+     * @return NetworkClient实例
+     */
+    public NetworkClient getNetworkClient() {
+        return networkClient;
+    }
+
+    /**
+     * 创建分页加载器，回调在主线程执行；需在init之后调用
+     *
+     * @param template GET请求模板，需声明返回类型
+     * @param reader   从返回值中读取条目和下一页游标
+     * @return PagedLoader实例，配置分页参数后调用load()
+     */
+    public <R, T> PagedLoader<R, T> newPagedLoader(RequestTemplate template, PagedLoader.PageReader<R, T> reader) {
+        if (!isAuthorized()) {
+            return null;
+        }
+        PagedLoader<R, T> loader = new PagedLoader<>(networkClient, template, reader).setCallbackExecutor(mainExecutor());
+        if (memoryTrimmer != null) {
+            memoryTrimmer.register(loader);
+        }
+        return loader;
+    }
+
+    /**
+     * 把任务投递到OkGo主线程Handler的Executor
+     */
+    Executor mainExecutor() {
+        final Handler delivery = OkGo.getInstance().getDelivery();
+        return new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                delivery.post(command);
+            }
+        };
+    }
+
+    /**
+     * 设置令牌管理器：请求自动携带最新令牌，过期前后台刷新，收到401时共享一次刷新并重放请求
+     *
+     * @param tokenManager 令牌管理器，传null关闭
+     * @return NetworkApi实例
+     */
+    public NetworkApi setTokenManager(TokenManager tokenManager) {
+        if (!isAuthorized()) {
+            return this;
+        }
+        networkClient.setTokenManager(tokenManager);
         return this;
     }
 
+    /**
+     * 获取日志拦截器，可调整采样比例、body上限等
+     *
+     * @return SampledLoggingInterceptor实例
+     */
+    public SampledLoggingInterceptor getLoggingInterceptor() {
+        return loggingInterceptor;
+    }
+
+    /**
+     * 获取限流器，可按主机或路由配置令牌桶，并查看排队数和等待时间
+     *
+     * @return RateLimiter实例
+     */
+    public RateLimiter getRateLimiter() {
+        return networkClient.getRateLimiter();
+    }
+
+    /**
+     * 获取压缩配置，可为主机开启请求体gzip或配置预共享字典
+     *
+     * @return CompressionInterceptor实例
+     */
+    public CompressionInterceptor getCompression() {
+        return networkClient.getCompression();
+    }
+
+    /**
+     * 获取请求链路追踪，setEnabled(true)后开始记录，export导出为Chrome Trace Event格式
+     *
+     * @return Tracer实例
+     */
+    public Tracer getTracer() {
+        return Tracer.getInstance();
+    }
+
+    /**
+     * 获取内存压力管理器，可注册自定义的 Trimmable 组件或模拟trim-memory信号；init之前为null
+     *
+     * @return MemoryTrimmer实例
+     */
+    public MemoryTrimmer getMemoryTrimmer() {
+        return memoryTrimmer;
+    }
+
+    /**
+     * 获取请求分阶段耗时统计
+     *
+     * @return RequestMetrics实例
+     */
+    public RequestMetrics getMetrics() {
+        return RequestMetrics.getInstance();
+    }
+
     /**
      * 获取OkHttpClient
      *
@@ -293,6 +490,7 @@ public class NetworkApi {
             return this;
         }
         OkGo.getInstance().setRetryCount(retryCount);
+        networkClient.getIdempotencyInterceptor().setMaxRetries(retryCount);
         return this;
     }
 
@@ -397,6 +595,14 @@ public class NetworkApi {
             return this;
         }
         OkGo.getInstance().addCommonHeaders(commonHeaders);
+        HttpHeaders merged = OkGo.getInstance().getCommonHeaders();
+        Headers.Builder builder = new Headers.Builder();
+        if (merged != null && merged.headersMap != null) {
+            for (Map.Entry<String, String> entry : merged.headersMap.entrySet()) {
+                builder.add(entry.getKey(), entry.getValue());
+            }
+        }
+        this.commonHeaders = builder.build();
         return this;
     }
 
@@ -539,16 +745,183 @@ public class NetworkApi {
      */
     public <T> Request<T, ? extends Request> postJson(String url, String jsonBody,
                                                       JsonCallback<T> callback, Object tag) {
+        return postJson(url, jsonBody, IdempotencyInterceptor.newKey(), callback, tag);
+    }
+
+    /**
+     * POST请求 - 使用JSON格式，携带幂等键
+     * 同一个幂等键在超时重试和离线重放时保持不变，服务端据此去重，避免重复写入
+     *
+     * @param url            请求地址
+     * @param jsonBody       JSON请求体
+     * @param idempotencyKey 幂等键，离线重放时传入首次提交时持久化的key
+     * @param callback       回调
+     * @param tag            请求标签（用于取消请求）
+     * @param <T>            响应数据类型
+     * @return Request对象，可用于进一步配置
+     */
+    public <T> Request<T, ? extends Request> postJson(String url, String jsonBody, String idempotencyKey,
+                                                      JsonCallback<T> callback, Object tag) {
         if (!isAuthorized()) {
             return null;
         }
+        // 重试交给IdempotencyInterceptor在同一个key下完成，避免与OkGo的重试叠加
         Request<T, ? extends Request> request = OkGo.<T>post(url)
                 .tag(tag)
+                .headers(IdempotencyInterceptor.HEADER, idempotencyKey)
+                .retryCount(0)
                 .upJson(jsonBody);
-        request.execute(callback);
+        dispatch(request, callback);
         return request;
     }
 
+    /**
+     * 执行OkGo请求，上传进度经 {@link ProgressCoalescer} 在IO线程合并后再投递到 callback.uploadProgress；
+     * 表单文件上传、upFile等带进度的请求应通过这里执行，而不是直接调用 request.execute(callback)
+     *
+     * @param request  OkGo请求，如 NetworkApi.post(url).params("file", file)
+     * @param callback 回调
+     * @param <T>      响应数据类型
+     */
+    public static <T> void execute(Request<T, ? extends Request> request, com.lzy.okgo.callback.Callback<T> callback) {
+        if (!isAuthorized()) {
+            return;
+        }
+        ProgressCoalescer.bindUpload(request, callback);
+        getInstance().dispatch(request, callback);
+    }
+
+    /**
+     * 经限流器在分发前取得令牌后执行OkGo请求：需要等待的请求暂存在限流队列中，不占用调度器的并发名额，
+     * 某条路由被限流时不会拖住同一主机的其他路由；暂存期间可按tag取消，取消后不回调，onStart在真正发出时才回调
+     */
+    private <T> void dispatch(final Request<T, ? extends Request> request,
+                              final com.lzy.okgo.callback.Callback<T> callback) {
+        RateLimiter limiter = networkClient.getRateLimiter();
+        HttpUrl url = HttpUrl.parse(request.getUrl());
+        // 通过setOkHttpClient替换了不带限流的client时直接发出，避免凭证请求头发到服务端
+        if (url == null || !OkGo.getInstance().getOkHttpClient().interceptors().contains(limiter)) {
+            request.execute(callback);
+            return;
+        }
+        limiter.admit(String.valueOf(request.getMethod()), url, request.getTag(), new RateLimiter.Dispatch() {
+            @Override
+            public void dispatch(String admission) {
+                if (admission != null) {
+                    request.headers(RateLimiter.ADMISSION_HEADER, admission);
+                }
+                request.execute(callback);
+            }
+        });
+    }
+
+    /**
+     * 发送由 {@link RequestTemplate} 生成的请求
+     * 请求直接交给OkHttp执行，不再经过OkGo的请求构建：地址和静态请求头已在模板中解析好，这里只追加公共请求头和令牌；
+     * 回调在子线程调用 convertResponse，在主线程依次调用 onSuccess/onError 和 onFinish，不会调用 onStart，
+     * 也不经过OkGo的缓存和重试（写请求的重试由 IdempotencyInterceptor 负责）。请求被取消后不再回调
+     *
+     * @param request  模板生成的请求，标签用于取消请求
+     * @param callback 回调
+     * @param <T>      响应数据类型
+     * @return OkHttp的Call对象
+     */
+    public <T> Call enqueue(okhttp3.Request request, final JsonCallback<T> callback) {
+        if (!isAuthorized()) {
+            return null;
+        }
+        return networkClient.enqueue(prepare(request, callback), newCallback(callback));
+    }
+
+    /**
+     * 发送可延后的后台请求，如统计上报、行程事件上传、预取
+     * 请求先暂存，等射频被交互请求或其他应用唤醒时一起发出，最晚在maxDelayMs后发出；回调规则同 {@link #enqueue(okhttp3.Request, JsonCallback)}
+     *
+     * @param request    请求，标签用于取消请求（暂存中的请求同样可以通过cancelTag取消）
+     * @param maxDelayMs 最多延后的毫秒数
+     * @param callback   回调
+     * @param <T>        响应数据类型
+     */
+    public <T> void enqueueDeferred(okhttp3.Request request, long maxDelayMs, JsonCallback<T> callback) {
+        if (!isAuthorized()) {
+            return;
+        }
+        DeferredRequestScheduler scheduler = networkClient.getDeferredScheduler();
+        scheduler.enqueue(prepare(request, callback), maxDelayMs, newCallback(callback));
+        ConnectivityManager manager = connectivityManager;
+        if (manager != null && manager.isDefaultNetworkActive()) {
+            scheduler.onNetworkActive();
+        }
+    }
+
+    /**
+     * 获取可延后请求的调度器，可调整激活窗口、查看批量发出的统计
+     *
+     * @return DeferredRequestScheduler实例
+     */
+    public DeferredRequestScheduler getDeferredScheduler() {
+        return networkClient.getDeferredScheduler();
+    }
+
+    /**
+     * 追加公共请求头和令牌
+     */
+    private <T> okhttp3.Request prepare(okhttp3.Request request, JsonCallback<T> callback) {
+        Headers common = commonHeaders;
+        if (common.size() > 0) {
+            okhttp3.Request.Builder builder = request.newBuilder();
+            for (int i = 0; i < common.size(); i++) {
+                if (request.header(common.name(i)) == null) {
+                    builder.addHeader(common.name(i), common.value(i));
+                }
+            }
+            request = builder.build();
+        }
+        return callback.authorize(request);
+    }
+
+    private <T> Callback newCallback(final JsonCallback<T> callback) {
+        return new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                deliver(callback, call, com.lzy.okgo.model.Response.<T>error(false, call, null, e));
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) {
+                com.lzy.okgo.model.Response<T> result;
+                try {
+                    if (!response.isSuccessful()) {
+                        throw new HttpStatusException(response.code(), response.message());
+                    }
+                    result = com.lzy.okgo.model.Response.success(false, callback.convertResponse(response), call, response);
+                } catch (Throwable t) {
+                    result = com.lzy.okgo.model.Response.error(false, call, response, t);
+                } finally {
+                    response.close();
+                }
+                deliver(callback, call, result);
+            }
+        };
+    }
+
+    private <T> void deliver(final JsonCallback<T> callback, final Call call,
+                             final com.lzy.okgo.model.Response<T> result) {
+        if (call.isCanceled()) return;
+        OkGo.getInstance().getDelivery().post(new Runnable() {
+            @Override
+            public void run() {
+                if (call.isCanceled()) return;
+                if (result.isSuccessful()) {
+                    callback.onSuccess(result);
+                } else {
+                    callback.onError(result);
+                }
+                callback.onFinish();
+            }
+        });
+    }
+
     /**
      * POST请求 - 使用参数（兼容旧版本）
      *
@@ -567,7 +940,7 @@ public class NetworkApi {
         Request<T, ? extends Request> request = OkGo.<T>post(url)
                 .tag(tag)
                 .params(params);
-        request.execute(callback);
+        dispatch(request, callback);
         return request;
     }
 
@@ -592,10 +965,74 @@ public class NetworkApi {
                 request.params(entry.getKey(), entry.getValue());
             }
         }
+        dispatch(request, callback);
+        return request;
+    }
+
+    /**
+     * 流式GET请求 - 适用于 text/event-stream 或 NDJSON 长连接推送
+     * 不设读取超时、不重试、不缓存，事件通过回调逐个投递
+     *
+     * @param url      请求地址
+     * @param params   请求参数
+     * @param callback 流式回调，可复用同一个回调实现 Last-Event-ID 续传
+     * @param tag      请求标签（用于取消请求）
+     * @param <T>      事件数据类型
+     * @return Request对象，可用于进一步配置
+     */
+    public <T> Request<Void, ? extends Request> stream(String url, Map<String, String> params,
+                                                       StreamCallback<T> callback, Object tag) {
+        if (!isAuthorized()) {
+            return null;
+        }
+        // 派生的client共享连接池和调度器，仍可通过cancelTag取消；记录Call使按tag取消同样以onSuccess结束
+        OkHttpClient streamClient = OkGo.getInstance().getOkHttpClient().newBuilder()
+                .readTimeout(0, TimeUnit.MILLISECONDS)
+                .addInterceptor(callback.getCallTracker())
+                .build();
+        Request<Void, ? extends Request> request = OkGo.<Void>get(url)
+                .tag(tag)
+                .client(streamClient)
+                .retryCount(0)
+                .cacheMode(CacheMode.NO_CACHE);
+        if (params != null && !params.isEmpty()) {
+            for (Map.Entry<String, String> entry : params.entrySet()) {
+                request.params(entry.getKey(), entry.getValue());
+            }
+        }
         request.execute(callback);
         return request;
     }
 
+    /**
+     * 多分段并行断点下载
+     * 服务端支持Range时按字节区间并行下载，否则退回okserver的单连接下载
+     *
+     * @param url  下载地址
+     * @param file 保存的目标文件
+     * @return SegmentDownloadTask对象，配置后调用start()开始下载
+     */
+    public SegmentDownloadTask download(String url, File file) {
+        if (!isAuthorized()) {
+            return null;
+        }
+        return new SegmentDownloadTask(url, file);
+    }
+
+    /**
+     * 分块并行断点上传
+     *
+     * @param url  上传地址
+     * @param file 待上传的文件
+     * @return ChunkedUploadTask对象，配置后调用start()开始上传
+     */
+    public ChunkedUploadTask upload(String url, File file) {
+        if (!isAuthorized()) {
+            return null;
+        }
+        return new ChunkedUploadTask(url, file);
+    }
+
     // ==================== 请求取消方法 ====================
 
     /**
@@ -607,7 +1044,44 @@ public class NetworkApi {
         if (!isAuthorized()) {
             return;
         }
-        OkGo.getInstance().cancelTag(tag);
+        OkHttpClient client = OkGo.getInstance().getOkHttpClient();
+        if (client.eventListenerFactory() == networkClient.getEventListenerFactory()) {
+            // 只处理该tag下的请求，无需遍历调度器
+            networkClient.cancel(tag);
+        } else {
+            // 通过setOkHttpClient替换了不带索引的client，退回OkGo的遍历方式
+            OkGo.getInstance().cancelTag(tag);
+        }
+    }
+
+    /**
+     * 绑定页面生命周期，页面销毁时自动取消以该页面为tag的请求（需在主线程调用）
+     *
+     * @param owner Activity或Fragment等LifecycleOwner，同时作为请求标签
+     */
+    public void bindLifecycle(LifecycleOwner owner) {
+        bindLifecycle(owner, owner);
+    }
+
+    /**
+     * 绑定页面生命周期，页面销毁时自动取消指定tag的请求（需在主线程调用）
+     *
+     * @param owner Activity或Fragment等LifecycleOwner
+     * @param tag   请求标签
+     */
+    public void bindLifecycle(LifecycleOwner owner, final Object tag) {
+        if (!isAuthorized()) {
+            return;
+        }
+        owner.getLifecycle().addObserver(new LifecycleEventObserver() {
+            @Override
+            public void onStateChanged(LifecycleOwner source, Lifecycle.Event event) {
+                if (event == Lifecycle.Event.ON_DESTROY) {
+                    source.getLifecycle().removeObserver(this);
+                    cancelTag(tag);
+                }
+            }
+        });
     }
 
     /**
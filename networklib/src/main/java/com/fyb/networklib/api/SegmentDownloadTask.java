@@ -0,0 +1,790 @@
+package com.fyb.networklib.api;
+
+import android.util.Log;
+
+import com.fyb.networklib.util.Convert;
+import com.fyb.networklib.util.ProgressCoalescer;
+import com.lzy.okgo.OkGo;
+import com.lzy.okgo.model.Progress;
+import com.lzy.okserver.OkDownload;
+import com.lzy.okserver.download.DownloadListener;
+import com.lzy.okserver.download.DownloadTask;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import okhttp3.Call;
+import okhttp3.Response;
+import okio.BufferedSource;
+
+/**
+ * 多分段并行断点下载任务
+ * 先用 Range: bytes=0-0 探测服务端是否支持分段，
+ * 支持时将文件切成多个字节区间并行下载，通过 FileChannel 按位置写入预分配好的文件；
+ * 每个分段的进度保存在 "文件名.seg" 中，中断后从各分段的断点继续；
+ * 空闲的分段线程会把剩余最多的分段一分为二接着下载，分段数随各连接的实际速度自适应；
+ * 服务端不支持Range时退回okserver的 DownloadTask 单连接下载，设置了校验时校验通过才回调完成
+ *
+ * 分段任务运行在独立的线程池上：okserver的 XExecutor 使用优先级队列，只接受其 PriorityRunnable，
+ * 直接提交普通Runnable会在排队时抛出 ClassCastException；线程数取okserver下载线程池的核心线程数
+ *
+ * 回调与okserver一致，使用 DownloadListener，在主线程执行
+ */
+public class SegmentDownloadTask {
+
+    private static final String TAG = "SegmentDownloadTask";
+
+    private static final long MIN_SEGMENT_SIZE = 1024 * 1024;
+    private static final long MIN_SPLIT_SIZE = 512 * 1024;
+    private static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+    private static final int SEGMENT_RETRY = 3;
+    private static final long SAVE_INTERVAL_MS = 1000;
+    private static final long MAP_WINDOW = 64 * 1024 * 1024;
+    private static final String STATE_SUFFIX = ".seg";
+
+    /** 每个分段读取时使用的直接缓冲区大小，内存紧张时由 MemoryTrimmer 调小 */
+    private static volatile int bufferSize = DEFAULT_BUFFER_SIZE;
+
+    private static volatile ThreadPoolExecutor sExecutor;
+
+    private final String url;
+    private final File file;
+    private final File stateFile;
+    private final List<DownloadListener> listeners = new CopyOnWriteArrayList<>();
+    private final Set<Call> calls = Collections.synchronizedSet(new HashSet<Call>());
+    private final AtomicInteger activeWorkers = new AtomicInteger();
+    private final Progress progress = new Progress();
+
+    private Object tag;
+    private int maxSegments;
+    private String checksumAlgorithm;
+    private String checksum;
+
+    private volatile boolean running;
+    private volatile boolean paused;
+    private volatile Throwable failure;
+    /** 运行中被删除，由最后一个退出的分段线程清理文件 */
+    private boolean removed;
+    private State state;
+    private RandomAccessFile randomAccessFile;
+    private FileChannel channel;
+    private DownloadTask fallbackTask;
+    private ProgressCoalescer coalescer;
+    private long lastSaveTime;
+
+    /**
+     * 设置之后开始的分段使用的读缓冲区大小，传0恢复默认的64KB
+     */
+    public static void setBufferSize(int size) {
+        bufferSize = size > 0 ? size : DEFAULT_BUFFER_SIZE;
+    }
+
+    public static int getBufferSize() {
+        return bufferSize;
+    }
+
+    public SegmentDownloadTask(String url, File file) {
+        this.url = url;
+        this.file = file;
+        this.stateFile = new File(file.getPath() + STATE_SUFFIX);
+        progress.tag = file.getAbsolutePath();
+        progress.url = url;
+        progress.folder = file.getParent();
+        progress.fileName = file.getName();
+        progress.filePath = file.getAbsolutePath();
+        progress.status = Progress.NONE;
+    }
+
+    /**
+     * 设置请求标签，可通过 NetworkApi.cancelTag 中断下载（等同于暂停）
+     */
+    public SegmentDownloadTask tag(Object tag) {
+        this.tag = tag;
+        return this;
+    }
+
+    /**
+     * 设置最大并行分段数，默认为okserver下载线程池的核心线程数
+     */
+    public SegmentDownloadTask maxSegments(int maxSegments) {
+        this.maxSegments = maxSegments;
+        return this;
+    }
+
+    /**
+     * 设置下载完成后的文件校验
+     *
+     * @param algorithm MessageDigest算法名，如 "MD5"、"SHA-256"
+     * @param hex       期望的十六进制摘要
+     */
+    public SegmentDownloadTask checksum(String algorithm, String hex) {
+        this.checksumAlgorithm = algorithm;
+        this.checksum = hex;
+        return this;
+    }
+
+    public SegmentDownloadTask register(DownloadListener listener) {
+        listeners.add(listener);
+        return this;
+    }
+
+    public void unRegister(DownloadListener listener) {
+        listeners.remove(listener);
+    }
+
+    public Progress getProgress() {
+        return progress;
+    }
+
+    /**
+     * 开始或继续下载
+     */
+    public synchronized void start() {
+        if (running) return;
+        running = true;
+        paused = false;
+        removed = false;
+        failure = null;
+        executor().execute(new Runnable() {
+            @Override
+            public void run() {
+                prepare();
+            }
+        });
+    }
+
+    /**
+     * 暂停下载，已下载的分段进度会保存，再次start()时继续
+     */
+    public synchronized void pause() {
+        if (fallbackTask != null) {
+            fallbackTask.pause();
+            return;
+        }
+        paused = true;
+        cancelCalls();
+    }
+
+    /**
+     * 删除任务，同时删除已下载的文件和进度记录
+     * 分段线程仍在运行时只标记删除并取消请求，等最后一个线程退出后再关闭文件、删除记录
+     */
+    public synchronized void remove() {
+        if (fallbackTask != null) {
+            // 单连接下载自行删除文件，onRemove经转发监听回调
+            fallbackTask.remove(true);
+            fallbackTask = null;
+            return;
+        }
+        if (running) {
+            removed = true;
+            paused = true;
+            cancelCalls();
+            return;
+        }
+        executor().execute(new Runnable() {
+            @Override
+            public void run() {
+                synchronized (SegmentDownloadTask.this) {
+                    deleteFiles();
+                }
+                postRemove();
+            }
+        });
+    }
+
+    private static ThreadPoolExecutor executor() {
+        if (sExecutor == null) {
+            synchronized (SegmentDownloadTask.class) {
+                if (sExecutor == null) {
+                    int threads = Math.max(1, OkDownload.getInstance().getThreadPool().getExecutor().getCorePoolSize());
+                    ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                            new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                        private final AtomicInteger count = new AtomicInteger();
+
+                        @Override
+                        public Thread newThread(Runnable runnable) {
+                            return new Thread(runnable, "OkNet-Segment-" + count.incrementAndGet());
+                        }
+                    });
+                    executor.allowCoreThreadTimeOut(true);
+                    sExecutor = executor;
+                }
+            }
+        }
+        return sExecutor;
+    }
+
+    private void prepare() {
+        try {
+            long total;
+            String validator;
+            Response response = newCall(0, 0).execute();
+            try {
+                String contentRange = response.header("Content-Range");
+                int slash = contentRange == null ? -1 : contentRange.lastIndexOf('/');
+                total = slash < 0 ? -1 : parseLong(contentRange.substring(slash + 1));
+                if (response.code() != 206 || total <= 0) {
+                    if (paused) {
+                        // 探测期间被暂停或删除，按普通的线程退出处理
+                        activeWorkers.set(1);
+                        onWorkerExit();
+                    } else {
+                        startFallback();
+                    }
+                    return;
+                }
+                validator = response.header("ETag");
+                if (validator == null) validator = response.header("Last-Modified");
+            } finally {
+                response.close();
+            }
+
+            synchronized (this) {
+                state = loadState(total, validator);
+                if (state == null) {
+                    state = plan(total, validator);
+                }
+                randomAccessFile = new RandomAccessFile(file, "rw");
+                if (randomAccessFile.length() != total) {
+                    // 预分配完整文件，各分段按位置写入
+                    randomAccessFile.setLength(total);
+                }
+                channel = randomAccessFile.getChannel();
+            }
+            saveState();
+
+            progress.totalSize = total;
+            progress.status = Progress.LOADING;
+            coalescer = new ProgressCoalescer();
+            coalescer.update(state.downloaded(), total);
+            coalescer.fill(progress);
+            post(new Event() {
+                @Override
+                void call(DownloadListener listener) {
+                    listener.onStart(progress);
+                }
+            });
+
+            List<Segment> pending = new ArrayList<>();
+            for (Segment segment : state.segments) {
+                if (segment.remaining() > 0) pending.add(segment);
+            }
+            if (pending.isEmpty()) {
+                activeWorkers.set(1);
+                onWorkerExit();
+                return;
+            }
+            activeWorkers.set(pending.size());
+            for (Segment segment : pending) {
+                executor().execute(new Worker(segment));
+            }
+        } catch (Throwable e) {
+            failure = e;
+            activeWorkers.set(1);
+            onWorkerExit();
+        }
+    }
+
+    private State plan(long total, String validator) {
+        int limit = maxSegments > 0 ? maxSegments : Math.max(1, executor().getCorePoolSize());
+        int count = (int) Math.max(1, Math.min(limit, total / MIN_SEGMENT_SIZE));
+        State newState = new State();
+        newState.url = url;
+        newState.total = total;
+        newState.validator = validator;
+        newState.segments = new CopyOnWriteArrayList<>();
+        long size = total / count;
+        for (int i = 0; i < count; i++) {
+            long start = i * size;
+            long end = i == count - 1 ? total - 1 : start + size - 1;
+            newState.segments.add(new Segment(start, end));
+        }
+        Log.i(TAG, "Download " + url + " in " + count + " segments, size " + total);
+        return newState;
+    }
+
+    private State loadState(long total, String validator) {
+        if (!stateFile.exists() || !file.exists() || file.length() != total) return null;
+        try (Reader reader = new FileReader(stateFile)) {
+            State saved = Convert.fromJson(reader, State.class);
+            if (saved == null || saved.segments == null || saved.total != total || !url.equals(saved.url)) {
+                return null;
+            }
+            // 服务端文件已变化，不能拼接旧内容
+            if (validator != null ? !validator.equals(saved.validator) : saved.validator != null) {
+                return null;
+            }
+            saved.segments = new CopyOnWriteArrayList<>(saved.segments);
+            return saved;
+        } catch (Exception e) {
+            Log.w(TAG, "Segment state unreadable, restart download: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private void saveState() {
+        State current = state;
+        if (current == null) return;
+        synchronized (current) {
+            try (Writer writer = new FileWriter(stateFile)) {
+                writer.write(Convert.toJson(current));
+            } catch (IOException e) {
+                Log.w(TAG, "Segment state save failed: " + e.getMessage());
+            }
+        }
+    }
+
+    private Call newCall(long start, long end) {
+        return OkGo.<File>get(url)
+                .tag(tag)
+                .headers("Range", "bytes=" + start + "-" + end)
+                .getRawCall();
+    }
+
+    /**
+     * 下载一个分段，连接异常时从该分段的断点重试
+     */
+    private void download(Segment segment) throws IOException {
+        int attempt = 0;
+        while (segment.remaining() > 0 && !paused && failure == null) {
+            try {
+                transfer(segment);
+            } catch (IOException e) {
+                if (paused) return;
+                if (++attempt > SEGMENT_RETRY) throw e;
+                Log.w(TAG, "Segment " + segment.position + "-" + segment.end + " retry " + attempt + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private void transfer(Segment segment) throws IOException {
+        Call call = newCall(segment.position, segment.end);
+        calls.add(call);
+        try {
+            if (paused) call.cancel();
+            Response response = call.execute();
+            try {
+                if (response.code() != 206) {
+                    throw new IOException("Range request failed: HTTP " + response.code());
+                }
+                BufferedSource source = response.body().source();
+                ByteBuffer buffer = ByteBuffer.allocateDirect(bufferSize);
+                while (!paused) {
+                    // 分段可能被其他线程拆分，每次读取前重新计算剩余长度
+                    long remaining = segment.remaining();
+                    if (remaining <= 0) return;
+                    buffer.clear();
+                    if (remaining < buffer.capacity()) buffer.limit((int) remaining);
+                    if (source.read(buffer) == -1) {
+                        throw new IOException("Unexpected end of segment at " + segment.position);
+                    }
+                    buffer.flip();
+                    while (buffer.hasRemaining()) {
+                        segment.position += channel.write(buffer, segment.position);
+                    }
+                    onProgress();
+                }
+            } finally {
+                response.close();
+            }
+        } finally {
+            calls.remove(call);
+        }
+    }
+
+    /**
+     * 把剩余最多的分段一分为二，后半段交给当前空闲线程
+     */
+    private Segment steal() {
+        synchronized (state) {
+            Segment largest = null;
+            for (Segment segment : state.segments) {
+                if (largest == null || segment.remaining() > largest.remaining()) largest = segment;
+            }
+            if (largest == null || largest.remaining() < 2 * MIN_SPLIT_SIZE) return null;
+            long start = largest.position + largest.remaining() / 2;
+            Segment split = new Segment(start, largest.end);
+            largest.end = start - 1;
+            state.segments.add(split);
+            return split;
+        }
+    }
+
+    private void onProgress() {
+        if (!coalescer.update(state.downloaded(), progress.totalSize)) return;
+        long now = System.currentTimeMillis();
+        if (now - lastSaveTime >= SAVE_INTERVAL_MS) {
+            lastSaveTime = now;
+            saveState();
+        }
+        // 主线程还没处理上一条进度时不再追加消息
+        coalescer.post(OkGo.getInstance().getDelivery(), new Runnable() {
+            @Override
+            public void run() {
+                coalescer.fill(progress);
+                for (DownloadListener listener : listeners) {
+                    listener.onProgress(progress);
+                }
+            }
+        });
+    }
+
+    /**
+     * 预计剩余时间（毫秒），未知时返回-1
+     */
+    public long getEtaMillis() {
+        ProgressCoalescer current = coalescer;
+        return current == null ? -1 : current.getEtaMillis();
+    }
+
+    private void onWorkerExit() {
+        if (activeWorkers.decrementAndGet() != 0) return;
+        synchronized (this) {
+            closeChannel();
+            if (!removed && (failure != null || paused)) {
+                saveState();
+            }
+        }
+        if (failure != null) {
+            if (stopRunning()) return;
+            progress.status = Progress.ERROR;
+            progress.exception = failure;
+            post(new Event() {
+                @Override
+                void call(DownloadListener listener) {
+                    listener.onError(progress);
+                }
+            });
+            return;
+        }
+        if (paused) {
+            if (stopRunning()) return;
+            progress.status = Progress.PAUSE;
+            post(new Event() {
+                @Override
+                void call(DownloadListener listener) {
+                    listener.onProgress(progress);
+                }
+            });
+            return;
+        }
+        stateFile.delete();
+        complete();
+    }
+
+    private void complete() {
+        try {
+            if (checksum != null && !checksum.equalsIgnoreCase(digest(file, checksumAlgorithm))) {
+                // 内容损坏时不能续传，清理后由调用方重新下载
+                file.delete();
+                stateFile.delete();
+                throw new IOException("Checksum mismatch: " + file.getName());
+            }
+            progress.currentSize = progress.totalSize;
+            progress.fraction = 1.0f;
+            if (stopRunning()) return;
+            progress.status = Progress.FINISH;
+            post(new Event() {
+                @Override
+                void call(DownloadListener listener) {
+                    listener.onFinish(file, progress);
+                }
+            });
+        } catch (Exception e) {
+            if (stopRunning()) return;
+            progress.status = Progress.ERROR;
+            progress.exception = e;
+            post(new Event() {
+                @Override
+                void call(DownloadListener listener) {
+                    listener.onError(progress);
+                }
+            });
+        }
+    }
+
+    /**
+     * 服务端不支持Range，退回okserver的单连接下载
+     */
+    private void startFallback() {
+        Log.i(TAG, "Range not supported, fallback to DownloadTask: " + url);
+        stateFile.delete();
+        DownloadTask task = OkDownload.request(file.getAbsolutePath(), OkGo.<File>get(url).tag(tag))
+                .folder(file.getParent())
+                .fileName(file.getName())
+                .save();
+        // 只注册一个转发监听，完成回调在校验通过后才转发给调用方
+        task.unRegister(TAG);
+        task.register(new DownloadListener(TAG) {
+            @Override
+            public void onStart(final Progress progress) {
+                post(new Event() {
+                    @Override
+                    void call(DownloadListener listener) {
+                        listener.onStart(progress);
+                    }
+                });
+            }
+
+            @Override
+            public void onProgress(final Progress progress) {
+                post(new Event() {
+                    @Override
+                    void call(DownloadListener listener) {
+                        listener.onProgress(progress);
+                    }
+                });
+            }
+
+            @Override
+            public void onError(final Progress progress) {
+                post(new Event() {
+                    @Override
+                    void call(DownloadListener listener) {
+                        listener.onError(progress);
+                    }
+                });
+            }
+
+            @Override
+            public void onFinish(final File downloaded, final Progress progress) {
+                if (checksum == null) {
+                    post(new Event() {
+                        @Override
+                        void call(DownloadListener listener) {
+                            listener.onFinish(downloaded, progress);
+                        }
+                    });
+                    return;
+                }
+                // 摘要计算放到后台线程，不一致时删除文件并按失败回调
+                executor().execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        Exception error;
+                        try {
+                            error = checksum.equalsIgnoreCase(digest(downloaded, checksumAlgorithm))
+                                    ? null : new IOException("Checksum mismatch: " + downloaded.getName());
+                        } catch (Exception e) {
+                            error = e;
+                        }
+                        if (error == null) {
+                            post(new Event() {
+                                @Override
+                                void call(DownloadListener listener) {
+                                    listener.onFinish(downloaded, progress);
+                                }
+                            });
+                            return;
+                        }
+                        Log.e(TAG, "Fallback download failed verification: " + error.getMessage());
+                        downloaded.delete();
+                        progress.status = Progress.ERROR;
+                        progress.exception = error;
+                        post(new Event() {
+                            @Override
+                            void call(DownloadListener listener) {
+                                listener.onError(progress);
+                            }
+                        });
+                    }
+                });
+            }
+
+            @Override
+            public void onRemove(final Progress progress) {
+                post(new Event() {
+                    @Override
+                    void call(DownloadListener listener) {
+                        listener.onRemove(progress);
+                    }
+                });
+            }
+        });
+        synchronized (this) {
+            fallbackTask = task;
+            running = false;
+        }
+        task.start();
+    }
+
+    private void cancelCalls() {
+        List<Call> snapshot;
+        synchronized (calls) {
+            snapshot = new ArrayList<>(calls);
+        }
+        for (Call call : snapshot) {
+            call.cancel();
+        }
+    }
+
+    /**
+     * 结束本次运行；运行期间被 {@link #remove()} 的任务在这里删除文件并回调onRemove
+     *
+     * @return 任务是否已被删除
+     */
+    private boolean stopRunning() {
+        synchronized (this) {
+            running = false;
+            if (!removed) return false;
+            deleteFiles();
+        }
+        postRemove();
+        return true;
+    }
+
+    /**
+     * 关闭文件并删除文件和进度记录，调用方持有锁
+     */
+    private void deleteFiles() {
+        closeChannel();
+        stateFile.delete();
+        file.delete();
+    }
+
+    private void postRemove() {
+        progress.status = Progress.NONE;
+        post(new Event() {
+            @Override
+            void call(DownloadListener listener) {
+                listener.onRemove(progress);
+            }
+        });
+    }
+
+    private void closeChannel() {
+        try {
+            if (randomAccessFile != null) randomAccessFile.close();
+        } catch (IOException ignored) {
+        }
+        randomAccessFile = null;
+        channel = null;
+    }
+
+    private void post(final Event event) {
+        OkGo.getInstance().getDelivery().post(new Runnable() {
+            @Override
+            public void run() {
+                for (DownloadListener listener : listeners) {
+                    event.call(listener);
+                }
+            }
+        });
+    }
+
+    /**
+     * 通过内存映射分块读取文件计算摘要
+     */
+    static String digest(File file, String algorithm) throws Exception {
+        MessageDigest md = MessageDigest.getInstance(algorithm);
+        try (FileInputStream in = new FileInputStream(file)) {
+            FileChannel fileChannel = in.getChannel();
+            long size = fileChannel.size();
+            for (long position = 0; position < size; position += MAP_WINDOW) {
+                MappedByteBuffer mapped = fileChannel.map(FileChannel.MapMode.READ_ONLY,
+                        position, Math.min(MAP_WINDOW, size - position));
+                md.update(mapped);
+            }
+        }
+        StringBuilder sb = new StringBuilder();
+        for (byte b : md.digest()) {
+            sb.append(String.format("%02x", b));
+        }
+        return sb.toString();
+    }
+
+    private static long parseLong(String value) {
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private class Worker implements Runnable {
+        private final Segment initial;
+
+        Worker(Segment initial) {
+            this.initial = initial;
+        }
+
+        @Override
+        public void run() {
+            try {
+                Segment segment = initial;
+                while (segment != null && !paused && failure == null) {
+                    download(segment);
+                    segment = paused ? null : steal();
+                }
+            } catch (Throwable e) {
+                if (failure == null) failure = e;
+                cancelCalls();
+            } finally {
+                onWorkerExit();
+            }
+        }
+    }
+
+    private abstract static class Event {
+        abstract void call(DownloadListener listener);
+    }
+
+    /**
+     * 断点续传记录
+     */
+    static class State {
+        String url;
+        long total;
+        String validator;
+        List<Segment> segments;
+
+        long downloaded() {
+            long sum = 0;
+            for (Segment segment : segments) {
+                sum += Math.min(segment.position, segment.end + 1) - segment.start;
+            }
+            return sum;
+        }
+    }
+
+    /**
+     * 分段区间 [start, end]，position为下一个待写入的位置
+     */
+    static class Segment {
+        long start;
+        volatile long end;
+        volatile long position;
+
+        Segment(long start, long end) {
+            this.start = start;
+            this.end = end;
+            this.position = start;
+        }
+
+        long remaining() {
+            return end - position + 1;
+        }
+    }
+}
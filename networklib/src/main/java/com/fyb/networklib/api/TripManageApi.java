@@ -1,8 +1,13 @@
 package com.fyb.networklib.api;
 
 import com.fyb.networklib.util.Convert;
+import com.fyb.networklib.util.EndpointPool;
 import com.fyb.networklib.data.BaseEntity;
+import com.fyb.networklib.util.IdempotencyInterceptor;
 import com.fyb.networklib.util.JsonCallback;
+import com.fyb.networklib.util.SyncStore;
+
+import java.io.File;
 
 /**
  * 行程管理API封装类
@@ -12,10 +17,24 @@ public class TripManageApi {
     
     private NetworkApi networkApi;
     private String baseUrl;
+    /** 添加行程接口，地址和请求头只解析一次 */
+    private final RequestTemplate addTemplate;
     
     public TripManageApi(NetworkApi networkApi, String baseUrl) {
         this.networkApi = networkApi;
         this.baseUrl = baseUrl;
+        this.addTemplate = RequestTemplate.post(baseUrl + "api/trip-manage/");
+    }
+
+    /**
+     * 使用地址池：请求路由到耗时最低的健康地址，连接失败时自动切换
+     *
+     * @param networkApi NetworkApi实例
+     * @param pool       等价的多个服务地址
+     */
+    public TripManageApi(NetworkApi networkApi, EndpointPool pool) {
+        this(networkApi, pool.getPrimary());
+        networkApi.getNetworkClient().addEndpointPool(pool);
     }
     
     /**
@@ -28,9 +47,8 @@ public class TripManageApi {
     public <T> void addTripManage(Object tripManageAddBean, 
                                    JsonCallback<BaseEntity<T>> callback, 
                                    Object tag) {
-        String url = baseUrl + "api/trip-manage/";
         String jsonBody = Convert.toJson(tripManageAddBean);
-        networkApi.postJson(url, jsonBody, callback, tag);
+        addTripManage(jsonBody, callback, tag);
     }
     
     /**
@@ -43,8 +61,52 @@ public class TripManageApi {
     public <T> void addTripManage(String jsonBody, 
                                    JsonCallback<BaseEntity<T>> callback, 
                                    Object tag) {
+        addTripManage(jsonBody, IdempotencyInterceptor.newKey(), callback, tag);
+    }
+
+    /**
+     * 添加行程管理（指定幂等键）
+     * 离线队列重放时传入首次提交时保存的幂等键，服务端不会重复创建行程
+     * @param jsonBody JSON请求体
+     * @param idempotencyKey 幂等键
+     * @param callback 回调
+     * @param tag 请求标签
+     * @param <T> 响应数据类型
+     */
+    public <T> void addTripManage(String jsonBody,
+                                   String idempotencyKey,
+                                   JsonCallback<BaseEntity<T>> callback,
+                                   Object tag) {
         String url = baseUrl + "api/trip-manage/";
-        networkApi.postJson(url, jsonBody, callback, tag);
+        networkApi.postJson(url, jsonBody, idempotencyKey, callback, tag);
+    }
+
+    /**
+     * 添加行程管理（模板请求）
+     * 地址和请求头只解析一次，请求直接交给OkHttp执行，适合批量提交；
+     * 不经过OkGo的请求构建、缓存和重试，不回调onStart，也不带公共参数，只带公共请求头和回调上的令牌
+     * @param jsonBody JSON请求体
+     * @param idempotencyKey 幂等键
+     * @param callback 回调
+     * @param tag 请求标签
+     * @param <T> 响应数据类型
+     */
+    public <T> void addTripManageDirect(String jsonBody,
+                                         String idempotencyKey,
+                                         JsonCallback<BaseEntity<T>> callback,
+                                         Object tag) {
+        networkApi.enqueue(addTemplate.newJsonRequest(jsonBody, idempotencyKey, tag), callback);
     }
-}
 
+    /**
+     * 创建行程增量同步，回调在主线程执行
+     * 冷启动时先调用 load() 读取本地数据展示，再调用 sync() 拉取变更
+     *
+     * @param storeFile 本地存储文件，如 new File(context.getFilesDir(), "trips.sync")
+     * @return TripSyncEngine实例，应用内对同一文件只创建一个
+     */
+    public TripSyncEngine newSync(File storeFile) {
+        return new TripSyncEngine(networkApi.getNetworkClient(), baseUrl, new SyncStore(storeFile, "id"))
+                .setCallbackExecutor(networkApi.mainExecutor());
+    }
+}
@@ -0,0 +1,375 @@
+package com.fyb.networklib.api;
+
+import android.os.Handler;
+import android.util.Log;
+
+import com.fyb.networklib.util.Convert;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.lzy.okgo.OkGo;
+
+import java.lang.reflect.Type;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.WebSocket;
+import okhttp3.WebSocketListener;
+
+/**
+ * WebSocket长连接通道
+ * 复用NetworkApi的OkHttpClient（共享连接池和调度器），在一条连接上多路复用多个主题订阅，
+ * 断线后按指数退避自动重连，并携带每个主题最后收到的序号续传，避免轮询
+ *
+ * 与服务端约定的帧格式：
+ * 订阅：{"op":"sub","topic":"trip/1001","since":12}
+ * 退订：{"op":"unsub","topic":"trip/1001"}
+ * 推送：{"topic":"trip/1001","seq":13,"data":{...}}
+ */
+public class WebSocketChannel {
+
+    private static final String TAG = "WebSocketChannel";
+
+    private static final long MIN_BACKOFF_MS = 1000;
+    private static final long MAX_BACKOFF_MS = 60000;
+    private static final long PING_INTERVAL_MS = 30000;
+    private static final int NORMAL_CLOSURE = 1000;
+
+    private static final ScheduledExecutorService SCHEDULER =
+            Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "OkNet-WebSocket");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+
+    private final NetworkApi networkApi;
+    private final String url;
+    private final Map<String, Topic> topics = new ConcurrentHashMap<>();
+    private final Random random = new Random();
+
+    private WebSocket webSocket;
+    private boolean connected;
+    private boolean started;
+    private int attempt;
+    private ScheduledFuture<?> reconnectFuture;
+
+    public WebSocketChannel(NetworkApi networkApi, String url) {
+        this.networkApi = networkApi;
+        this.url = url;
+    }
+
+    /**
+     * 建立连接，连接断开后会自动重连，直到调用close()
+     */
+    public synchronized void connect() {
+        started = true;
+        if (webSocket == null && reconnectFuture == null) {
+            open();
+        }
+    }
+
+    /**
+     * 关闭连接并停止自动重连，已有的订阅会保留，再次connect()后自动恢复
+     */
+    public synchronized void close() {
+        started = false;
+        connected = false;
+        if (reconnectFuture != null) {
+            reconnectFuture.cancel(false);
+            reconnectFuture = null;
+        }
+        if (webSocket != null) {
+            webSocket.close(NORMAL_CLOSURE, null);
+            webSocket = null;
+        }
+    }
+
+    public synchronized boolean isConnected() {
+        return connected;
+    }
+
+    /**
+     * 订阅主题
+     *
+     * @param topic    主题名称
+     * @param clazz    消息数据类型
+     * @param listener 消息回调（主线程）
+     * @param <T>      消息数据类型
+     * @return Subscription对象，用于取消订阅
+     */
+    public <T> Subscription subscribe(String topic, Class<T> clazz, MessageListener<T> listener) {
+        return subscribe(topic, (Type) clazz, listener);
+    }
+
+    /**
+     * 订阅主题
+     *
+     * @param topic    主题名称
+     * @param type     消息数据类型，支持泛型类型
+     * @param listener 消息回调（主线程）
+     * @param <T>      消息数据类型
+     * @return Subscription对象，用于取消订阅
+     */
+    public <T> Subscription subscribe(String topic, Type type, MessageListener<T> listener) {
+        Subscription subscription = new Subscription(topic, type, listener);
+        boolean first;
+        synchronized (this) {
+            Topic t = topics.get(topic);
+            first = t == null;
+            if (first) {
+                t = new Topic(topic);
+                topics.put(topic, t);
+            }
+            t.subscriptions.add(subscription);
+        }
+        if (first) {
+            sendSubscribe(topics.get(topic));
+        }
+        return subscription;
+    }
+
+    /**
+     * 获取主题最后收到的消息序号
+     *
+     * @param topic 主题名称
+     * @return 最后的序号，未收到过消息时返回-1
+     */
+    public long getLastSeq(String topic) {
+        Topic t = topics.get(topic);
+        return t == null ? -1 : t.lastSeq;
+    }
+
+    private void unsubscribe(Subscription subscription) {
+        boolean empty = false;
+        synchronized (this) {
+            Topic t = topics.get(subscription.topic);
+            if (t != null && t.subscriptions.remove(subscription) && t.subscriptions.isEmpty()) {
+                topics.remove(subscription.topic);
+                empty = true;
+            }
+        }
+        if (empty) {
+            JsonObject frame = new JsonObject();
+            frame.addProperty("op", "unsub");
+            frame.addProperty("topic", subscription.topic);
+            send(frame);
+        }
+    }
+
+    private synchronized void open() {
+        reconnectFuture = null;
+        OkHttpClient client = networkApi.getOkHttpClient();
+        if (client == null) {
+            Log.w(TAG, "NetworkApi is not authorized, WebSocket connect skipped");
+            return;
+        }
+        // 基于共享client派生，复用连接池与调度器，仅增加心跳
+        OkHttpClient socketClient = client.newBuilder()
+                .pingInterval(PING_INTERVAL_MS, TimeUnit.MILLISECONDS)
+                .build();
+        Request request = new Request.Builder().url(url).build();
+        webSocket = socketClient.newWebSocket(request, new SocketListener());
+    }
+
+    private synchronized void scheduleReconnect() {
+        if (!started || reconnectFuture != null) {
+            return;
+        }
+        // 指数退避 + 随机抖动，避免服务端恢复时所有客户端同时重连
+        long backoff = Math.min(MAX_BACKOFF_MS, MIN_BACKOFF_MS << Math.min(attempt, 16));
+        long delay = backoff / 2 + (long) (random.nextDouble() * (backoff / 2));
+        attempt++;
+        Log.i(TAG, "WebSocket reconnect in " + delay + "ms, attempt " + attempt);
+        reconnectFuture = SCHEDULER.schedule(new Runnable() {
+            @Override
+            public void run() {
+                open();
+            }
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+
+    private void sendSubscribe(Topic topic) {
+        if (topic == null) {
+            return;
+        }
+        JsonObject frame = new JsonObject();
+        frame.addProperty("op", "sub");
+        frame.addProperty("topic", topic.name);
+        if (topic.lastSeq >= 0) {
+            frame.addProperty("since", topic.lastSeq);
+        }
+        send(frame);
+    }
+
+    private void send(JsonObject frame) {
+        WebSocket socket;
+        synchronized (this) {
+            socket = connected ? webSocket : null;
+        }
+        // 未连接时不发送，连接建立后会统一重新订阅
+        if (socket != null) {
+            socket.send(frame.toString());
+        }
+    }
+
+    private void dispatch(String text) {
+        JsonObject frame;
+        try {
+            frame = Convert.fromJson(text, JsonObject.class);
+        } catch (Exception e) {
+            Log.w(TAG, "WebSocket frame parse failed: " + e.getMessage());
+            return;
+        }
+        if (frame == null || !frame.has("topic")) {
+            return;
+        }
+        Topic topic = topics.get(frame.get("topic").getAsString());
+        if (topic == null) {
+            return;
+        }
+        if (frame.has("seq")) {
+            long seq = frame.get("seq").getAsLong();
+            synchronized (topic) {
+                // 重连续传时服务端可能重复推送，按序号去重
+                if (seq <= topic.lastSeq) {
+                    return;
+                }
+                topic.lastSeq = seq;
+            }
+        }
+        JsonElement data = frame.get("data");
+        Handler delivery = OkGo.getInstance().getDelivery();
+        for (final Subscription subscription : topic.subscriptions) {
+            final Object message;
+            try {
+                message = data == null ? null : Convert.fromJson(data, subscription.type);
+            } catch (Exception e) {
+                Log.w(TAG, "WebSocket message convert failed, topic " + topic.name + ": " + e.getMessage());
+                continue;
+            }
+            delivery.post(new Runnable() {
+                @Override
+                public void run() {
+                    subscription.deliver(message);
+                }
+            });
+        }
+    }
+
+    private class SocketListener extends WebSocketListener {
+
+        @Override
+        public void onOpen(WebSocket socket, Response response) {
+            synchronized (WebSocketChannel.this) {
+                if (socket != webSocket) {
+                    return;
+                }
+                connected = true;
+                attempt = 0;
+            }
+            Log.i(TAG, "WebSocket connected: " + url);
+            for (Topic topic : topics.values()) {
+                sendSubscribe(topic);
+            }
+        }
+
+        @Override
+        public void onMessage(WebSocket socket, String text) {
+            synchronized (WebSocketChannel.this) {
+                if (socket != webSocket) {
+                    return;
+                }
+            }
+            dispatch(text);
+        }
+
+        @Override
+        public void onClosing(WebSocket socket, int code, String reason) {
+            socket.close(NORMAL_CLOSURE, null);
+        }
+
+        @Override
+        public void onClosed(WebSocket socket, int code, String reason) {
+            onDisconnected(socket);
+        }
+
+        @Override
+        public void onFailure(WebSocket socket, Throwable t, Response response) {
+            Log.w(TAG, "WebSocket failure: " + t.getMessage());
+            onDisconnected(socket);
+        }
+
+        private void onDisconnected(WebSocket socket) {
+            synchronized (WebSocketChannel.this) {
+                if (socket != webSocket) {
+                    return;
+                }
+                connected = false;
+                webSocket = null;
+            }
+            scheduleReconnect();
+        }
+    }
+
+    private static class Topic {
+        final String name;
+        final CopyOnWriteArrayList<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+        volatile long lastSeq = -1;
+
+        Topic(String name) {
+            this.name = name;
+        }
+    }
+
+    /**
+     * 订阅句柄
+     */
+    public class Subscription {
+        private final String topic;
+        private final Type type;
+        private final MessageListener listener;
+        private volatile boolean cancelled;
+
+        Subscription(String topic, Type type, MessageListener listener) {
+            this.topic = topic;
+            this.type = type;
+            this.listener = listener;
+        }
+
+        @SuppressWarnings("unchecked")
+        void deliver(Object message) {
+            if (!cancelled) {
+                listener.onMessage(topic, message);
+            }
+        }
+
+        /**
+         * 取消订阅，主题下没有订阅者时通知服务端退订
+         */
+        public void cancel() {
+            cancelled = true;
+            unsubscribe(this);
+        }
+    }
+
+    /**
+     * 主题消息回调
+     *
+     * @param <T> 消息数据类型
+     */
+    public interface MessageListener<T> {
+        void onMessage(String topic, T message);
+    }
+}
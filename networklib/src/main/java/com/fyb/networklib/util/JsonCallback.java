@@ -36,7 +36,12 @@ public abstract class JsonCallback<T> extends AbsCallback<T> {
 
     private Type type;
     private Class<T> clazz;
-    private TokenProvider tokenProvider;
+    private com.fyb.networklib.util.TokenProvider tokenProvider;
+    private volatile String route;
+    private volatile okhttp3.Request traced;
+    private volatile long convertEnd;
+    /** 创建回调时所在的追踪，请求归入该追踪 */
+    private final Tracer.Span traceParent = Tracer.getInstance().current();
 
     public JsonCallback() {
     }
@@ -49,7 +54,11 @@ public abstract class JsonCallback<T> extends AbsCallback<T> {
         this.clazz = clazz;
     }
 
-    public void setTokenProvider(TokenProvider tokenProvider) {
+    /**
+     * 设置令牌来源，可直接传入 TokenManager（不会阻塞主线程，过期时由后台刷新和401重放处理）；
+     * 通过 NetworkApi.setTokenManager 全局设置后，无需再为每个回调单独设置
+     */
+    public void setTokenProvider(com.fyb.networklib.util.TokenProvider tokenProvider) {
         this.tokenProvider = tokenProvider;
     }
 
@@ -64,9 +73,28 @@ public abstract class JsonCallback<T> extends AbsCallback<T> {
         if (tokenProvider != null) {
             String token = tokenProvider.getAccessToken();
             if (token != null && !token.isEmpty()) {
-                request.headers("Authorization", "JWT " + token);
+                request.headers(TokenManager.HEADER, TokenManager.PREFIX + token);
             }
         }
+        if (traceParent != null && Tracer.getInstance().isEnabled()) {
+            request.headers(Tracer.HEADER, traceParent.traceparent());
+        }
+    }
+
+    /**
+     * 为不经过OkGo构建的请求（如 RequestTemplate 生成的请求）补上令牌和追踪请求头，规则与 onStart 一致
+     */
+    public okhttp3.Request authorize(okhttp3.Request request) {
+        if (traceParent != null && Tracer.getInstance().isEnabled()) {
+            request = request.newBuilder().header(Tracer.HEADER, traceParent.traceparent()).build();
+        }
+        if (tokenProvider != null) {
+            String token = tokenProvider.getAccessToken();
+            if (token != null && !token.isEmpty()) {
+                return request.newBuilder().header(TokenManager.HEADER, TokenManager.PREFIX + token).build();
+            }
+        }
+        return request;
     }
 
     /**
@@ -77,25 +105,47 @@ public abstract class JsonCallback<T> extends AbsCallback<T> {
     @Override
     public T convertResponse(Response response) throws Throwable {
         //详细自定义的原理和文档，看这里： https://github.com/jeasonlzy/okhttp-OkGo/wiki/JsonCallback
-        if (type == null) {
-            if (clazz == null) {
-                Type genType = getClass().getGenericSuperclass();
-                type = ((ParameterizedType) genType).getActualTypeArguments()[0];
-            } else {
-                JsonConvert<T> convert = new JsonConvert<>(clazz);
-                return convert.convertResponse(response);
+        route = RequestMetrics.routeOf(response.request());
+        traced = response.request();
+        try {
+            if (type == null) {
+                if (clazz == null) {
+                    Type genType = getClass().getGenericSuperclass();
+                    type = ((ParameterizedType) genType).getActualTypeArguments()[0];
+                } else {
+                    JsonConvert<T> convert = new JsonConvert<>(clazz);
+                    return convert.convertResponse(response);
+                }
             }
+
+            JsonConvert<T> convert = new JsonConvert<>(type);
+            return convert.convertResponse(response);
+        } finally {
+            convertEnd = System.nanoTime();
         }
+    }
 
-        JsonConvert<T> convert = new JsonConvert<>(type);
-        return convert.convertResponse(response);
+    /**
+     * 统计解析完成到回调结束的耗时（含onSuccess/onError本身的执行时间），子类重写时需调用super
+     */
+    @Override
+    public void onFinish() {
+        super.onFinish();
+        if (route != null && convertEnd != 0) {
+            long now = System.nanoTime();
+            RequestMetrics.getInstance().record(route, RequestMetrics.Phase.DELIVERY, now - convertEnd);
+            Tracer.getInstance().record(traced, "deliver", convertEnd, now);
+            convertEnd = 0;
+        }
     }
 
     /**
      * Token提供者接口，用于从外部获取访问令牌
+     *
+     * @deprecated 使用 {@link com.fyb.networklib.util.TokenProvider} 或 {@link TokenManager}
      */
-    public interface TokenProvider {
-        String getAccessToken();
+    @Deprecated
+    public interface TokenProvider extends com.fyb.networklib.util.TokenProvider {
     }
 }
 
@@ -0,0 +1,190 @@
+package com.fyb.networklib.util;
+
+import android.content.ComponentCallbacks2;
+import android.content.res.Configuration;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.fyb.networklib.api.NetworkClient;
+import com.fyb.networklib.api.SegmentDownloadTask;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+
+/**
+ * 内存压力感知的资源管理
+ * 1. 注册到Application后接收系统的trim-memory信号，换算成 {@link Trimmable} 的收缩级别，只在级别升高时逐级收缩
+ * 2. BACKGROUND（进程进入后台LRU列表）：清空空闲连接池，通知各组件释放可重建的缓存（如分页加载器缩小窗口、日志清空待写队列）
+ * 3. LOW：降低OkHttp调度器和阻塞请求的并发上限，分段下载缓冲区降为16KB
+ * 4. CRITICAL：并发降到最低，缓冲区降为8KB
+ * 5. 最后一次信号后持续 {@link #setRestoreDelay(long)}（默认60秒）没有新的信号，每隔一个周期恢复一级，直到回到收缩前的配置
+ *
+ * 测试时可通过 {@link #simulateTrimMemory(int)} 模拟系统信号
+ */
+public class MemoryTrimmer implements ComponentCallbacks2 {
+
+    private static final String TAG = "MemoryTrimmer";
+    private static final int LOW_BUFFER_SIZE = 16 * 1024;
+    private static final int CRITICAL_BUFFER_SIZE = 8 * 1024;
+
+    private final OkHttpClient okHttpClient;
+    private final NetworkClient networkClient;
+    private final Set<Trimmable> trimmables = Collections.newSetFromMap(new WeakHashMap<Trimmable, Boolean>());
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Runnable restore = new Runnable() {
+        @Override
+        public void run() {
+            restoreOneLevel();
+        }
+    };
+    private long restoreDelayMs = 60000;
+    private int level;
+    private int maxRequests;
+    private int maxRequestsPerHost;
+    private int maxConcurrentCalls;
+    private int bufferSize;
+
+    public MemoryTrimmer(OkHttpClient okHttpClient, NetworkClient networkClient) {
+        this.okHttpClient = okHttpClient;
+        this.networkClient = networkClient;
+    }
+
+    /**
+     * 注册需要随内存压力收缩的组件，只持有弱引用
+     */
+    public synchronized MemoryTrimmer register(Trimmable trimmable) {
+        trimmables.add(trimmable);
+        if (level > Trimmable.NONE) {
+            trimmable.trimMemory(level);
+        }
+        return this;
+    }
+
+    public synchronized void unregister(Trimmable trimmable) {
+        trimmables.remove(trimmable);
+    }
+
+    /**
+     * 压力解除后每隔多久恢复一级
+     */
+    public MemoryTrimmer setRestoreDelay(long restoreDelayMs) {
+        this.restoreDelayMs = restoreDelayMs;
+        return this;
+    }
+
+    /**
+     * 当前收缩级别，见 {@link Trimmable} 的常量
+     */
+    public synchronized int getLevel() {
+        return level;
+    }
+
+    /**
+     * 模拟系统的trim-memory信号，level为 ComponentCallbacks2.TRIM_MEMORY_* 常量
+     */
+    public void simulateTrimMemory(int level) {
+        onTrimMemory(level);
+    }
+
+    @Override
+    public void onTrimMemory(int trimLevel) {
+        int target = levelOf(trimLevel);
+        if (target == Trimmable.NONE) return;
+        synchronized (this) {
+            if (target > level) {
+                apply(target);
+            }
+        }
+        handler.removeCallbacks(restore);
+        handler.postDelayed(restore, restoreDelayMs);
+    }
+
+    @Override
+    public void onLowMemory() {
+        onTrimMemory(TRIM_MEMORY_COMPLETE);
+    }
+
+    @Override
+    public void onConfigurationChanged(Configuration newConfig) {
+    }
+
+    private void restoreOneLevel() {
+        boolean more;
+        synchronized (this) {
+            if (level == Trimmable.NONE) return;
+            apply(level - 1);
+            more = level > Trimmable.NONE;
+        }
+        if (more) {
+            handler.postDelayed(restore, restoreDelayMs);
+        }
+    }
+
+    /**
+     * 切换到目标级别；从NONE开始收缩时先记下当前配置，恢复到NONE时还原
+     */
+    private void apply(int target) {
+        Dispatcher dispatcher = okHttpClient.dispatcher();
+        if (level == Trimmable.NONE) {
+            maxRequests = dispatcher.getMaxRequests();
+            maxRequestsPerHost = dispatcher.getMaxRequestsPerHost();
+            maxConcurrentCalls = networkClient.getMaxConcurrentCalls();
+            bufferSize = SegmentDownloadTask.getBufferSize();
+        }
+        if (target >= Trimmable.BACKGROUND && target > level) {
+            okHttpClient.connectionPool().evictAll();
+        }
+        if (target >= Trimmable.CRITICAL) {
+            setLimits(Math.min(maxRequests, 4), Math.min(maxRequestsPerHost, 2),
+                    Math.min(maxConcurrentCalls, 4), Math.min(bufferSize, CRITICAL_BUFFER_SIZE));
+        } else if (target == Trimmable.LOW) {
+            setLimits(Math.min(maxRequests, 16), Math.min(maxRequestsPerHost, 4),
+                    Math.min(maxConcurrentCalls, 16), Math.min(bufferSize, LOW_BUFFER_SIZE));
+        } else {
+            setLimits(maxRequests, maxRequestsPerHost, maxConcurrentCalls, bufferSize);
+        }
+        level = target;
+        Log.i(TAG, "trim level " + target + ", maxRequests=" + dispatcher.getMaxRequests()
+                + ", buffer=" + SegmentDownloadTask.getBufferSize());
+
+        List<Trimmable> targets = new ArrayList<>(trimmables);
+        for (Trimmable trimmable : targets) {
+            try {
+                trimmable.trimMemory(target);
+            } catch (RuntimeException e) {
+                Log.w(TAG, "trimMemory failed: " + trimmable, e);
+            }
+        }
+    }
+
+    private void setLimits(int requests, int perHost, int concurrentCalls, int buffer) {
+        Dispatcher dispatcher = okHttpClient.dispatcher();
+        dispatcher.setMaxRequests(requests);
+        dispatcher.setMaxRequestsPerHost(perHost);
+        if (networkClient.getMaxConcurrentCalls() != concurrentCalls) {
+            networkClient.setMaxConcurrentCalls(concurrentCalls);
+        }
+        SegmentDownloadTask.setBufferSize(buffer);
+    }
+
+    private static int levelOf(int trimLevel) {
+        if (trimLevel >= TRIM_MEMORY_COMPLETE || trimLevel == TRIM_MEMORY_RUNNING_CRITICAL) {
+            return Trimmable.CRITICAL;
+        }
+        if (trimLevel >= TRIM_MEMORY_MODERATE || trimLevel == TRIM_MEMORY_RUNNING_LOW) {
+            return Trimmable.LOW;
+        }
+        if (trimLevel >= TRIM_MEMORY_BACKGROUND) {
+            return Trimmable.BACKGROUND;
+        }
+        // UI_HIDDEN、RUNNING_MODERATE：用户可能马上回到前台，保留连接池和缓存
+        return Trimmable.NONE;
+    }
+}
@@ -0,0 +1,153 @@
+package com.fyb.networklib.util;
+
+import android.os.Handler;
+
+import com.lzy.okgo.OkGo;
+import com.lzy.okgo.callback.Callback;
+import com.lzy.okgo.model.Progress;
+import com.lzy.okgo.request.base.ProgressRequestBody;
+import com.lzy.okgo.request.base.Request;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 进度事件合并器
+ * 在IO线程记录每次写入，按时间间隔和进度百分比阈值决定是否通知主线程；
+ * 主线程上同一时刻最多只有一条待处理的进度消息，UI来不及处理时只会看到最新进度，
+ * 不会拖慢传输；速度采用指数加权平均平滑，并据此估算剩余时间
+ *
+ * 使用范围：SegmentDownloadTask、ChunkedUploadTask 的进度，以及经 NetworkApi.execute 执行的OkGo请求的上传进度；
+ * OkGo FileCallback 的下载进度由OkGo内部直接投递到主线程，不经过这里，大文件下载请使用 NetworkApi.download
+ */
+public class ProgressCoalescer {
+
+    public static final long DEFAULT_MIN_INTERVAL_MS = 200;
+    public static final long DEFAULT_MAX_INTERVAL_MS = 1000;
+    public static final float DEFAULT_MIN_FRACTION_STEP = 0.01f;
+
+    private static final long SAMPLE_WINDOW_MS = 100;
+    private static final double SMOOTHING = 0.3;
+
+    private final long minIntervalMs;
+    private final long maxIntervalMs;
+    private final float minFractionStep;
+    private final AtomicBoolean posted = new AtomicBoolean();
+
+    private long lastDeliverTime;
+    private float lastDeliverFraction = -1;
+    private long sampleStartTime;
+    private long sampleStartSize;
+    private double speed;
+    private long currentSize;
+    private long totalSize;
+
+    public ProgressCoalescer() {
+        this(DEFAULT_MIN_INTERVAL_MS, DEFAULT_MAX_INTERVAL_MS, DEFAULT_MIN_FRACTION_STEP);
+    }
+
+    /**
+     * @param minIntervalMs   两次通知的最小间隔
+     * @param maxIntervalMs   进度变化不足阈值时，最长多久也要通知一次（用于刷新速度）
+     * @param minFractionStep 进度变化达到该比例才通知，如0.01表示1%
+     */
+    public ProgressCoalescer(long minIntervalMs, long maxIntervalMs, float minFractionStep) {
+        this.minIntervalMs = minIntervalMs;
+        this.maxIntervalMs = maxIntervalMs;
+        this.minFractionStep = minFractionStep;
+    }
+
+    /**
+     * 记录最新进度（任意线程）
+     *
+     * @return 是否需要通知
+     */
+    public synchronized boolean update(long currentSize, long totalSize) {
+        long now = System.currentTimeMillis();
+        this.currentSize = currentSize;
+        this.totalSize = totalSize;
+        if (sampleStartTime == 0) {
+            sampleStartTime = now;
+            sampleStartSize = currentSize;
+        } else if (now - sampleStartTime >= SAMPLE_WINDOW_MS) {
+            double sample = (currentSize - sampleStartSize) * 1000.0 / (now - sampleStartTime);
+            speed = speed == 0 ? sample : SMOOTHING * sample + (1 - SMOOTHING) * speed;
+            sampleStartTime = now;
+            sampleStartSize = currentSize;
+        }
+
+        float fraction = totalSize > 0 ? currentSize * 1.0f / totalSize : 0;
+        boolean done = totalSize > 0 && currentSize >= totalSize;
+        long elapsed = now - lastDeliverTime;
+        boolean deliver = done
+                || (elapsed >= minIntervalMs && fraction - lastDeliverFraction >= minFractionStep)
+                || elapsed >= maxIntervalMs;
+        if (deliver) {
+            lastDeliverTime = now;
+            lastDeliverFraction = fraction;
+        }
+        return deliver;
+    }
+
+    /**
+     * 平滑后的速度（字节/秒）
+     */
+    public synchronized long getSpeed() {
+        return (long) speed;
+    }
+
+    /**
+     * 预计剩余时间（毫秒），速度未知时返回-1
+     */
+    public synchronized long getEtaMillis() {
+        if (speed <= 0 || totalSize <= 0) return -1;
+        return (long) ((totalSize - currentSize) * 1000 / speed);
+    }
+
+    /**
+     * 把最新的进度写入Progress对象
+     */
+    public synchronized void fill(Progress progress) {
+        progress.currentSize = currentSize;
+        progress.totalSize = totalSize;
+        progress.fraction = totalSize > 0 ? currentSize * 1.0f / totalSize : 0;
+        progress.speed = (long) speed;
+    }
+
+    /**
+     * 投递到主线程，上一条消息还未执行时直接丢弃，由那条消息读取最新状态
+     */
+    public void post(Handler handler, final Runnable runnable) {
+        if (!posted.compareAndSet(false, true)) return;
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                posted.set(false);
+                runnable.run();
+            }
+        });
+    }
+
+    /**
+     * 为OkGo请求的上传进度启用合并：进度在IO线程合并后再投递到 callback.uploadProgress
+     *
+     * @param request  OkGo请求
+     * @param callback 接收上传进度的回调
+     */
+    public static <T> void bindUpload(Request<T, ? extends Request> request, final Callback<T> callback) {
+        final ProgressCoalescer coalescer = new ProgressCoalescer();
+        final Handler delivery = OkGo.getInstance().getDelivery();
+        request.uploadInterceptor(new ProgressRequestBody.UploadInterceptor() {
+            @Override
+            public void uploadProgress(final Progress progress) {
+                if (!coalescer.update(progress.currentSize, progress.totalSize)) return;
+                coalescer.post(delivery, new Runnable() {
+                    @Override
+                    public void run() {
+                        coalescer.fill(progress);
+                        callback.uploadProgress(progress);
+                    }
+                });
+            }
+        });
+    }
+}
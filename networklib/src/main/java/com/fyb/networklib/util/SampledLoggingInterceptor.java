@@ -0,0 +1,314 @@
+package com.fyb.networklib.util;
+
+import android.util.Log;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import okhttp3.Headers;
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+
+/**
+ * 采样日志拦截器，替代BODY级别的HttpLoggingInterceptor
+ * 1. 按比例采样，可按路由单独设置比例，未采样的请求只多一次随机数判断
+ * 2. 请求体只在长度已知且不超过上限时复制，响应体只在长度已知时通过peekBody读取前N个字节，不影响后续解析；
+ *    SSE、分块传输等长度未知的流式响应不窥视，避免在拦截器里阻塞等待后续数据
+ * 3. 请求线程只收集原始数据，格式化和写logcat在后台线程完成；队列满时直接丢弃，不阻塞网络线程；
+ *    所有实例共用一个写日志线程，首次有采样记录时才创建，空闲60秒后退出
+ * 4. 内存紧张时清空待写队列，LOW及以上级别暂停复制请求体和响应体
+ */
+public class SampledLoggingInterceptor implements Interceptor, Trimmable {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final int LOGCAT_CHUNK = 4000;
+
+    private static volatile ThreadPoolExecutor sWriter;
+
+    private final String tag;
+    private final BlockingQueue<Record> queue;
+    private final Map<String, Double> routeRates = new ConcurrentHashMap<>();
+    private final AtomicLong dropped = new AtomicLong();
+    /** 是否已有排空本实例队列的任务交给写日志线程 */
+    private final AtomicBoolean draining = new AtomicBoolean();
+    private volatile double sampleRate = 1.0;
+    private volatile long maxBodyBytes = 4096;
+    private volatile boolean logHeaders = true;
+    private volatile boolean logBodies = true;
+    private volatile int trimLevel;
+
+    public SampledLoggingInterceptor(String tag) {
+        this(tag, 256);
+    }
+
+    /**
+     * @param tag      logcat标签
+     * @param capacity 后台队列容量，超出的记录丢弃
+     */
+    public SampledLoggingInterceptor(String tag, int capacity) {
+        this.tag = tag;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+    }
+
+    private static ThreadPoolExecutor writer() {
+        if (sWriter == null) {
+            synchronized (SampledLoggingInterceptor.class) {
+                if (sWriter == null) {
+                    ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 60, TimeUnit.SECONDS,
+                            new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                        @Override
+                        public Thread newThread(Runnable runnable) {
+                            Thread thread = new Thread(runnable, "OkNet-Log");
+                            thread.setDaemon(true);
+                            thread.setPriority(Thread.MIN_PRIORITY);
+                            return thread;
+                        }
+                    });
+                    executor.allowCoreThreadTimeOut(true);
+                    sWriter = executor;
+                }
+            }
+        }
+        return sWriter;
+    }
+
+    /**
+     * 全局采样比例，0~1，0表示关闭
+     */
+    public SampledLoggingInterceptor setSampleRate(double sampleRate) {
+        this.sampleRate = sampleRate;
+        return this;
+    }
+
+    /**
+     * 为某个路由单独设置采样比例，路由格式见 {@link RequestMetrics#routeOf(Request)}
+     */
+    public SampledLoggingInterceptor setRouteSampleRate(String route, double sampleRate) {
+        routeRates.put(route, sampleRate);
+        return this;
+    }
+
+    /**
+     * 请求体、响应体最多记录的字节数
+     */
+    public SampledLoggingInterceptor setMaxBodyBytes(long maxBodyBytes) {
+        this.maxBodyBytes = maxBodyBytes;
+        return this;
+    }
+
+    public SampledLoggingInterceptor setLogHeaders(boolean logHeaders) {
+        this.logHeaders = logHeaders;
+        return this;
+    }
+
+    public SampledLoggingInterceptor setLogBodies(boolean logBodies) {
+        this.logBodies = logBodies;
+        return this;
+    }
+
+    /**
+     * 因队列已满被丢弃的记录数
+     */
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    @Override
+    public void trimMemory(int level) {
+        trimLevel = level;
+        if (level >= BACKGROUND) {
+            int cleared = queue.size();
+            queue.clear();
+            dropped.addAndGet(cleared);
+        }
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        if (!sampled(request)) {
+            return chain.proceed(request);
+        }
+
+        Record record = new Record();
+        record.method = request.method();
+        record.url = request.url().toString();
+        if (logHeaders) record.requestHeaders = request.headers();
+        boolean bodies = logBodies && trimLevel < LOW;
+        if (bodies) record.requestBody = copyRequestBody(request.body());
+
+        long start = System.nanoTime();
+        Response response;
+        try {
+            response = chain.proceed(request);
+        } catch (IOException e) {
+            record.tookMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            record.error = e.toString();
+            enqueue(record);
+            throw e;
+        }
+        record.tookMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        record.code = response.code();
+        record.message = response.message();
+        record.protocol = response.protocol().toString();
+        if (logHeaders) record.responseHeaders = response.headers();
+        ResponseBody body = response.body();
+        if (bodies && body != null) {
+            record.responseLength = body.contentLength();
+            if (record.responseLength >= 0 && isText(body.contentType())) {
+                // 多读一个字节用于判断是否截断
+                byte[] bytes = response.peekBody(maxBodyBytes + 1).bytes();
+                record.truncated = bytes.length > maxBodyBytes;
+                record.responseBody = record.truncated ? Arrays.copyOf(bytes, (int) maxBodyBytes) : bytes;
+                record.responseCharset = charsetOf(body.contentType());
+            }
+        }
+        enqueue(record);
+        return response;
+    }
+
+    private boolean sampled(Request request) {
+        double rate = sampleRate;
+        if (!routeRates.isEmpty()) {
+            Double routeRate = routeRates.get(RequestMetrics.routeOf(request));
+            if (routeRate != null) rate = routeRate;
+        }
+        if (rate >= 1) return true;
+        return rate > 0 && ThreadLocalRandom.current().nextDouble() < rate;
+    }
+
+    private byte[] copyRequestBody(RequestBody body) {
+        if (body == null || !isText(body.contentType())) return null;
+        try {
+            long length = body.contentLength();
+            if (length < 0 || length > maxBodyBytes) return null;
+            Buffer buffer = new Buffer();
+            body.writeTo(buffer);
+            return buffer.readByteArray();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static boolean isText(MediaType type) {
+        if (type == null) return false;
+        String subtype = type.subtype().toLowerCase();
+        if ("event-stream".equals(subtype)) return false;
+        return "text".equals(type.type())
+                || subtype.contains("json")
+                || subtype.contains("xml")
+                || subtype.contains("x-www-form-urlencoded")
+                || subtype.contains("html");
+    }
+
+    private static Charset charsetOf(MediaType type) {
+        return type == null ? UTF8 : type.charset(UTF8);
+    }
+
+    private void enqueue(Record record) {
+        if (!queue.offer(record)) {
+            dropped.incrementAndGet();
+            return;
+        }
+        if (draining.compareAndSet(false, true)) {
+            writer().execute(new Runnable() {
+                @Override
+                public void run() {
+                    drain();
+                }
+            });
+        }
+    }
+
+    /**
+     * 在写日志线程上排空本实例的队列；排空后再检查一次，避免与新入队的记录错过
+     */
+    private void drain() {
+        do {
+            Record record;
+            while ((record = queue.poll()) != null) {
+                try {
+                    write(record.format());
+                } catch (Throwable t) {
+                    Log.w(tag, "log record dropped", t);
+                }
+            }
+            draining.set(false);
+        } while (!queue.isEmpty() && draining.compareAndSet(false, true));
+    }
+
+    private void write(String text) {
+        // logcat单条日志有长度限制，超长时分段输出
+        for (int i = 0; i < text.length(); i += LOGCAT_CHUNK) {
+            Log.i(tag, text.substring(i, Math.min(text.length(), i + LOGCAT_CHUNK)));
+        }
+    }
+
+    /**
+     * 请求线程采集的原始数据，格式化延后到后台线程
+     */
+    private static class Record {
+        String method;
+        String url;
+        Headers requestHeaders;
+        byte[] requestBody;
+        int code;
+        String message;
+        String protocol;
+        Headers responseHeaders;
+        long responseLength = -1;
+        byte[] responseBody;
+        boolean truncated;
+        Charset responseCharset;
+        long tookMs;
+        String error;
+
+        String format() {
+            StringBuilder sb = new StringBuilder(512);
+            sb.append("--> ").append(method).append(' ').append(url).append('\n');
+            appendHeaders(sb, requestHeaders);
+            if (requestBody != null) {
+                sb.append(new String(requestBody, UTF8)).append('\n');
+            }
+            if (error != null) {
+                sb.append("<-- HTTP FAILED (").append(tookMs).append("ms): ").append(error);
+                return sb.toString();
+            }
+            sb.append("<-- ").append(code).append(' ').append(message).append(' ')
+                    .append(protocol).append(" (").append(tookMs).append("ms)\n");
+            appendHeaders(sb, responseHeaders);
+            if (responseBody != null) {
+                sb.append(new String(responseBody, responseCharset));
+                if (truncated) {
+                    sb.append("\n... (truncated, ");
+                    sb.append(responseLength < 0 ? "unknown" : String.valueOf(responseLength)).append("-byte body)");
+                }
+            }
+            return sb.toString();
+        }
+
+        private static void appendHeaders(StringBuilder sb, Headers headers) {
+            if (headers == null) return;
+            for (int i = 0; i < headers.size(); i++) {
+                sb.append(headers.name(i)).append(": ").append(headers.value(i)).append('\n');
+            }
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package com.fyb.networklib.util;
+
+import com.lzy.okgo.OkGo;
+import com.lzy.okgo.callback.AbsCallback;
+import com.lzy.okgo.request.base.Request;
+
+import java.io.IOException;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Call;
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+/**
+ * 流式响应回调
+ * 从响应体的okio source中增量解析 text/event-stream（SSE）帧或换行分隔的JSON（NDJSON），
+ * 每解析出一个事件就转换成目标类型并投递到主线程，无需等待完整响应体
+ *
+ * 待投递的事件数量有上限，主线程处理不过来时读取线程会阻塞，由TCP流控向服务端施加背压；
+ * 同一个回调再次发起请求时会自动携带 Last-Event-ID 从断点续传；帧的解析由 {@link StreamParser} 完成
+ * 通过请求的tag取消，或直接调用 cancel()，两种方式都以onSuccess结束；
+ * 按tag取消需要通过 {@link #getCallTracker()} 记录流所在的Call，NetworkApi.stream 已自动添加
+ */
+public abstract class StreamCallback<T> extends AbsCallback<Void> {
+
+    public static final int DEFAULT_MAX_PENDING = 64;
+    public static final long DEFAULT_MAX_LINE_BYTES = 1024 * 1024;
+
+    private static final String DEFAULT_EVENT = "message";
+
+    private Type type;
+    private final Semaphore pending;
+    private final StreamParser parser;
+    private volatile boolean cancelled;
+    private volatile Response response;
+    private volatile Call call;
+
+    private final Interceptor callTracker = new Interceptor() {
+        @Override
+        public Response intercept(Chain chain) throws IOException {
+            call = chain.call();
+            return chain.proceed(chain.request());
+        }
+    };
+
+    public StreamCallback() {
+        this(null, DEFAULT_MAX_PENDING, DEFAULT_MAX_LINE_BYTES);
+    }
+
+    public StreamCallback(Type type) {
+        this(type, DEFAULT_MAX_PENDING, DEFAULT_MAX_LINE_BYTES);
+    }
+
+    public StreamCallback(Class<T> clazz) {
+        this(clazz, DEFAULT_MAX_PENDING, DEFAULT_MAX_LINE_BYTES);
+    }
+
+    /**
+     * @param type         事件数据类型
+     * @param maxPending   最多允许多少个事件等待主线程处理
+     * @param maxLineBytes 单行最大字节数，超过视为异常流
+     */
+    public StreamCallback(Type type, int maxPending, long maxLineBytes) {
+        this.type = type;
+        this.pending = new Semaphore(maxPending);
+        this.parser = new StreamParser(maxLineBytes);
+    }
+
+    /**
+     * 收到一个事件（主线程）
+     */
+    public abstract void onEvent(StreamEvent<T> event);
+
+    /**
+     * 流正常结束（主线程）
+     */
+    @Override
+    public void onSuccess(com.lzy.okgo.model.Response<Void> response) {
+    }
+
+    @Override
+    public void onStart(Request<Void, ? extends Request> request) {
+        super.onStart(request);
+        cancelled = false;
+        call = null;
+        request.headers("Accept", "text/event-stream, application/x-ndjson");
+        String lastEventId = parser.getLastEventId();
+        if (lastEventId != null) {
+            request.headers("Last-Event-ID", lastEventId);
+        }
+    }
+
+    /**
+     * 该方法是子线程处理，逐行读取直到流结束或被取消
+     */
+    @Override
+    public Void convertResponse(Response response) throws Throwable {
+        if (type == null) {
+            Type genType = getClass().getGenericSuperclass();
+            type = ((ParameterizedType) genType).getActualTypeArguments()[0];
+        }
+        ResponseBody body = response.body();
+        if (body == null) return null;
+        this.response = response;
+        try {
+            MediaType contentType = body.contentType();
+            boolean eventStream = contentType != null && "event-stream".equals(contentType.subtype());
+            StreamParser.Listener listener = new StreamParser.Listener() {
+                @Override
+                public boolean onEvent(String id, String event, String data) throws Exception {
+                    if (cancelled) return false;
+                    dispatch(id, event, data);
+                    return !cancelled;
+                }
+            };
+            if (eventStream) {
+                parser.readEventStream(body.source(), listener);
+            } else {
+                parser.readJsonLines(body.source(), listener);
+            }
+        } catch (IOException e) {
+            // 调用cancel()或按tag取消后读取中断，按正常结束处理
+            Call current = call;
+            if (!cancelled && (current == null || !current.isCanceled())) throw e;
+        } finally {
+            this.response = null;
+            response.close();
+        }
+        return null;
+    }
+
+    /**
+     * 主动取消流的读取，与按tag取消一样以onSuccess结束
+     */
+    public void cancel() {
+        cancelled = true;
+        Response current = response;
+        if (current != null) {
+            current.close();
+        }
+    }
+
+    /**
+     * 记录流所在Call的拦截器，添加到发起流请求的client上，按tag取消后不会回调onError
+     */
+    public Interceptor getCallTracker() {
+        return callTracker;
+    }
+
+    /**
+     * 获取最后收到的事件ID，用于断点续传
+     */
+    public String getLastEventId() {
+        return parser.getLastEventId();
+    }
+
+    /**
+     * 设置断点续传的事件ID，下次请求时通过 Last-Event-ID 请求头发送
+     */
+    public void setLastEventId(String lastEventId) {
+        parser.setLastEventId(lastEventId);
+    }
+
+    /**
+     * 获取服务端通过retry字段建议的重连间隔（毫秒），未指定时返回-1
+     */
+    public long getRetryMillis() {
+        return parser.getRetryMillis();
+    }
+
+    private void dispatch(String id, String event, String data) throws Exception {
+        final StreamEvent<T> streamEvent = new StreamEvent<>();
+        streamEvent.id = id;
+        streamEvent.event = event != null ? event : DEFAULT_EVENT;
+        if (type == String.class) {
+            //noinspection unchecked
+            streamEvent.data = (T) data;
+        } else {
+            streamEvent.data = Convert.fromJson(data, type);
+        }
+        // 有界缓冲：主线程积压过多时阻塞读取线程
+        while (!pending.tryAcquire(100, TimeUnit.MILLISECONDS)) {
+            if (cancelled) return;
+        }
+        OkGo.getInstance().getDelivery().post(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    if (!cancelled) onEvent(streamEvent);
+                } finally {
+                    pending.release();
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,73 @@
+package com.fyb.networklib.util;
+
+import android.content.Context;
+import android.net.SSLCertificateSocketFactory;
+import android.net.SSLSessionCache;
+
+import java.io.File;
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+
+import javax.net.ssl.SSLSocketFactory;
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.TrustManagerFactory;
+import javax.net.ssl.X509TrustManager;
+
+import okhttp3.OkHttpClient;
+
+/**
+ * 持久化TLS会话缓存
+ * 系统默认的会话票据只保存在内存中，进程重启后每个连接都要完整握手；
+ * 这里用系统的 SSLSessionCache 把可恢复的会话写到应用私有目录，重启后首个连接即可走会话恢复（少一个RTT和证书校验）
+ *
+ * 缓存目录位于 noBackupFilesDir 下，会话密钥不会随自动备份离开设备；
+ * 证书链仍由系统默认的 TrustManager 校验，主机名由OkHttp校验。
+ * 注意该SocketFactory在创建Socket时即完成握手，OkHttp的 ConnectionSpec（TLS版本、密码套件）和ALPN都不再生效，
+ * 连接固定为HTTP/1.1；因此NetworkApi默认不安装，需通过 NetworkApi.setTlsSessionCache 显式开启
+ */
+public class TlsSessionCache {
+
+    private static final String DIR = "oknet-sslcache";
+
+    private TlsSessionCache() {
+    }
+
+    /**
+     * 创建位于应用私有、不参与备份目录下的会话缓存
+     *
+     * @throws IOException 目录无法创建
+     */
+    public static SSLSessionCache create(Context context) throws IOException {
+        return new SSLSessionCache(new File(context.getNoBackupFilesDir(), DIR));
+    }
+
+    /**
+     * 为OkHttpClient.Builder配置使用该缓存的SocketFactory
+     *
+     * @param handshakeTimeoutMs 握手超时
+     * @return 是否配置成功，失败时保持OkHttp默认配置
+     */
+    @SuppressWarnings("deprecation")
+    public static boolean install(OkHttpClient.Builder builder, SSLSessionCache cache, int handshakeTimeoutMs) {
+        try {
+            X509TrustManager trustManager = platformTrustManager();
+            SSLSocketFactory factory = SSLCertificateSocketFactory.getDefault(handshakeTimeoutMs, cache);
+            builder.sslSocketFactory(factory, trustManager);
+            return true;
+        } catch (GeneralSecurityException e) {
+            return false;
+        }
+    }
+
+    private static X509TrustManager platformTrustManager() throws GeneralSecurityException {
+        TrustManagerFactory factory = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+        factory.init((KeyStore) null);
+        for (TrustManager trustManager : factory.getTrustManagers()) {
+            if (trustManager instanceof X509TrustManager) {
+                return (X509TrustManager) trustManager;
+            }
+        }
+        throw new GeneralSecurityException("no X509TrustManager");
+    }
+}